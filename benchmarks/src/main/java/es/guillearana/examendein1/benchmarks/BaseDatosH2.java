@@ -0,0 +1,93 @@
+package es.guillearana.examendein1.benchmarks;
+
+import es.guillearana.examendein1.conexion.ConexionBD;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Base de datos H2 en memoria que sustituye a MySQL en los benchmarks.
+ *
+ * Las propiedades del sistema {@code url}, {@code user} y {@code password} tienen prioridad
+ * sobre configuration.properties, así que basta con definirlas antes de crear el primer DAO
+ * para que el pool de ConexionBD se conecte a H2. El modo MySQL de H2 acepta las mismas
+ * sentencias que usa ProductoDao.
+ */
+final class BaseDatosH2 {
+
+    static final String URL = "jdbc:h2:mem:benchmarks;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String USUARIO = "sa";
+
+    private BaseDatosH2() {
+    }
+
+    /**
+     * Apunta la aplicación a H2 y crea las tablas vacías.
+     *
+     * @throws SQLException si ocurre un error al crear las tablas
+     */
+    static void preparar() throws SQLException {
+        System.setProperty("url", URL);
+        System.setProperty("user", USUARIO);
+        System.setProperty("password", "");
+        try (Connection conn = abrir(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS productos");
+            stmt.execute("DROP TABLE IF EXISTS productos_cambios");
+            stmt.execute("CREATE TABLE productos (codigo VARCHAR(5) PRIMARY KEY, nombre VARCHAR(50), "
+                    + "precio DOUBLE, disponible BOOLEAN, version INT NOT NULL DEFAULT 0)");
+            stmt.execute("CREATE TABLE productos_cambios (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "codigo VARCHAR(5) NOT NULL, operacion CHAR(1) NOT NULL, "
+                    + "instante TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3))");
+        }
+    }
+
+    /**
+     * Inserta productos con los códigos {@code 00000}, {@code 00001}... hasta {@code filas - 1}.
+     *
+     * @param filas el número de productos
+     * @throws SQLException si ocurre un error al insertar
+     */
+    static void rellenar(int filas) throws SQLException {
+        try (Connection conn = abrir();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO productos (codigo, nombre, precio, disponible) VALUES (?, ?, ?, ?)")) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < filas; i++) {
+                stmt.setString(1, codigo(i));
+                stmt.setString(2, "Producto " + i);
+                stmt.setDouble(3, (i % 10_000) / 100.0);
+                stmt.setBoolean(4, i % 3 != 0);
+                stmt.addBatch();
+                if (i % 1000 == 999) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /**
+     * Cierra el pool de la aplicación. Los datos se mantienen hasta que termina la JVM.
+     */
+    static void cerrar() {
+        ConexionBD.cerrarInstancia();
+    }
+
+    /**
+     * @return el código del producto número {@code i} de los creados por {@link #rellenar(int)}
+     */
+    static String codigo(int i) {
+        return String.format("%05d", i);
+    }
+
+    /**
+     * Abre una conexión directa a H2, sin pasar por el pool.
+     */
+    static Connection abrir() throws SQLException {
+        return DriverManager.getConnection(URL, USUARIO, "");
+    }
+}
@@ -0,0 +1,107 @@
+package es.guillearana.examendein1.benchmarks;
+
+import es.guillearana.examendein1.model.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de crear objetos {@link Producto} y de construirlos a partir de un ResultSet.
+ *
+ * {@link #mapearPorNombre()} reproduce {@code ProductoDao.mapear} (columnas por nombre);
+ * {@link #mapearPorPosicion()} sirve de referencia para saber cuánto cuesta buscar las columnas.
+ * {@link #soloRecorrer()} mide la lectura sin mapear, para separar el coste de H2 del nuestro.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dconfiguracion=../configuration.properties")
+public class MapeoBenchmark {
+
+    private static final String SQL = "SELECT codigo, nombre, precio, disponible FROM productos ORDER BY codigo";
+
+    @Param({"1000", "10000", "100000"})
+    private int filas;
+
+    private Connection conexion;
+    private PreparedStatement consulta;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        BaseDatosH2.preparar();
+        BaseDatosH2.rellenar(filas);
+        conexion = BaseDatosH2.abrir();
+        consulta = conexion.prepareStatement(SQL);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        consulta.close();
+        conexion.close();
+    }
+
+    @Benchmark
+    public void crearProductos(Blackhole agujero) {
+        for (int i = 0; i < filas; i++) {
+            agujero.consume(new Producto("00000", "Producto", i, true));
+        }
+    }
+
+    @Benchmark
+    public int soloRecorrer() throws SQLException {
+        int leidas = 0;
+        try (ResultSet rs = consulta.executeQuery()) {
+            while (rs.next()) {
+                leidas++;
+            }
+        }
+        return leidas;
+    }
+
+    @Benchmark
+    public List<Producto> mapearPorNombre() throws SQLException {
+        List<Producto> productos = new ArrayList<>();
+        try (ResultSet rs = consulta.executeQuery()) {
+            while (rs.next()) {
+                productos.add(new Producto(
+                        rs.getString("codigo"),
+                        rs.getString("nombre"),
+                        rs.getDouble("precio"),
+                        rs.getBoolean("disponible")));
+            }
+        }
+        return productos;
+    }
+
+    @Benchmark
+    public List<Producto> mapearPorPosicion() throws SQLException {
+        List<Producto> productos = new ArrayList<>();
+        try (ResultSet rs = consulta.executeQuery()) {
+            while (rs.next()) {
+                productos.add(new Producto(rs.getString(1), rs.getString(2), rs.getDouble(3), rs.getBoolean(4)));
+            }
+        }
+        return productos;
+    }
+}
@@ -0,0 +1,131 @@
+package es.guillearana.examendein1.benchmarks;
+
+import es.guillearana.examendein1.dao.ProductoDao;
+import es.guillearana.examendein1.model.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de las operaciones de {@link ProductoDao} contra una tabla de {@code filas} productos.
+ *
+ * Mide el camino completo de la aplicación (pool, sentencias, registro de cambios y mapeo)
+ * sobre H2 en memoria: no incluye la latencia de red de MySQL, pero sí todo lo que cambia
+ * al optimizar el código del DAO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dconfiguracion=../configuration.properties")
+public class ProductoDaoBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int filas;
+
+    private ProductoDao productoDao;
+    // Siguiente código libre para los productos que crean los benchmarks
+    private int siguiente;
+    // Versión actual de cada producto inicial, para que actualizar no choque con el bloqueo optimista
+    private int[] versiones;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        BaseDatosH2.preparar();
+        BaseDatosH2.rellenar(filas);
+        productoDao = new ProductoDao();
+        versiones = new int[filas];
+    }
+
+    @TearDown(Level.Iteration)
+    public void limpiar() throws SQLException {
+        // Deja la tabla con el tamaño y las versiones iniciales y el registro de cambios vacío entre iteraciones
+        try (Connection conn = BaseDatosH2.abrir(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM productos WHERE codigo LIKE 'N%'");
+            stmt.execute("UPDATE productos SET version = 0 WHERE version <> 0");
+            stmt.execute("DELETE FROM productos_cambios");
+        }
+        siguiente = 0;
+        Arrays.fill(versiones, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        BaseDatosH2.cerrar();
+    }
+
+    @Benchmark
+    public List<Producto> obtenerTodos() throws SQLException {
+        return productoDao.obtenerTodos();
+    }
+
+    @Benchmark
+    public List<Producto> obtenerPrimeraPagina() throws SQLException {
+        return productoDao.obtenerPagina(null, 200);
+    }
+
+    @Benchmark
+    public Producto obtenerPorCodigo() throws SQLException {
+        return productoDao.obtenerPorCodigo(codigoExistente());
+    }
+
+    @Benchmark
+    public void crear() throws SQLException {
+        productoDao.crear(new Producto(codigoNuevo(), "Nuevo", 1.5, true));
+    }
+
+    /**
+     * Actualiza un producto con su versión actual, como hace el formulario tras leerlo.
+     * La versión se lleva aquí para no medir también la lectura.
+     */
+    @Benchmark
+    public void actualizar() throws SQLException {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int fila = aleatorio.nextInt(filas);
+        Producto producto = new Producto(BaseDatosH2.codigo(fila), "Modificado", aleatorio.nextInt(10_000) / 100.0,
+                aleatorio.nextBoolean(), versiones[fila]);
+        productoDao.actualizar(producto);
+        versiones[fila] = producto.getVersion();
+    }
+
+    /**
+     * Crea y elimina un producto, para medir el borrado sin que la tabla se vacíe.
+     * El coste del borrado es la diferencia con {@link #crear()}.
+     */
+    @Benchmark
+    public void crearYEliminar() throws SQLException {
+        String codigo = codigoNuevo();
+        productoDao.crear(new Producto(codigo, "Temporal", 1.5, true));
+        productoDao.eliminar(codigo);
+    }
+
+    private String codigoExistente() {
+        return BaseDatosH2.codigo(ThreadLocalRandom.current().nextInt(filas));
+    }
+
+    /**
+     * Códigos que empiezan por N, fuera del rango de los productos iniciales.
+     */
+    private String codigoNuevo() {
+        return "N" + String.format("%4s", Integer.toString(siguiente++, 36)).replace(' ', '0');
+    }
+}
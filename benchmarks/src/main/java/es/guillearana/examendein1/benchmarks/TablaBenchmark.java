@@ -0,0 +1,90 @@
+package es.guillearana.examendein1.benchmarks;
+
+import es.guillearana.examendein1.model.Producto;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de llenar la lista observable que respalda la tabla de productos.
+ *
+ * La lista tiene un oyente, como cuando está asociada a un TableView, para que cada
+ * notificación de cambio cueste lo mismo que en la aplicación. No hace falta arrancar
+ * JavaFX: las colecciones observables funcionan sin el hilo de la interfaz.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TablaBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int filas;
+
+    private List<Producto> productos;
+    private ObservableList<Producto> lista;
+    private long notificaciones;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        productos = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            productos.add(new Producto(BaseDatosH2.codigo(i), "Producto " + i, i / 100.0, i % 3 != 0));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void vaciar() {
+        lista = FXCollections.observableArrayList();
+        lista.addListener((ListChangeListener<Producto>) cambio -> notificaciones++);
+    }
+
+    /**
+     * Sustitución completa, como al cargar la primera página o una búsqueda.
+     */
+    @Benchmark
+    public ObservableList<Producto> setAll() {
+        lista.setAll(productos);
+        return lista;
+    }
+
+    /**
+     * Inserción de una en una, con una notificación por producto.
+     */
+    @Benchmark
+    public ObservableList<Producto> addUnoAUno() {
+        for (Producto producto : productos) {
+            lista.add(producto);
+        }
+        return lista;
+    }
+
+    /**
+     * Inserción por páginas de 200, como al desplazarse por la tabla.
+     */
+    @Benchmark
+    public ObservableList<Producto> addAllPorPaginas() {
+        for (int inicio = 0; inicio < filas; inicio += 200) {
+            lista.addAll(productos.subList(inicio, Math.min(inicio + 200, filas)));
+        }
+        return lista;
+    }
+}
@@ -0,0 +1,13 @@
+-- Registro de cambios de la tabla productos.
+-- ProductoDao anota aquí cada alta, modificación y baja en la misma transacción que el
+-- cambio, y los clientes leen solo las filas posteriores al último cambio que aplicaron.
+-- Los cambios antiguos se borran con "Consola purgar-cambios [dias]" (por ejemplo, a diario
+-- desde cron); un cliente que se ha quedado por detrás de lo purgado recarga todo.
+
+CREATE TABLE IF NOT EXISTS productos_cambios (
+    id        BIGINT      NOT NULL AUTO_INCREMENT,
+    codigo    VARCHAR(5)  NOT NULL,
+    operacion CHAR(1)     NOT NULL COMMENT 'I = alta, U = modificación, D = baja',
+    instante  TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id)
+);
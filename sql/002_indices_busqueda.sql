@@ -0,0 +1,13 @@
+-- Índices para la búsqueda de productos (ProductoDao.buscar).
+-- El prefijo de código usa la clave primaria. Los demás criterios llevan el código al final
+-- del índice para que la paginación por clave (codigo > ? ORDER BY codigo) no tenga que ordenar.
+
+-- Nombre: índice FULLTEXT con n-gramas, que encuentra subcadenas y no solo palabras completas.
+-- La longitud de los n-gramas la fija ngram_token_size en el servidor (2 por defecto).
+ALTER TABLE productos ADD FULLTEXT INDEX ft_productos_nombre (nombre) WITH PARSER ngram;
+
+-- Rango de precios
+CREATE INDEX idx_productos_precio ON productos (precio, codigo);
+
+-- Disponibilidad, combinable con la paginación por código
+CREATE INDEX idx_productos_disponible ON productos (disponible, codigo);
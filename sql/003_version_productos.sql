@@ -0,0 +1,5 @@
+-- Versión de cada producto, para el bloqueo optimista de ProductoDao.actualizar.
+-- Cada modificación la incrementa; una actualización que llega con una versión antigua no
+-- cambia ninguna fila y el cliente sabe que otro usuario ha guardado antes.
+
+ALTER TABLE productos ADD COLUMN version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,14 @@
+-- Imágenes de los productos (ImagenDao).
+-- Van en una tabla aparte para que las consultas de productos, incluido SELECT *, nunca
+-- lean los bytes de las imágenes. La miniatura se genera al subir la imagen y es lo único
+-- que se lee al seleccionar un producto; la imagen original solo se lee si se pide.
+
+CREATE TABLE IF NOT EXISTS productos_imagenes (
+    codigo    VARCHAR(5)  NOT NULL,
+    tipo      VARCHAR(50) NOT NULL COMMENT 'Tipo MIME de la imagen original',
+    miniatura MEDIUMBLOB  NOT NULL,
+    imagen    LONGBLOB    NOT NULL,
+    PRIMARY KEY (codigo),
+    CONSTRAINT fk_productos_imagenes_producto FOREIGN KEY (codigo)
+        REFERENCES productos (codigo) ON DELETE CASCADE
+);
@@ -0,0 +1,181 @@
+package es.guillearana.examendein1;
+
+import es.guillearana.examendein1.conexion.ConexionBD;
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.dao.ProductoDaoCache;
+import es.guillearana.examendein1.dao.ProductoRepositorio;
+import es.guillearana.examendein1.ficheros.ExportadorProductos;
+import es.guillearana.examendein1.ficheros.ImportadorProductos;
+import es.guillearana.examendein1.ficheros.ResumenImportacion;
+import es.guillearana.examendein1.servidor.ServidorProductos;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Punto de entrada sin interfaz gráfica para las tareas masivas sobre productos.
+ *
+ * Se ejecuta como una clase principal normal (no arranca JavaFX), por lo que puede
+ * usarse en servidores o tareas programadas:
+ * <pre>
+ *     java -m es.guillearana.examendein1/es.guillearana.examendein1.Consola importar productos.csv
+ *     java -m es.guillearana.examendein1/es.guillearana.examendein1.Consola servidor 8080
+ *     java -m es.guillearana.examendein1/es.guillearana.examendein1.Consola purgar-cambios 7
+ * </pre>
+ */
+public class Consola {
+
+    private Consola() {
+    }
+
+    /**
+     * Ejecuta la orden indicada en los argumentos.
+     *
+     * @param args la orden y sus parámetros
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            mostrarUso();
+            System.exit(2);
+        }
+
+        int codigoSalida;
+        try {
+            switch (args[0]) {
+                case "importar":
+                    codigoSalida = importar(args);
+                    break;
+                case "exportar":
+                    codigoSalida = exportar(args);
+                    break;
+                case "servidor":
+                    codigoSalida = servidor(args);
+                    break;
+                case "purgar-cambios":
+                    codigoSalida = purgarCambios(args);
+                    break;
+                default:
+                    mostrarUso();
+                    codigoSalida = 2;
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            codigoSalida = 1;
+        } finally {
+            ConexionBD.cerrarInstancia();
+        }
+        System.exit(codigoSalida);
+    }
+
+    /**
+     * Importa un fichero CSV o TSV y muestra el resumen y los primeros rechazos.
+     *
+     * @return 0 si no hubo rechazos, 3 si algunas filas se rechazaron
+     */
+    private static int importar(String[] args) throws Exception {
+        if (args.length != 2) {
+            mostrarUso();
+            return 2;
+        }
+        ImportadorProductos importador = new ImportadorProductos(ProductoRepositorio.crear());
+        importador.setProgreso(parcial -> System.out.printf("\r%d filas leídas, %d insertadas, %d rechazadas",
+                parcial.getFilasLeidas(), parcial.getInsertadas(), parcial.getRechazadas()));
+
+        ResumenImportacion resumen = importador.importar(Path.of(args[1]));
+        System.out.println();
+        System.out.println(resumen);
+        resumen.getDetallesRechazos().forEach(System.out::println);
+        return resumen.getRechazadas() == 0 ? 0 : 3;
+    }
+
+    /**
+     * Exporta todos los productos a un fichero CSV o JSON Lines.
+     * Si no se indica el formato, se deduce de la extensión del fichero.
+     *
+     * @return 0 si la exportación termina bien
+     */
+    private static int exportar(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            mostrarUso();
+            return 2;
+        }
+        Path destino = Path.of(args[1]);
+        ExportadorProductos.Formato formato = args.length == 3
+                ? ExportadorProductos.Formato.valueOf(args[2].toUpperCase(Locale.ROOT))
+                : ExportadorProductos.Formato.desdeFichero(destino);
+
+        ExportadorProductos exportador = new ExportadorProductos(ProductoRepositorio.crear());
+        exportador.setProgreso((escritas, total) -> System.out.printf("\r%d de %d productos exportados", escritas, total));
+
+        long inicio = System.nanoTime();
+        long filas = exportador.exportar(destino, formato);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println();
+        System.out.printf("%d productos exportados a %s en %.1f s (%.0f filas/s)%n",
+                filas, destino, segundos, segundos == 0 ? 0 : filas / segundos);
+        return 0;
+    }
+
+    /**
+     * Publica el catálogo por HTTP hasta que se detiene el proceso (Ctrl+C).
+     * El puerto se toma del argumento o, si no se indica, de {@code servidor.puerto}.
+     *
+     * @return no vuelve mientras el servidor está en marcha
+     */
+    private static int servidor(String[] args) throws Exception {
+        if (args.length > 2) {
+            mostrarUso();
+            return 2;
+        }
+        int puerto = args.length == 2 ? Integer.parseInt(args[1]) : Propiedades.getEntero("servidor.puerto", 8080);
+        InetSocketAddress direccion = new InetSocketAddress(Propiedades.getValor("servidor.host", "localhost"), puerto);
+        // Con la caché activa, las consultas repetidas no llegan a la base de datos
+        ProductoRepositorio repositorio = ProductoRepositorio.crear();
+        if (Boolean.parseBoolean(Propiedades.getValor("cache.activa", "true"))) {
+            repositorio = new ProductoDaoCache(repositorio);
+        }
+
+        ServidorProductos servidor = new ServidorProductos(repositorio, direccion);
+        CountDownLatch detenido = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.detener();
+            ConexionBD.cerrarInstancia();
+            detenido.countDown();
+        }, "detener-servidor"));
+        servidor.iniciar();
+        System.out.println("Servidor de productos en http://" + servidor.getDireccion().getHostString() + ":"
+                + servidor.getDireccion().getPort() + "/productos");
+        detenido.await();
+        return 0;
+    }
+
+    /**
+     * Borra del registro de cambios los anotados hace más de los días indicados o, si no se
+     * indican, de {@code cambios.retencionDias}. Pensada para ejecutarse en una tarea programada.
+     *
+     * @return 0 si la purga termina bien
+     */
+    private static int purgarCambios(String[] args) throws Exception {
+        if (args.length > 2) {
+            mostrarUso();
+            return 2;
+        }
+        int dias = args.length == 2 ? Integer.parseInt(args[1]) : Propiedades.getEntero("cambios.retencionDias", 7);
+        long borrados = ProductoRepositorio.crear().purgarCambios(Instant.now().minus(Duration.ofDays(dias)));
+        System.out.printf("%d cambios anteriores a %d días borrados del registro%n", borrados, dias);
+        return 0;
+    }
+
+    private static void mostrarUso() {
+        System.err.println("Uso:");
+        System.err.println("  importar <fichero.csv|fichero.tsv>");
+        System.err.println("  exportar <fichero> [csv|jsonl]");
+        System.err.println("  servidor [puerto]");
+        System.err.println("  purgar-cambios [dias]");
+    }
+}
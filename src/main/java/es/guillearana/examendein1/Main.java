@@ -1,15 +1,26 @@
 package es.guillearana.examendein1;
 
+import es.guillearana.examendein1.conexion.ConexionBD;
 import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.controllers.HelloController;
+import es.guillearana.examendein1.metricas.TiemposArranque;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -19,6 +30,9 @@ import java.util.ResourceBundle;
  */
 public class Main extends Application {
 
+    // Controlador de la ventana principal, para detener sus tareas al cerrar
+    private HelloController controlador;
+
     /**
      * Método que se ejecuta al iniciar la aplicación, configurando el idioma,
      * cargando la interfaz y mostrando la ventana principal.
@@ -48,9 +62,8 @@ public class Main extends Application {
             // Añadir el GridPane (contenido) encima del fondo
             stackPane.getChildren().add(root);  // Añadir GridPane como segundo hijo*/
 
-            // Crear la escena y agregar hojas de estilo
-            FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("hello-view.fxml"));
-            Scene scene = new Scene(fxmlLoader.load(), 575, 627);
+            // Crear la escena con un indicador de carga, para que la ventana aparezca sin esperar al FXML
+            Scene scene = new Scene(crearMarcador(), 575, 627);
             //scene.getStylesheets().add(getClass().getResource("/css/estilos.css").toExternalForm());
             primaryStage.setMaxHeight(755);
             primaryStage.setMaxWidth(1150);
@@ -60,21 +73,96 @@ public class Main extends Application {
             // Establecer el título de la ventana.
             primaryStage.setTitle("Fruta");
 
-            // Establecer la escena en la ventana principal y mostrarla
+            // Establecer la escena en la ventana principal y mostrarla. La interfaz se carga
+            // cuando ya se ha pintado el primer fotograma
             primaryStage.setScene(scene);
+            scene.addPostLayoutPulseListener(new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    TiemposArranque.marcar("primer fotograma");
+                    Platform.runLater(() -> cargarInterfaz(scene));
+                }
+            });
             primaryStage.show();
+            TiemposArranque.marcar("ventana");
         } catch(Exception e) {
             // Manejar excepciones imprimiendo la traza de errores
             e.printStackTrace();
         }
     }
 
+    /**
+     * Crea el contenido provisional de la ventana mientras se carga la interfaz.
+     *
+     * @return un indicador de carga centrado
+     */
+    private static Parent crearMarcador() {
+        ProgressIndicator indicador = new ProgressIndicator();
+        indicador.setMaxSize(48, 48);
+        VBox marcador = new VBox(10, indicador, new Label("Cargando productos..."));
+        marcador.setAlignment(Pos.CENTER);
+        return marcador;
+    }
+
+    /**
+     * Carga la interfaz desde el FXML y sustituye con ella el indicador de carga.
+     * El controlador pide en segundo plano la primera página de productos.
+     *
+     * @param scene la escena de la ventana principal
+     */
+    private void cargarInterfaz(Scene scene) {
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("hello-view.fxml"));
+            scene.setRoot(fxmlLoader.load());
+            controlador = fxmlLoader.getController();
+            // Antes de cerrar, el controlador guarda los cambios que aún no se han enviado
+            scene.getWindow().setOnCloseRequest(controlador::confirmarCierre);
+            TiemposArranque.marcar("interfaz");
+        } catch (IOException e) {
+            // Manejar excepciones imprimiendo la traza de errores
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lee la configuración y abre el pool de conexiones en un hilo aparte mientras arranca JavaFX,
+     * para que la primera consulta no tenga que esperar a la conexión. Si la base de datos no
+     * responde, no pasa nada: la primera consulta lo volverá a intentar.
+     */
+    private static void precalentar() {
+        Thread.ofPlatform().daemon().name("precalentamiento").start(() -> {
+            if (!Boolean.parseBoolean(Propiedades.getValor("arranque.precalentar", "true"))) {
+                return;
+            }
+            try {
+                ConexionBD.getInstancia();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("No se pudo abrir el pool de conexiones al arrancar: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Método que se ejecuta al cerrar la aplicación, deteniendo las lecturas en segundo plano
+     * y liberando las conexiones del pool.
+     */
+    @Override
+    public void stop() {
+        if (controlador != null) {
+            controlador.detener();
+        }
+        ConexionBD.cerrarInstancia();
+    }
+
     /**
      * Método principal que inicia la aplicación JavaFX.
      *
      * @param args Los argumentos de línea de comandos pasados a la aplicación.
      */
     public static void main(String[] args) {
+        TiemposArranque.marcar("main");
+        precalentar();
         launch(args);
     }
 }
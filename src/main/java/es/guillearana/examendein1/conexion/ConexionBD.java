@@ -1,61 +1,276 @@
 package es.guillearana.examendein1.conexion;
 
+import es.guillearana.examendein1.metricas.Metricas;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Clase que gestiona la conexión a la base de datos.
+ * Clase que gestiona las conexiones a la base de datos mediante un pool acotado.
+ *
+ * En lugar de abrir una conexión nueva en cada operación, el pool mantiene un conjunto de
+ * conexiones físicas reutilizables. Los tamaños mínimo y máximo, el tiempo de inactividad
+ * tras el cual se cierra una conexión sobrante, el tiempo máximo de espera al pedir una
+ * conexión y la validación al prestarla se leen desde el archivo de propiedades.
+ *
+ * Las conexiones que devuelve {@link #getConexion()} se devuelven al pool al llamar a
+ * {@code close()}, por lo que pueden usarse con try-with-resources igual que antes.
  *
- * Esta clase se encarga de establecer una conexión con la base de datos utilizando
- * los valores de configuración (como la URL, el usuario y la contraseña) almacenados
- * en el archivo de propiedades. La conexión se configura para que realice las operaciones
- * de manera automática y se cierra adecuadamente cuando ya no sea necesaria.
+ * Cada conexión física guarda además sus sentencias preparadas ({@code sentencias.cache} como
+ * máximo, 0 = sin caché): {@code prepareStatement(sql)} devuelve la que ya se preparó con el mismo
+ * SQL en esa conexión y su {@code close()} la deja lista para el siguiente uso en lugar de cerrarla.
+ * Así las operaciones repetidas del DAO no vuelven a analizar el SQL ni en el driver ni, con
+ * {@code sentencias.servidor=true} en MySQL, en el servidor. Es la única caché de sentencias: la
+ * del driver de MySQL ({@code cachePrepStmts}) no se activa.
+ *
+ * Todas las sentencias que se obtienen de una conexión prestada devuelven esa misma conexión en
+ * {@code getConnection()}, nunca la física, para que cerrarla a través de ellas la devuelva al pool.
  */
 public class ConexionBD {
 
-	/** Objeto que representa la conexión a la base de datos. */
-	private Connection conexion;
+	/** Instancia compartida del pool para toda la aplicación. */
+	private static ConexionBD instancia;
+
+	/** Datos de conexión obtenidos desde el archivo de propiedades. */
+	private final String url;
+	private final String user;
+	private final String password;
+
+	/** Parámetros de dimensionado del pool. */
+	private final int tamanoMinimo;
+	private final int tamanoMaximo;
+	private final long tiempoInactividadMs;
+	private final long tiempoEsperaMs;
+	private final int tiempoValidacionSeg;
+	private final int tamanoCacheSentencias;
+
+	/** Conexiones físicas libres, la más reciente al principio. */
+	private final ArrayDeque<ConexionInactiva> inactivas = new ArrayDeque<>();
+
+	/** Cerrojo que protege el estado del pool y condición para esperar conexiones libres. */
+	private final ReentrantLock cerrojo = new ReentrantLock();
+	private final Condition conexionLiberada = cerrojo.newCondition();
+
+	/** Número de conexiones físicas abiertas (prestadas, libres o en creación). */
+	private int total;
+	/** Número de conexiones prestadas en este momento. */
+	private int activas;
+	private boolean cerrado;
+
+	/** Contadores para las estadísticas del pool. */
+	private long prestamos;
+	private long esperas;
+	private long agotados;
+	private long tiempoEsperaTotalNanos;
+	private long tiempoEsperaMaximoNanos;
+	private final LongAdder sentenciasPreparadas = new LongAdder();
+	private final LongAdder sentenciasReutilizadas = new LongAdder();
+
+	/** Sentencias preparadas de cada conexión física abierta. */
+	private final Map<Connection, CacheSentencias> sentencias = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	/** Tarea periódica que cierra las conexiones inactivas sobrantes. */
+	private final ScheduledExecutorService limpiador;
 
 	/**
-	 * Constructor que establece la conexión a la base de datos.
+	 * Constructor que crea el pool y abre las conexiones mínimas.
 	 * Utiliza los valores de configuración obtenidos desde el archivo de propiedades.
 	 * La conexión también se configura con el ajuste de zona horaria predeterminado.
 	 *
-	 * @throws SQLException si ocurre un error al establecer la conexión con la base de datos
+	 * @throws SQLException si ocurre un error al establecer las conexiones iniciales
 	 */
 	public ConexionBD() throws SQLException {
-		// Obtenemos la URL de conexión, el usuario y la contraseña desde las propiedades
-		String url = Propiedades.getValor("url") + "?serverTimezone=" + TimeZone.getDefault().getID();
-		String user = Propiedades.getValor("user");
-		String password = Propiedades.getValor("password");
+		// Obtenemos la URL de conexión, el usuario y la contraseña desde las propiedades.
+		// Con almacenamiento local se usan las claves local.* de la base de datos embebida
+		String prefijo = "local".equalsIgnoreCase(Propiedades.getValor("almacenamiento", "mysql").trim()) ? "local." : "";
+		this.url = construirUrl(Propiedades.getValor(prefijo + "url"));
+		this.user = Propiedades.getValor(prefijo + "user");
+		this.password = Propiedades.getValor(prefijo + "password");
 
-		// Creamos la conexión a la base de datos
-		conexion = DriverManager.getConnection(url, user, password);
+		// Obtenemos el dimensionado del pool, con valores por defecto razonables
+		this.tamanoMaximo = Math.max(1, Propiedades.getEntero("pool.maximo", 10));
+		this.tamanoMinimo = Math.min(tamanoMaximo, Math.max(0, Propiedades.getEntero("pool.minimo", 2)));
+		this.tiempoInactividadMs = Propiedades.getEntero("pool.inactividadMs", 300_000);
+		this.tiempoEsperaMs = Propiedades.getEntero("pool.esperaMs", 5_000);
+		this.tiempoValidacionSeg = Propiedades.getEntero("pool.validacionSeg", 2);
+		this.tamanoCacheSentencias = Math.max(0, Propiedades.getEntero("sentencias.cache", 32));
 
-		// Configuramos la conexión para que realice las operaciones de manera automática
-		conexion.setAutoCommit(true);
+		// Abrimos las conexiones mínimas para que las primeras operaciones no esperen
+		try {
+			for (int i = 0; i < tamanoMinimo; i++) {
+				inactivas.push(new ConexionInactiva(abrirConexion()));
+				total++;
+			}
+		} catch (SQLException e) {
+			cerrarInactivas();
+			throw e;
+		}
+
+		long intervalo = Math.max(1_000, Propiedades.getEntero("pool.limpiezaMs", 30_000));
+		limpiador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+			Thread hilo = new Thread(tarea, "pool-bd-limpiador");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		limpiador.scheduleWithFixedDelay(this::expulsarInactivas, intervalo, intervalo, TimeUnit.MILLISECONDS);
 	}
 
 	/**
-	 * Obtiene la conexión a la base de datos.
+	 * Obtiene el pool compartido por toda la aplicación, creándolo la primera vez.
 	 *
-	 * @return la conexión a la base de datos
+	 * @return el pool de conexiones
+	 * @throws SQLException si ocurre un error al crear el pool
 	 */
-	public Connection getConexion() {
-		return conexion;
+	public static synchronized ConexionBD getInstancia() throws SQLException {
+		if (instancia == null || instancia.cerrado) {
+			instancia = new ConexionBD();
+		}
+		return instancia;
+	}
+
+	/**
+	 * Cierra el pool compartido, si existe. Se llama al terminar la aplicación.
+	 */
+	public static synchronized void cerrarInstancia() {
+		if (instancia != null) {
+			instancia.cerrar();
+			instancia = null;
+		}
 	}
 
 	/**
-	 * Cierra la conexión con la base de datos.
+	 * Obtiene una conexión del pool. Si no hay ninguna libre y el pool está lleno,
+	 * espera como máximo el tiempo configurado en {@code pool.esperaMs}.
 	 *
-	 * Este método comprueba si la conexión está activa antes de intentar cerrarla.
-	 * Si la conexión se cierra exitosamente, se imprime un mensaje indicando que
-	 * la conexión ha sido cerrada.
+	 * La conexión devuelta vuelve al pool al llamar a su método {@code close()}.
 	 *
-	 * @throws SQLException Si hay un error al cerrar la conexión,
-	 *                     como si la conexión ya se encuentra cerrada.
+	 * @return una conexión validada lista para usarse
+	 * @throws SQLException si el pool está cerrado, se agota el tiempo de espera
+	 *                      o no se puede abrir una conexión nueva
+	 */
+	public Connection getConexion() throws SQLException {
+		long inicio = System.nanoTime();
+		boolean haEsperado = false;
+
+		while (true) {
+			ConexionInactiva libre = null;
+			boolean crearNueva = false;
+
+			cerrojo.lock();
+			try {
+				long restante = TimeUnit.MILLISECONDS.toNanos(tiempoEsperaMs) - (System.nanoTime() - inicio);
+				while (!cerrado && inactivas.isEmpty() && total >= tamanoMaximo) {
+					if (restante <= 0) {
+						agotados++;
+						throw new SQLException("Tiempo de espera agotado al obtener una conexión del pool ("
+								+ tamanoMaximo + " conexiones en uso)");
+					}
+					haEsperado = true;
+					restante = conexionLiberada.awaitNanos(restante);
+				}
+				if (cerrado) {
+					throw new SQLException("El pool de conexiones está cerrado");
+				}
+
+				if (!inactivas.isEmpty()) {
+					libre = inactivas.pop();
+				} else {
+					crearNueva = true;
+				}
+				// Reservamos el hueco antes de soltar el cerrojo
+				total += crearNueva ? 1 : 0;
+				activas++;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrumpido mientras se esperaba una conexión del pool", e);
+			} finally {
+				cerrojo.unlock();
+			}
+
+			// La creación y la validación se hacen fuera del cerrojo para no bloquear a otros hilos
+			Connection fisica;
+			if (crearNueva) {
+				try {
+					fisica = abrirConexion();
+				} catch (SQLException | RuntimeException e) {
+					descartar(null);
+					throw e;
+				}
+			} else {
+				fisica = libre.conexion;
+				if (!esValida(fisica)) {
+					descartar(fisica);
+					continue;
+				}
+			}
+
+			long espera = System.nanoTime() - inicio;
+			registrarPrestamo(espera, haEsperado);
+			Metricas.duracion("pool.obtenerConexion", espera);
+			return envolver(fisica);
+		}
+	}
+
+	/**
+	 * Obtiene una instantánea de las estadísticas del pool.
+	 *
+	 * @return las estadísticas actuales del pool
+	 */
+	public EstadisticasPool getEstadisticas() {
+		cerrojo.lock();
+		try {
+			return new EstadisticasPool(activas, inactivas.size(), total, tamanoMaximo, prestamos, esperas,
+					agotados, tiempoEsperaTotalNanos, tiempoEsperaMaximoNanos, sentenciasPreparadas.sum(),
+					sentenciasReutilizadas.sum());
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Cierra el pool y todas las conexiones libres. Las conexiones prestadas se cierran
+	 * cuando se devuelven.
+	 */
+	public void cerrar() {
+		cerrojo.lock();
+		try {
+			cerrado = true;
+			conexionLiberada.signalAll();
+		} finally {
+			cerrojo.unlock();
+		}
+		limpiador.shutdownNow();
+		cerrarInactivas();
+	}
+
+	/**
+	 * Comprueba si una conexión está cerrada o es nula.
+	 *
+	 * @param conn la conexión que se quiere comprobar
+	 * @return true si la conexión es nula o está cerrada, false en caso contrario
 	 */
 	public boolean isConnectionClosed(Connection conn) {
 		try {
@@ -67,12 +282,483 @@ public class ConexionBD {
 	}
 
 	/**
-	 * Verifica si la conexión está abierta.
+	 * Verifica si el pool está abierto y puede prestar conexiones.
+	 *
+	 * @return true si el pool está abierto, false en caso contrario.
+	 */
+	public boolean isConnected() {
+		cerrojo.lock();
+		try {
+			return !cerrado;
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Construye la URL de conexión a partir de la URL base del archivo de propiedades.
+	 * Se añade la zona horaria; si {@code consulta.fetchSize} es positivo, se activan los
+	 * cursores en el servidor para que las lecturas continuas se hagan por bloques, y si
+	 * {@code lote.reescribir} está activo, el driver agrupa los lotes en pocas sentencias.
+	 * Con {@code sentencias.servidor} y la caché de sentencias del pool activa, las sentencias se
+	 * preparan en el servidor y siguen preparadas mientras están en la caché; sin caché no se
+	 * activa, porque cada sentencia costaría una ida y vuelta más para prepararla y otra para cerrarla.
+	 * Estos parámetros son del driver de MySQL: con otras bases de datos la URL se usa tal cual.
+	 *
+	 * @param base la URL base del archivo de propiedades
+	 * @return la URL de conexión con sus parámetros
+	 */
+	private static String construirUrl(String base) {
+		if (!base.startsWith("jdbc:mysql:")) {
+			return base;
+		}
+		StringBuilder url = new StringBuilder(base)
+				.append(base.contains("?") ? '&' : '?')
+				.append("serverTimezone=").append(TimeZone.getDefault().getID());
+		if (Propiedades.getEntero("consulta.fetchSize", 0) > 0) {
+			url.append("&useCursorFetch=true");
+		}
+		if (Boolean.parseBoolean(Propiedades.getValor("lote.reescribir", "true"))) {
+			url.append("&rewriteBatchedStatements=true");
+		}
+		if (Boolean.parseBoolean(Propiedades.getValor("sentencias.servidor", "true"))
+				&& Propiedades.getEntero("sentencias.cache", 32) > 0) {
+			url.append("&useServerPrepStmts=true");
+		}
+		return url.toString();
+	}
+
+	/**
+	 * Abre una conexión física nueva con la base de datos.
+	 *
+	 * @return la conexión creada
+	 * @throws SQLException si ocurre un error al establecer la conexión
+	 */
+	private Connection abrirConexion() throws SQLException {
+		Connection conexion = DriverManager.getConnection(url, user, password);
+		// Configuramos la conexión para que realice las operaciones de manera automática
+		conexion.setAutoCommit(true);
+		return conexion;
+	}
+
+	/**
+	 * Valida una conexión antes de prestarla.
+	 *
+	 * @param conexion la conexión física que se quiere validar
+	 * @return true si la conexión sigue siendo utilizable
+	 */
+	private boolean esValida(Connection conexion) {
+		try {
+			return conexion.isValid(tiempoValidacionSeg);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Anota un préstamo y el tiempo que ha tardado en las estadísticas del pool.
+	 */
+	private void registrarPrestamo(long esperaNanos, boolean haEsperado) {
+		cerrojo.lock();
+		try {
+			prestamos++;
+			if (haEsperado) {
+				esperas++;
+			}
+			tiempoEsperaTotalNanos += esperaNanos;
+			tiempoEsperaMaximoNanos = Math.max(tiempoEsperaMaximoNanos, esperaNanos);
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	/**
+	 * Devuelve una conexión física al pool, restaurando su estado por defecto.
+	 * Si la conexión está rota o el pool está cerrado, la conexión se cierra.
+	 *
+	 * @param conexion la conexión física que se devuelve
+	 */
+	private void devolver(Connection conexion) {
+		boolean reutilizable;
+		try {
+			if (!conexion.getAutoCommit()) {
+				conexion.rollback();
+				conexion.setAutoCommit(true);
+			}
+			reutilizable = !conexion.isClosed();
+		} catch (SQLException e) {
+			reutilizable = false;
+		}
+
+		if (!reutilizable) {
+			descartar(conexion);
+			return;
+		}
+		CacheSentencias cache = sentencias.get(conexion);
+		if (cache != null) {
+			cache.liberarTodas();
+		}
+
+		cerrojo.lock();
+		try {
+			activas--;
+			if (!cerrado) {
+				inactivas.push(new ConexionInactiva(conexion));
+				conexionLiberada.signal();
+				return;
+			}
+			total--;
+		} finally {
+			cerrojo.unlock();
+		}
+		cerrarSilenciosamente(conexion);
+	}
+
+	/**
+	 * Libera el hueco de una conexión prestada que no vuelve al pool y la cierra.
+	 *
+	 * @param conexion la conexión física que se descarta, o null si no llegó a abrirse
+	 */
+	private void descartar(Connection conexion) {
+		cerrojo.lock();
+		try {
+			activas--;
+			total--;
+			conexionLiberada.signal();
+		} finally {
+			cerrojo.unlock();
+		}
+		if (conexion != null) {
+			cerrarSilenciosamente(conexion);
+		}
+	}
+
+	/**
+	 * Cierra las conexiones libres que llevan inactivas más tiempo del configurado,
+	 * manteniendo siempre el tamaño mínimo del pool.
+	 */
+	private void expulsarInactivas() {
+		List<Connection> expulsadas = new ArrayList<>();
+		long limite = System.currentTimeMillis() - tiempoInactividadMs;
+
+		cerrojo.lock();
+		try {
+			// Las más antiguas están al final de la cola
+			Iterator<ConexionInactiva> it = inactivas.descendingIterator();
+			while (it.hasNext() && total > tamanoMinimo) {
+				ConexionInactiva inactiva = it.next();
+				if (inactiva.desde > limite) {
+					break;
+				}
+				it.remove();
+				total--;
+				expulsadas.add(inactiva.conexion);
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+		expulsadas.forEach(this::cerrarSilenciosamente);
+	}
+
+	/**
+	 * Cierra todas las conexiones libres del pool.
+	 */
+	private void cerrarInactivas() {
+		List<Connection> pendientes = new ArrayList<>();
+		cerrojo.lock();
+		try {
+			for (ConexionInactiva inactiva : inactivas) {
+				pendientes.add(inactiva.conexion);
+			}
+			total -= inactivas.size();
+			inactivas.clear();
+		} finally {
+			cerrojo.unlock();
+		}
+		pendientes.forEach(this::cerrarSilenciosamente);
+	}
+
+	private void cerrarSilenciosamente(Connection conexion) {
+		CacheSentencias cache = sentencias.remove(conexion);
+		if (cache != null) {
+			cache.cerrar();
+		}
+		try {
+			conexion.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Envuelve una conexión física para que {@code close()} la devuelva al pool.
 	 *
-	 * @return true si la conexión está abierta, false en caso contrario.
-	 * @throws SQLException Si hay un error al verificar el estado de la conexión.
+	 * @param fisica la conexión física prestada
+	 * @return la conexión que se entrega al llamante
 	 */
-	public boolean isConnected() throws SQLException {
-		return conexion != null && !conexion.isClosed();
+	private Connection envolver(Connection fisica) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class}, new ConexionPrestada(fisica));
+	}
+
+	/**
+	 * Envuelve una sentencia que no está en la caché para que {@code getConnection()} devuelva
+	 * la conexión prestada. Su {@code close()} la cierra normalmente.
+	 *
+	 * @param fisica la sentencia de la conexión física
+	 * @param tipo la interfaz de la sentencia: Statement, PreparedStatement o CallableStatement
+	 * @param prestada la conexión prestada que devuelve {@code getConnection()}
+	 * @return la sentencia que se entrega al llamante
+	 */
+	private static Statement envolverSentencia(Statement fisica, Class<?> tipo, Connection prestada) {
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{tipo},
+				(proxy, metodo, args) -> {
+					switch (metodo.getName()) {
+						case "getConnection":
+							return prestada;
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						default:
+							try {
+								return metodo.invoke(fisica, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+					}
+				});
+	}
+
+	/**
+	 * Conexión libre junto con el instante en que se devolvió al pool.
+	 */
+	private static final class ConexionInactiva {
+		private final Connection conexion;
+		private final long desde = System.currentTimeMillis();
+
+		private ConexionInactiva(Connection conexion) {
+			this.conexion = conexion;
+		}
+	}
+
+	/**
+	 * Manejador de la conexión prestada: delega en la conexión física y la devuelve
+	 * al pool la primera vez que se cierra.
+	 */
+	private final class ConexionPrestada implements InvocationHandler {
+		private Connection fisica;
+
+		private ConexionPrestada(Connection fisica) {
+			this.fisica = fisica;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			switch (metodo.getName()) {
+				case "close":
+					if (fisica != null) {
+						Connection devuelta = fisica;
+						fisica = null;
+						devolver(devuelta);
+					}
+					return null;
+				case "isClosed":
+					return fisica == null || fisica.isClosed();
+				case "prepareStatement":
+					// Solo se reutilizan las sentencias sin opciones: las demás pueden cambiar su estado
+					if (fisica != null && tamanoCacheSentencias > 0 && args.length == 1) {
+						return sentencias.computeIfAbsent(fisica, CacheSentencias::new)
+								.preparar((String) args[0], (Connection) proxy);
+					}
+					return envolverSentencia((Statement) delegar(metodo, args), metodo.getReturnType(), (Connection) proxy);
+				case "createStatement":
+				case "prepareCall":
+					return envolverSentencia((Statement) delegar(metodo, args), metodo.getReturnType(), (Connection) proxy);
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "ConexionPrestada[" + fisica + "]";
+				default:
+					return delegar(metodo, args);
+			}
+		}
+
+		private Object delegar(Method metodo, Object[] args) throws Throwable {
+			if (fisica == null) {
+				throw new SQLException("La conexión ya ha sido devuelta al pool");
+			}
+			try {
+				return metodo.invoke(fisica, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Sentencias preparadas de una conexión física, de la menos a la más usada recientemente.
+	 * Si se supera {@code sentencias.cache}, se cierra la que lleva más tiempo sin usarse.
+	 */
+	private final class CacheSentencias {
+		private final Connection fisica;
+		private final LinkedHashMap<String, SentenciaCacheada> porSql = new LinkedHashMap<>(16, 0.75f, true);
+
+		private CacheSentencias(Connection fisica) {
+			this.fisica = fisica;
+		}
+
+		/**
+		 * Devuelve la sentencia preparada con este SQL, preparándola si no estaba en la caché.
+		 * Si la que hay está en uso (dos sentencias iguales abiertas a la vez), se prepara
+		 * otra aparte que se cierra normalmente.
+		 *
+		 * @param sql el SQL de la sentencia
+		 * @param prestada la conexión prestada que devuelve {@code getConnection()}
+		 * @return la sentencia preparada
+		 * @throws SQLException si ocurre un error al preparar la sentencia
+		 */
+		private synchronized PreparedStatement preparar(String sql, Connection prestada) throws SQLException {
+			SentenciaCacheada sentencia = porSql.get(sql);
+			if (sentencia != null && sentencia.enUso) {
+				sentenciasPreparadas.increment();
+				return (PreparedStatement) envolverSentencia(fisica.prepareStatement(sql), PreparedStatement.class, prestada);
+			}
+			if (sentencia != null && !sentencia.sentencia.isClosed()) {
+				sentenciasReutilizadas.increment();
+			} else {
+				sentenciasPreparadas.increment();
+				sentencia = new SentenciaCacheada(fisica.prepareStatement(sql));
+				porSql.put(sql, sentencia);
+				expulsarSobrantes();
+			}
+			sentencia.enUso = true;
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[]{PreparedStatement.class}, new SentenciaPrestada(this, sentencia, prestada));
+		}
+
+		/**
+		 * Cierra las sentencias libres más antiguas hasta volver al tamaño máximo.
+		 */
+		private void expulsarSobrantes() {
+			Iterator<SentenciaCacheada> it = porSql.values().iterator();
+			while (porSql.size() > tamanoCacheSentencias && it.hasNext()) {
+				SentenciaCacheada sentencia = it.next();
+				if (!sentencia.enUso) {
+					it.remove();
+					cerrarSentencia(sentencia.sentencia);
+				}
+			}
+		}
+
+		/**
+		 * Deja una sentencia lista para volver a usarla: cierra el resultado que haya quedado abierto
+		 * y devuelve a sus valores por defecto lo que el usuario anterior haya podido cambiar, como
+		 * la lectura por bloques. Si no se puede limpiar, se cierra.
+		 */
+		private synchronized void liberar(SentenciaCacheada sentencia) {
+			sentencia.enUso = false;
+			try {
+				PreparedStatement fisica = sentencia.sentencia;
+				ResultSet resultado = fisica.getResultSet();
+				if (resultado != null) {
+					resultado.close();
+				}
+				fisica.clearParameters();
+				fisica.clearBatch();
+				fisica.setFetchSize(0);
+				fisica.setMaxRows(0);
+				fisica.setQueryTimeout(0);
+			} catch (SQLException e) {
+				porSql.values().remove(sentencia);
+				cerrarSentencia(sentencia.sentencia);
+			}
+		}
+
+		/**
+		 * Libera las sentencias que se quedaron sin cerrar al devolver la conexión.
+		 */
+		private synchronized void liberarTodas() {
+			for (SentenciaCacheada sentencia : new ArrayList<>(porSql.values())) {
+				if (sentencia.enUso) {
+					liberar(sentencia);
+				}
+			}
+		}
+
+		private synchronized void cerrar() {
+			porSql.values().forEach(sentencia -> cerrarSentencia(sentencia.sentencia));
+			porSql.clear();
+		}
+
+		private void cerrarSentencia(PreparedStatement sentencia) {
+			try {
+				sentencia.close();
+			} catch (SQLException e) {
+				System.err.println("Error al cerrar una sentencia preparada: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Sentencia física guardada en la caché y si está prestada en este momento.
+	 */
+	private static final class SentenciaCacheada {
+		private final PreparedStatement sentencia;
+		private boolean enUso;
+
+		private SentenciaCacheada(PreparedStatement sentencia) {
+			this.sentencia = sentencia;
+		}
+	}
+
+	/**
+	 * Manejador de la sentencia prestada: delega en la sentencia física y la devuelve
+	 * a la caché la primera vez que se cierra.
+	 */
+	private static final class SentenciaPrestada implements InvocationHandler {
+		private final CacheSentencias cache;
+		private final Connection prestada;
+		private SentenciaCacheada sentencia;
+
+		private SentenciaPrestada(CacheSentencias cache, SentenciaCacheada sentencia, Connection prestada) {
+			this.cache = cache;
+			this.sentencia = sentencia;
+			this.prestada = prestada;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			switch (metodo.getName()) {
+				case "close":
+					if (sentencia != null) {
+						SentenciaCacheada devuelta = sentencia;
+						sentencia = null;
+						cache.liberar(devuelta);
+					}
+					return null;
+				case "isClosed":
+					return sentencia == null || sentencia.sentencia.isClosed();
+				case "getConnection":
+					return prestada;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "SentenciaPrestada[" + (sentencia != null ? sentencia.sentencia : null) + "]";
+				default:
+					if (sentencia == null) {
+						throw new SQLException("La sentencia ya está cerrada");
+					}
+					try {
+						return metodo.invoke(sentencia.sentencia, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+			}
+		}
 	}
 }
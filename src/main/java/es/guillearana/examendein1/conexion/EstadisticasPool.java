@@ -0,0 +1,148 @@
+package es.guillearana.examendein1.conexion;
+
+/**
+ * Instantánea de las estadísticas del pool de conexiones.
+ *
+ * Permite dimensionar el pool: si las esperas o los préstamos agotados son frecuentes,
+ * conviene aumentar {@code pool.maximo}; si casi todas las conexiones están libres,
+ * puede reducirse {@code pool.minimo}.
+ */
+public class EstadisticasPool {
+
+    private final int activas;
+    private final int inactivas;
+    private final int total;
+    private final int maximo;
+    private final long prestamos;
+    private final long esperas;
+    private final long agotados;
+    private final long tiempoEsperaTotalNanos;
+    private final long tiempoEsperaMaximoNanos;
+    private final long sentenciasPreparadas;
+    private final long sentenciasReutilizadas;
+
+    /**
+     * Constructor para inicializar las estadísticas con los valores del pool.
+     *
+     * @param activas las conexiones prestadas en este momento
+     * @param inactivas las conexiones libres en este momento
+     * @param total las conexiones físicas abiertas
+     * @param maximo el tamaño máximo del pool
+     * @param prestamos el número de conexiones prestadas desde que se creó el pool
+     * @param esperas el número de préstamos que tuvieron que esperar a una conexión libre
+     * @param agotados el número de préstamos que fallaron por agotar el tiempo de espera
+     * @param tiempoEsperaTotalNanos el tiempo total invertido en obtener conexiones
+     * @param tiempoEsperaMaximoNanos el mayor tiempo invertido en obtener una conexión
+     * @param sentenciasPreparadas el número de sentencias que se han tenido que preparar
+     * @param sentenciasReutilizadas el número de sentencias que se han sacado ya preparadas de la caché
+     */
+    public EstadisticasPool(int activas, int inactivas, int total, int maximo, long prestamos, long esperas,
+                            long agotados, long tiempoEsperaTotalNanos, long tiempoEsperaMaximoNanos,
+                            long sentenciasPreparadas, long sentenciasReutilizadas) {
+        this.activas = activas;
+        this.inactivas = inactivas;
+        this.total = total;
+        this.maximo = maximo;
+        this.prestamos = prestamos;
+        this.esperas = esperas;
+        this.agotados = agotados;
+        this.tiempoEsperaTotalNanos = tiempoEsperaTotalNanos;
+        this.tiempoEsperaMaximoNanos = tiempoEsperaMaximoNanos;
+        this.sentenciasPreparadas = sentenciasPreparadas;
+        this.sentenciasReutilizadas = sentenciasReutilizadas;
+    }
+
+    /**
+     * @return el número de conexiones prestadas en este momento
+     */
+    public int getActivas() {
+        return activas;
+    }
+
+    /**
+     * @return el número de conexiones libres en este momento
+     */
+    public int getInactivas() {
+        return inactivas;
+    }
+
+    /**
+     * @return el número de conexiones físicas abiertas
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return el tamaño máximo del pool
+     */
+    public int getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * @return el número de conexiones prestadas desde que se creó el pool
+     */
+    public long getPrestamos() {
+        return prestamos;
+    }
+
+    /**
+     * @return el número de préstamos que tuvieron que esperar a una conexión libre
+     */
+    public long getEsperas() {
+        return esperas;
+    }
+
+    /**
+     * @return el número de préstamos que fallaron por agotar el tiempo de espera
+     */
+    public long getAgotados() {
+        return agotados;
+    }
+
+    /**
+     * @return el tiempo medio, en milisegundos, invertido en obtener una conexión
+     */
+    public double getTiempoEsperaMedioMs() {
+        return prestamos == 0 ? 0 : tiempoEsperaTotalNanos / 1_000_000.0 / prestamos;
+    }
+
+    /**
+     * @return el mayor tiempo, en milisegundos, invertido en obtener una conexión
+     */
+    public double getTiempoEsperaMaximoMs() {
+        return tiempoEsperaMaximoNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return el número de sentencias que se han tenido que preparar
+     */
+    public long getSentenciasPreparadas() {
+        return sentenciasPreparadas;
+    }
+
+    /**
+     * @return el número de sentencias que se han sacado ya preparadas de la caché
+     */
+    public long getSentenciasReutilizadas() {
+        return sentenciasReutilizadas;
+    }
+
+    /**
+     * @return la proporción de sentencias sacadas de la caché, entre 0 y 1
+     */
+    public double getTasaAciertosSentencias() {
+        long pedidas = sentenciasPreparadas + sentenciasReutilizadas;
+        return pedidas == 0 ? 0 : (double) sentenciasReutilizadas / pedidas;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool[activas=%d, inactivas=%d, total=%d/%d, préstamos=%d, esperas=%d, agotados=%d, "
+                        + "espera media=%.2f ms, espera máxima=%.2f ms, sentencias reutilizadas=%d/%d (%.1f %%)]",
+                activas, inactivas, total, maximo, prestamos, esperas, agotados,
+                getTiempoEsperaMedioMs(), getTiempoEsperaMaximoMs(), sentenciasReutilizadas,
+                sentenciasPreparadas + sentenciasReutilizadas, getTasaAciertosSentencias() * 100);
+    }
+}
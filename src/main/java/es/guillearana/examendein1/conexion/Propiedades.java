@@ -9,6 +9,10 @@ import java.util.Properties;
  * Esta clase se encarga de cargar las propiedades desde un archivo de configuración
  * (configuration.properties) al iniciar la clase, y proporciona un método estático
  * para acceder a los valores de las propiedades de configuración por clave.
+ *
+ * Una propiedad del sistema con el mismo nombre ({@code -Dclave=valor}) tiene prioridad
+ * sobre el archivo, lo que permite apuntar a otra base de datos en pruebas de carga o
+ * benchmarks sin modificarlo. La ruta del archivo puede cambiarse con {@code -Dconfiguracion}.
  */
 public abstract class Propiedades {
 
@@ -17,7 +21,7 @@ public abstract class Propiedades {
 
     // Bloque estático para cargar la configuración desde un archivo de propiedades al iniciar la clase
     static {
-        try (FileInputStream input = new FileInputStream("configuration.properties")) {
+        try (FileInputStream input = new FileInputStream(System.getProperty("configuracion", "configuration.properties"))) {
             // Cargamos las propiedades desde el archivo
             props.load(input);
         } catch (Exception e) {
@@ -35,7 +39,7 @@ public abstract class Propiedades {
      */
     public static String getValor(String clave) {
         // Obtenemos el valor correspondiente a la clave proporcionada
-        String valor = props.getProperty(clave);
+        String valor = buscar(clave);
 
         // Si la clave existe y tiene un valor asociado, lo retornamos
         if (valor != null) {
@@ -45,4 +49,47 @@ public abstract class Propiedades {
         // En caso de que la clave no exista, lanzamos una excepción RuntimeException
         throw new RuntimeException("La clave solicitada en configuration.properties no está disponible");
     }
+
+    /**
+     * Obtiene el valor asociado a una clave, o un valor por defecto si la clave no existe.
+     *
+     * @param clave la clave de la propiedad que se desea obtener
+     * @param porDefecto el valor que se devuelve si la clave no está definida
+     * @return el valor asociado a la clave o el valor por defecto
+     */
+    public static String getValor(String clave, String porDefecto) {
+        String valor = buscar(clave);
+        return valor != null ? valor : porDefecto;
+    }
+
+    /**
+     * Obtiene el valor numérico asociado a una clave, o un valor por defecto si la clave no existe.
+     *
+     * @param clave la clave de la propiedad que se desea obtener
+     * @param porDefecto el valor que se devuelve si la clave no está definida
+     * @return el valor entero asociado a la clave o el valor por defecto
+     * @throws RuntimeException si el valor definido no es un número entero
+     */
+    public static int getEntero(String clave, int porDefecto) {
+        String valor = buscar(clave);
+        if (valor == null || valor.isBlank()) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("La clave " + clave + " de configuration.properties debe ser un número entero", e);
+        }
+    }
+
+    /**
+     * Busca una clave primero en las propiedades del sistema y después en el archivo.
+     *
+     * @param clave la clave de la propiedad
+     * @return el valor de la propiedad, o null si no está definida
+     */
+    private static String buscar(String clave) {
+        String valor = System.getProperty(clave);
+        return valor != null ? valor : props.getProperty(clave);
+    }
 }
@@ -0,0 +1,292 @@
+package es.guillearana.examendein1.controllers;
+
+import es.guillearana.examendein1.model.Producto;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cola de actualizaciones del formulario que todavía no se han enviado a la base de datos.
+ *
+ * Las ediciones seguidas de un mismo producto se combinan en una sola: se envían los últimos
+ * datos, con la versión que había al empezar la primera edición. La cola se envía entera, como
+ * un lote en una sola transacción, cuando pasa el tiempo de espera desde la primera edición
+ * pendiente o cuando se llega al número máximo de productos.
+ *
+ * Solo hay un envío en curso a la vez: lo que se edita mientras tanto espera al siguiente, y
+ * si el envío guarda un producto que se ha vuelto a editar, la nueva edición pasa a esperar
+ * la versión recién guardada. Si el envío falla, sus actualizaciones vuelven a la cola y se
+ * reintentan tras una espera que se duplica con cada fallo seguido.
+ *
+ * Todos los métodos deben llamarse desde el hilo de JavaFX.
+ */
+class ColaActualizaciones {
+
+    private final int maximo;
+    private final long esperaMs;
+    private final long reintentoMaxMs;
+    // Cuenta desde la primera edición pendiente; al terminar, se pide el envío
+    private final PauseTransition espera;
+    // Cuenta desde un envío fallido; mientras dura, las ediciones nuevas no adelantan el reintento
+    private final PauseTransition reintento = new PauseTransition();
+    private boolean reintentando;
+    private int fallosSeguidos;
+    // Actualizaciones pendientes por código, en el orden de su primera edición
+    private final Map<String, Actualizacion> pendientes = new LinkedHashMap<>();
+    // Envío en curso, o null; uno cancelado cuenta como terminado
+    private CompletableFuture<?> envio;
+    private long combinadas;
+
+    /**
+     * Constructor para inicializar la cola.
+     *
+     * @param esperaMs los milisegundos que espera una edición antes de enviarse
+     * @param maximo el número de productos pendientes a partir del cual conviene enviar sin esperar
+     * @param reintentoMaxMs los milisegundos que como mucho se espera para reintentar un envío fallido
+     * @param alVencer acción que envía la cola cuando pasa el tiempo de espera o el de reintento
+     */
+    ColaActualizaciones(long esperaMs, int maximo, long reintentoMaxMs, Runnable alVencer) {
+        this.maximo = Math.max(1, maximo);
+        this.esperaMs = Math.max(0, esperaMs);
+        this.reintentoMaxMs = reintentoMaxMs;
+        this.espera = new PauseTransition(Duration.millis(this.esperaMs));
+        this.espera.setOnFinished(event -> alVencer.run());
+        this.reintento.setOnFinished(event -> {
+            reintentando = false;
+            alVencer.run();
+        });
+    }
+
+    /**
+     * Añade una actualización a la cola. Si ya había una pendiente del mismo producto,
+     * la sustituye conservando la versión esperada y los datos originales de la primera.
+     *
+     * @param fila el producto de la tabla que se ha editado
+     * @param original el producto tal como era al empezar a editarlo
+     * @param cambios el producto con los datos editados y la versión esperada
+     * @param imagen la imagen elegida para el producto, o null
+     * @return true si la cola ha llegado al máximo y conviene enviarla ya
+     */
+    boolean anotar(Producto fila, Producto original, Producto cambios, File imagen) {
+        Actualizacion anterior = pendientes.get(cambios.getCodigo());
+        if (anterior != null) {
+            cambios.setVersion(anterior.cambios.getVersion());
+            pendientes.put(cambios.getCodigo(), new Actualizacion(fila, anterior.original, cambios,
+                    imagen != null ? imagen : anterior.imagen));
+            combinadas++;
+        } else {
+            pendientes.put(cambios.getCodigo(), new Actualizacion(fila, original, cambios, imagen));
+        }
+        if (!reintentando && espera.getStatus() != Animation.Status.RUNNING) {
+            espera.playFromStart();
+        }
+        return pendientes.size() >= maximo;
+    }
+
+    /**
+     * @return true si no hay actualizaciones pendientes de enviar
+     */
+    boolean isVacia() {
+        return pendientes.isEmpty();
+    }
+
+    /**
+     * @return true si hay un envío en curso
+     */
+    boolean isEnviando() {
+        return envio != null && !envio.isDone();
+    }
+
+    /**
+     * @return true si un envío ha fallado y la cola espera para reintentarlo
+     */
+    boolean isReintentando() {
+        return reintentando;
+    }
+
+    /**
+     * @return el número de productos pendientes de enviar
+     */
+    int getPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * @return el número de ediciones que se han combinado con otra pendiente del mismo producto
+     */
+    long getCombinadas() {
+        return combinadas;
+    }
+
+    /**
+     * Saca todas las actualizaciones pendientes para enviarlas, anotando la versión con la que se envían.
+     *
+     * @return las actualizaciones, en el orden de su primera edición
+     */
+    List<Actualizacion> sacar() {
+        espera.stop();
+        reintento.stop();
+        reintentando = false;
+        List<Actualizacion> lote = new ArrayList<>(pendientes.values());
+        pendientes.clear();
+        for (Actualizacion actualizacion : lote) {
+            actualizacion.versionEnviada = actualizacion.cambios.getVersion();
+        }
+        return lote;
+    }
+
+    /**
+     * Deja de esperar, tanto a que pase el tiempo de espera como a reintentar un envío fallido,
+     * para que lo pendiente pueda enviarse en cuanto se pida.
+     */
+    void adelantar() {
+        espera.stop();
+        reintento.stop();
+        reintentando = false;
+    }
+
+    /**
+     * Anota el envío en curso de las actualizaciones sacadas con {@link #sacar()}.
+     *
+     * @param envio el envío en curso
+     */
+    void empezarEnvio(CompletableFuture<?> envio) {
+        this.envio = envio;
+    }
+
+    /**
+     * Anota el final de un envío. Las ediciones que han llegado mientras tanto de productos
+     * que el envío ha guardado pasan a esperar la nueva versión.
+     *
+     * @param lote las actualizaciones enviadas
+     */
+    void terminarEnvio(List<Actualizacion> lote) {
+        envio = null;
+        fallosSeguidos = 0;
+        for (Actualizacion enviada : lote) {
+            Actualizacion siguiente = pendientes.get(enviada.cambios.getCodigo());
+            if (enviada.isGuardada() && siguiente != null
+                    && siguiente.cambios.getVersion() == enviada.versionEnviada) {
+                siguiente.cambios.setVersion(enviada.cambios.getVersion());
+            }
+        }
+        if (!pendientes.isEmpty() && espera.getStatus() != Animation.Status.RUNNING) {
+            espera.playFromStart();
+        }
+    }
+
+    /**
+     * Anota el final de un envío que ha fallado y devuelve sus actualizaciones a la cola, por
+     * delante de las que han llegado mientras tanto y con la versión con la que se enviaron.
+     * Si mientras tanto se ha vuelto a editar alguno de los productos, la nueva edición se
+     * combina con la devuelta igual que en {@link #anotar}.
+     *
+     * @param lote las actualizaciones enviadas
+     * @return los milisegundos que se esperan antes de reintentar el envío
+     */
+    long devolver(List<Actualizacion> lote) {
+        envio = null;
+        espera.stop();
+        Map<String, Actualizacion> llegadas = new LinkedHashMap<>(pendientes);
+        pendientes.clear();
+        for (Actualizacion enviada : lote) {
+            String codigo = enviada.cambios.getCodigo();
+            enviada.cambios.setVersion(enviada.versionEnviada);
+            Actualizacion siguiente = llegadas.remove(codigo);
+            if (siguiente != null) {
+                siguiente.cambios.setVersion(enviada.versionEnviada);
+                pendientes.put(codigo, new Actualizacion(siguiente.fila, enviada.original, siguiente.cambios,
+                        siguiente.imagen != null ? siguiente.imagen : enviada.imagen));
+                combinadas++;
+            } else {
+                pendientes.put(codigo, enviada);
+            }
+        }
+        pendientes.putAll(llegadas);
+
+        long base = Math.max(100, esperaMs);
+        long pausa = Math.min(Math.max(base, reintentoMaxMs), base << Math.min(fallosSeguidos, 16));
+        fallosSeguidos++;
+        reintento.setDuration(Duration.millis(pausa));
+        reintentando = true;
+        reintento.playFromStart();
+        return pausa;
+    }
+
+    /**
+     * Descarta las actualizaciones pendientes sin enviarlas.
+     *
+     * @return el número de productos descartados
+     */
+    int descartar() {
+        espera.stop();
+        reintento.stop();
+        reintentando = false;
+        fallosSeguidos = 0;
+        int descartadas = pendientes.size();
+        pendientes.clear();
+        return descartadas;
+    }
+
+    /**
+     * Actualización de un producto en la cola.
+     */
+    static final class Actualizacion {
+
+        private final Producto fila;
+        private final Producto original;
+        private final Producto cambios;
+        private final File imagen;
+        // Versión esperada en el momento de enviarla; la de los cambios pasa a la nueva si se guarda
+        private int versionEnviada;
+
+        private Actualizacion(Producto fila, Producto original, Producto cambios, File imagen) {
+            this.fila = fila;
+            this.original = original;
+            this.cambios = cambios;
+            this.imagen = imagen;
+        }
+
+        /**
+         * @return el producto de la tabla que se ha editado
+         */
+        Producto getFila() {
+            return fila;
+        }
+
+        /**
+         * @return el producto tal como era al empezar la primera edición
+         */
+        Producto getOriginal() {
+            return original;
+        }
+
+        /**
+         * @return el producto con los últimos datos editados
+         */
+        Producto getCambios() {
+            return cambios;
+        }
+
+        /**
+         * @return la imagen elegida para el producto, o null
+         */
+        File getImagen() {
+            return imagen;
+        }
+
+        /**
+         * @return true si el envío ha guardado la actualización
+         */
+        boolean isGuardada() {
+            return cambios.getVersion() != versionEnviada;
+        }
+    }
+}
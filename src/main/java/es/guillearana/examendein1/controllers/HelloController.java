@@ -1,21 +1,74 @@
 package es.guillearana.examendein1.controllers;
 
+import es.guillearana.examendein1.conexion.ConexionBD;
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.model.CatalogoProductos;
+import es.guillearana.examendein1.model.FiltroProductos;
 import es.guillearana.examendein1.model.Producto;
-import es.guillearana.examendein1.dao.ProductoDao;
+import es.guillearana.examendein1.dao.Cambio;
+import es.guillearana.examendein1.dao.CambiosPurgadosException;
+import es.guillearana.examendein1.dao.ConflictoVersionException;
+import es.guillearana.examendein1.dao.ImagenDao;
+import es.guillearana.examendein1.dao.NotificadorCambios;
+import es.guillearana.examendein1.dao.ProductoDaoAsync;
+import es.guillearana.examendein1.dao.ProductoDaoCache;
+import es.guillearana.examendein1.dao.ProductoDaoSinConexion;
+import es.guillearana.examendein1.dao.ResultadoLote;
+import es.guillearana.examendein1.dao.SeguidorCambios;
+import es.guillearana.examendein1.ficheros.ExportadorProductos;
+import es.guillearana.examendein1.ficheros.ImportadorProductos;
+import es.guillearana.examendein1.ficheros.ResumenImportacion;
+import es.guillearana.examendein1.imagenes.CargadorImagenes;
+import es.guillearana.examendein1.imagenes.GeneradorMiniaturas;
+import es.guillearana.examendein1.metricas.Histograma;
+import es.guillearana.examendein1.metricas.Metricas;
+import es.guillearana.examendein1.metricas.TiemposArranque;
+import es.guillearana.examendein1.model.ValidadorProducto;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
+import javafx.stage.Screen;
 import javafx.stage.FileChooser.ExtensionFilter;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 import javafx.event.ActionEvent;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 
-import java.sql.SQLException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Controlador para la interfaz gráfica que gestiona productos.
@@ -23,6 +76,15 @@ import java.util.Optional;
  */
 public class HelloController {
 
+    // Opciones del filtro de disponibilidad de la barra de búsqueda
+    private static final String DISPONIBILIDAD_TODOS = "Todos";
+    private static final String DISPONIBILIDAD_SI = "Disponibles";
+    private static final String DISPONIBILIDAD_NO = "No disponibles";
+
+    // Claves de las imágenes guardadas en la caché de imágenes, seguidas del código del producto
+    private static final String PREFIJO_MINIATURA = "miniatura:";
+    private static final String PREFIJO_IMAGEN = "imagen:";
+
     @FXML
     private TextField codigoField;
 
@@ -54,7 +116,7 @@ public class HelloController {
     private TableColumn<Producto, String> nombreColumn;
 
     @FXML
-    private TableColumn<Producto, Double> precioColumn;
+    private TableColumn<Producto, Number> precioColumn;
 
     @FXML
     private TableColumn<Producto, Boolean> disponibleColumn;
@@ -65,34 +127,131 @@ public class HelloController {
     @FXML
     private ImageView imagenView;
 
+    @FXML
+    private TextField buscarCodigoField;
+
+    @FXML
+    private TextField buscarNombreField;
+
+    @FXML
+    private TextField precioDesdeField;
+
+    @FXML
+    private TextField precioHastaField;
+
+    @FXML
+    private ChoiceBox<String> disponibilidadChoiceBox;
+
+    @FXML
+    private ProgressIndicator cargandoIndicator;
+
+    @FXML
+    private Button cancelarButton;
+
+    @FXML
+    private Label estadoLabel;
+
     private ObservableList<Producto> productos = FXCollections.observableArrayList();
-    private ProductoDao productoDao;
+    // Tramo del catálogo cargado en la tabla; se amplía por páginas al desplazarse
+    private VentanaProductos ventana = new VentanaProductos(productos,
+            Propiedades.getEntero("tabla.tamanoPagina", 200), Propiedades.getEntero("tabla.maximoFilas", 1000));
+    // Índices sobre las filas cargadas: filtran al instante mientras llega la búsqueda del servidor
+    private final IndiceProductos indice = new IndiceProductos(productos);
+    private final FilteredList<Producto> productosFiltrados = new FilteredList<>(productos);
+    private ProductoDaoAsync productoDao = new ProductoDaoAsync();
+    // Operaciones contra la base de datos que todavía no han terminado
+    private final List<CompletableFuture<?>> operacionesEnCurso = new ArrayList<>();
+    // Última carga de páginas de la ventana; se cancela si cambia la búsqueda
+    private CompletableFuture<?> cargaEnCurso;
+    // Espera a que el usuario deje de escribir antes de lanzar la búsqueda
+    private final PauseTransition esperaBusqueda =
+            new PauseTransition(Duration.millis(Propiedades.getEntero("busqueda.esperaMs", 300)));
+    // Actualizaciones del formulario que se combinan y se envían juntas
+    private final ColaActualizaciones colaActualizaciones = new ColaActualizaciones(
+            Propiedades.getEntero("cola.esperaMs", 500), Propiedades.getEntero("cola.maximo", 50),
+            Propiedades.getEntero("cola.reintentoMaxMs", 30000), this::enviarActualizaciones);
+    // Imágenes que se están guardando; al cerrar la ventana se espera también a que terminen
+    private final List<CompletableFuture<?>> imagenesEnCurso = new ArrayList<>();
+    // Ventana que se está cerrando mientras se guardan los cambios pendientes, o null
+    private Window ventanaCerrando;
+    // Actualizaciones con conflicto que han llegado mientras se cerraba la ventana
+    private final List<ColaActualizaciones.Actualizacion> conflictosAlCerrar = new ArrayList<>();
+    // Causa del último envío fallido de la cola
+    private String ultimoFalloEnvio;
+    // Hay abierta una pregunta sobre el cierre; mientras tanto el cierre no avanza solo
+    private boolean preguntandoCierre;
+    // Avisa si al cerrar los cambios pendientes tardan más de cola.cierreMs en guardarse
+    private final PauseTransition esperaCierre =
+            new PauseTransition(Duration.millis(Propiedades.getEntero("cola.cierreMs", 5000)));
+    // Tiempo que se muestran los mensajes de la barra de estado
+    private final PauseTransition esperaEstado =
+            new PauseTransition(Duration.millis(Propiedades.getEntero("estado.visibleMs", 4000)));
+    // Lleva la cuenta de los cambios ya aplicados; se crea en segundo plano con la primera carga
+    private volatile SeguidorCambios seguidorCambios;
+    // Lee el registro de cambios en segundo plano y aplica los de otros usuarios
+    private volatile NotificadorCambios notificadorCambios;
     private FileChooser fileChooser = new FileChooser();
+    // Carga las imágenes en segundo plano y guarda las ya reducidas
+    private final CargadorImagenes cargadorImagenes = new CargadorImagenes();
+    // Imágenes guardadas de los productos; solo se leen al seleccionar un producto o al pedirlas
+    private final ImagenDao imagenDao = new ImagenDao();
+    // URL o clave de la imagen que se muestra, para descartar las cargas que llegan tarde
+    private String imagenSolicitada;
+    // Imagen elegida en el formulario que se guardará con el producto, o null
+    private File archivoImagen;
+    // Copia del producto cargado en el formulario, tal como estaba al empezar a editarlo
+    private Producto productoEditado;
+    // Tiempo que el hilo de JavaFX ha pasado en diálogos modales; se descuenta al medir los manejadores
+    private long nanosEnDialogos;
 
     /**
      * Inicializa el controlador configurando las columnas de la tabla,
-     * el menú contextual y cargando los productos de la base de datos.
-     *
-     * @throws SQLException si ocurre un error al acceder a la base de datos
+     * el menú contextual y lanzando la carga de los productos en segundo plano.
      */
     @FXML
-    public void initialize() throws SQLException {
-        // Configurar columnas de la tabla
-        codigoColumn.setCellValueFactory(new PropertyValueFactory<>("codigo"));
-        nombreColumn.setCellValueFactory(new PropertyValueFactory<>("nombre"));
-        precioColumn.setCellValueFactory(new PropertyValueFactory<>("precio"));
-        disponibleColumn.setCellValueFactory(new PropertyValueFactory<>("disponible"));
+    public void initialize() {
+        // Configurar columnas de la tabla: cada celda observa la propiedad de su producto
+        // y se repinta sola cuando cambia, sin buscar getters por reflexión
+        configurarColumnas(codigoColumn, nombreColumn, precioColumn, disponibleColumn);
+
+        // Asociar la lista de productos con la tabla, filtrada y ordenada según las columnas
+        SortedList<Producto> productosOrdenados = new SortedList<>(productosFiltrados);
+        productosOrdenados.comparatorProperty().bind(table.comparatorProperty());
+        table.setItems(productosOrdenados);
 
-        // Asociar la lista de productos con la tabla
-        table.setItems(productos);
+        // Pedir más páginas cuando el usuario llega al principio o al final de la tabla
+        table.skinProperty().addListener((obs, anterior, skin) -> {
+            if (skin != null) {
+                configurarPaginacion();
+            }
+        });
 
         // Deshabilitar el botón de actualizar al inicio
         actualizarButton.setDisable(true);
 
+        // Barra de búsqueda: cada cambio filtra al momento las filas cargadas y, al dejar de
+        // escribir, se busca en el servidor el resto de resultados
+        disponibilidadChoiceBox.getItems().setAll(DISPONIBILIDAD_TODOS, DISPONIBILIDAD_SI, DISPONIBILIDAD_NO);
+        disponibilidadChoiceBox.setValue(DISPONIBILIDAD_TODOS);
+        esperaBusqueda.setOnFinished(event -> buscar());
+        for (TextField campo : List.of(buscarCodigoField, buscarNombreField, precioDesdeField, precioHastaField)) {
+            campo.textProperty().addListener((obs, anterior, texto) -> alCambiarBusqueda());
+        }
+        disponibilidadChoiceBox.valueProperty().addListener((obs, anterior, valor) -> alCambiarBusqueda());
+
         // Filtro de archivo para imágenes
         fileChooser.getExtensionFilters().add(new ExtensionFilter("Imágenes", "*.jpg", "*.png"));
 
-        // Cargar productos de la base de datos
+        // El indicador y el botón de cancelar solo ocupan sitio mientras hay operaciones en curso
+        cargandoIndicator.managedProperty().bind(cargandoIndicator.visibleProperty());
+        cancelarButton.managedProperty().bind(cancelarButton.visibleProperty());
+        actualizarIndicador();
+        esperaEstado.setOnFinished(event -> estadoLabel.setText(""));
+
+        // Mostrar al instante la copia local del catálogo y cargar los productos de la base de datos
+        // sin bloquear la apertura de la ventana
+        mostrarCopiaLocal();
+        productoDao.setOyenteConflictos(conflictos -> Platform.runLater(() -> mostrarConflictos(conflictos)));
         cargarProductos();
 
         // Crear y asignar el menú contextual
@@ -104,150 +263,1080 @@ public class HelloController {
     }
 
     /**
-     * Carga los productos desde la base de datos.
+     * Enlaza cada columna con la propiedad correspondiente del producto de la fila.
      *
-     * @throws SQLException si ocurre un error al acceder a la base de datos
+     * @param codigo la columna del código
+     * @param nombre la columna del nombre
+     * @param precio la columna del precio
+     * @param disponible la columna de la disponibilidad
      */
-    private void cargarProductos() throws SQLException {
-        productoDao = new ProductoDao();
-        try {
-            productos.setAll(productoDao.obtenerTodos());
-        } catch (SQLException e) {
-            mostrarError("Error al cargar productos", "Hubo un error al cargar los productos.");
+    private static void configurarColumnas(TableColumn<Producto, String> codigo, TableColumn<Producto, String> nombre,
+                                           TableColumn<Producto, Number> precio, TableColumn<Producto, Boolean> disponible) {
+        codigo.setCellValueFactory(fila -> fila.getValue().codigoProperty());
+        nombre.setCellValueFactory(fila -> fila.getValue().nombreProperty());
+        precio.setCellValueFactory(fila -> fila.getValue().precioProperty());
+        disponible.setCellValueFactory(fila -> fila.getValue().disponibleProperty());
+    }
+
+    /**
+     * Carga en segundo plano la primera página de productos que cumplen la búsqueda activa.
+     * El seguidor de cambios se coloca en el último cambio antes de leer la página,
+     * para que los refrescos posteriores no pierdan nada de lo que ocurra mientras tanto.
+     */
+    private void cargarProductos() {
+        int tamanoPagina = ventana.getTamanoPagina();
+        FiltroProductos filtro = ventana.getFiltro();
+        cargarEnVentana(productoDao.conDao(dao -> {
+                    if (seguidorCambios == null) {
+                        seguidorCambios = new SeguidorCambios(dao);
+                        iniciarNotificador(seguidorCambios);
+                    } else {
+                        seguidorCambios.reiniciar();
+                    }
+                    return dao.buscar(filtro, null, tamanoPagina);
+                }),
+                filtro,
+                pagina -> {
+                    ventana.aplicarPrimera(pagina);
+                    TiemposArranque.terminar("primera fila");
+                },
+                e -> {
+                    ventana.cancelarCarga();
+                    mostrarError("Error al cargar productos", "Hubo un error al cargar los productos.");
+                });
+    }
+
+    /**
+     * Muestra la primera página de la copia local del catálogo, si el trabajo sin conexión está
+     * activo y hay copia, mientras llega la de la base de datos.
+     */
+    private void mostrarCopiaLocal() {
+        if (!Boolean.parseBoolean(Propiedades.getValor("sinConexion.activo", "false"))) {
+            return;
+        }
+        List<Producto> pagina = ProductoDaoSinConexion.leerPrimeraPagina(ventana.getTamanoPagina());
+        if (!pagina.isEmpty()) {
+            ventana.aplicarProvisional(pagina);
+            TiemposArranque.marcar("primera fila (copia local)");
         }
     }
 
+    /**
+     * Avisa de las escrituras hechas sin conexión que no se han podido guardar al volver a conectar,
+     * y refresca la tabla para que muestre lo que hay en la base de datos.
+     *
+     * @param conflictos la descripción de cada escritura descartada
+     */
+    private void mostrarConflictos(List<String> conflictos) {
+        StringBuilder mensaje = new StringBuilder("Algunos cambios hechos sin conexión no se han podido guardar:");
+        conflictos.stream().limit(20).forEach(conflicto -> mensaje.append("\n").append(conflicto));
+        if (conflictos.size() > 20) {
+            mensaje.append("\n... y ").append(conflictos.size() - 20).append(" más");
+        }
+        mostrarError("Cambios sin guardar", mensaje.toString());
+        refrescarCambios();
+    }
+
+    /**
+     * Filtra en memoria las filas cargadas y programa la búsqueda en el servidor.
+     */
+    private void alCambiarBusqueda() {
+        medirFx("filtrar", () -> {
+            aplicarFiltroLocal();
+            esperaBusqueda.playFromStart();
+        });
+    }
+
+    /**
+     * Muestra solo las filas cargadas que cumplen la barra de búsqueda, usando los índices en memoria.
+     * Debe volver a llamarse cuando cambian los datos de una fila sin sustituirla.
+     */
+    private void aplicarFiltroLocal() {
+        productosFiltrados.setPredicate(indice.predicado(leerFiltro()));
+    }
+
+    /**
+     * Lanza la búsqueda con los criterios de la barra de búsqueda, si han cambiado.
+     * La carga de la búsqueda anterior, si sigue en curso, se cancela.
+     */
+    private void buscar() {
+        medirFx("buscar", () -> {
+            FiltroProductos filtro = leerFiltro();
+            if (filtro.equals(ventana.getFiltro())) {
+                return;
+            }
+            ventana.cambiarFiltro(filtro);
+            cargarProductos();
+        });
+    }
+
+    /**
+     * Construye el filtro a partir de la barra de búsqueda.
+     * Un precio que no es un número válido se ignora, igual que un campo vacío.
+     *
+     * @return el filtro de la barra de búsqueda
+     */
+    private FiltroProductos leerFiltro() {
+        String disponibilidad = disponibilidadChoiceBox.getValue();
+        return new FiltroProductos(buscarCodigoField.getText(), buscarNombreField.getText(),
+                ValidadorProducto.parsearPrecio(precioDesdeField.getText()),
+                ValidadorProducto.parsearPrecio(precioHastaField.getText()),
+                DISPONIBILIDAD_SI.equals(disponibilidad) ? Boolean.TRUE
+                        : DISPONIBILIDAD_NO.equals(disponibilidad) ? Boolean.FALSE : null);
+    }
+
+    /**
+     * Registra una carga de páginas de la ventana, cancelando la anterior si sigue en curso.
+     * Si la búsqueda cambia antes de que llegue el resultado, el resultado se descarta.
+     *
+     * @param carga la carga en curso
+     * @param filtro la búsqueda para la que se pidió la página
+     * @param alTerminar acción que se ejecuta con la página si la búsqueda sigue activa
+     * @param alFallar acción que se ejecuta con la causa si la carga falla y la búsqueda sigue activa
+     */
+    private void cargarEnVentana(CompletableFuture<List<Producto>> carga, FiltroProductos filtro,
+                                 Consumer<List<Producto>> alTerminar, Consumer<Throwable> alFallar) {
+        if (cargaEnCurso != null) {
+            cargaEnCurso.cancel(true);
+        }
+        cargaEnCurso = carga;
+        enSegundoPlano(carga,
+                pagina -> {
+                    if (filtro == ventana.getFiltro()) {
+                        alTerminar.accept(pagina);
+                    }
+                },
+                e -> {
+                    if (filtro == ventana.getFiltro()) {
+                        alFallar.accept(e);
+                    }
+                });
+    }
+
+    /**
+     * Refresca la tabla aplicando solo los cambios ocurridos desde la última carga o refresco.
+     * Si hay más cambios de los que caben en la tabla, sale más barato recargar la primera página.
+     */
+    private void refrescarCambios() {
+        SeguidorCambios seguidor = seguidorCambios;
+        if (seguidor == null) {
+            return;
+        }
+        enSegundoPlano(productoDao.conDao(dao -> seguidor.leer()),
+                this::aplicarCambios,
+                e -> {
+                    if (e instanceof CambiosPurgadosException) {
+                        // Faltan cambios que ya no están en el registro: solo sirve recargar
+                        cargarProductos();
+                    } else {
+                        mostrarError("Error al refrescar productos", "Hubo un error al obtener los cambios.");
+                    }
+                });
+    }
+
+    /**
+     * Aplica a la tabla los cambios leídos del registro, ya sea por un refresco o por el notificador.
+     *
+     * @param cambios los cambios nuevos, como mucho uno por producto
+     */
+    private void aplicarCambios(List<Cambio> cambios) {
+        if (cambios.size() > ventana.getMaximoFilas()) {
+            cargarProductos();
+            return;
+        }
+        ventana.aplicar(cambios);
+        for (Cambio cambio : cambios) {
+            indice.reindexar(cambio.getCodigo());
+        }
+        aplicarFiltroLocal();
+    }
+
+    /**
+     * Pone en marcha la lectura periódica del registro de cambios, para que las ediciones
+     * de otros usuarios aparezcan solas. Con {@code cambios.intervaloMs} a 0 queda desactivada
+     * y solo se refresca con F5 o tras una edición propia.
+     *
+     * @param seguidor el seguidor del registro de cambios de la tabla
+     */
+    private void iniciarNotificador(SeguidorCambios seguidor) {
+        long intervalo = Propiedades.getEntero("cambios.intervaloMs", 1000);
+        if (intervalo <= 0) {
+            return;
+        }
+        notificadorCambios = new NotificadorCambios(seguidor, intervalo,
+                cambios -> Platform.runLater(() -> medirFx("aplicarCambios", () -> aplicarCambios(cambios))),
+                () -> Platform.runLater(this::cargarProductos));
+        notificadorCambios.iniciar();
+    }
+
+    /**
+     * Detiene las tareas en segundo plano del controlador. Se llama al cerrar la aplicación,
+     * antes de cerrar el pool de conexiones.
+     */
+    public void detener() {
+        NotificadorCambios notificador = notificadorCambios;
+        if (notificador != null) {
+            notificador.detener();
+        }
+        productoDao.detener();
+    }
+
+    /**
+     * Refresca la tabla con los cambios hechos por este y otros usuarios.
+     *
+     * @param event el evento del menú
+     */
+    @FXML
+    void onRefrescarMenuItemClicked(ActionEvent event) {
+        medirFx("refrescar", () -> {
+            refrescarCambios();
+        });
+    }
+
+    /**
+     * Engancha la carga de páginas a la barra de desplazamiento vertical de la tabla.
+     */
+    private void configurarPaginacion() {
+        for (Node nodo : table.lookupAll(".scroll-bar")) {
+            if (nodo instanceof ScrollBar barra && barra.getOrientation() == Orientation.VERTICAL) {
+                barra.valueProperty().addListener((obs, anterior, valor) -> {
+                    double margen = (barra.getMax() - barra.getMin()) * 0.05;
+                    if (valor.doubleValue() >= barra.getMax() - margen) {
+                        cargarPaginaSiguiente();
+                    } else if (valor.doubleValue() <= barra.getMin() + margen) {
+                        cargarPaginaAnterior();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Añade a la tabla la página siguiente a la última fila cargada.
+     */
+    private void cargarPaginaSiguiente() {
+        if (!ventana.empezarAvance()) {
+            return;
+        }
+        FiltroProductos filtro = ventana.getFiltro();
+        cargarEnVentana(productoDao.buscar(filtro, ventana.getUltimoCodigo(), ventana.getTamanoPagina()),
+                filtro,
+                pagina -> desplazarVista(-ventana.aplicarSiguiente(pagina)),
+                e -> {
+                    ventana.cancelarCarga();
+                    mostrarError("Error al cargar productos", "Hubo un error al cargar más productos.");
+                });
+    }
+
+    /**
+     * Añade a la tabla la página anterior a la primera fila cargada.
+     */
+    private void cargarPaginaAnterior() {
+        if (!ventana.empezarRetroceso()) {
+            return;
+        }
+        FiltroProductos filtro = ventana.getFiltro();
+        cargarEnVentana(productoDao.buscarAnterior(filtro, ventana.getPrimerCodigo(), ventana.getTamanoPagina()),
+                filtro,
+                pagina -> desplazarVista(ventana.aplicarAnterior(pagina)),
+                e -> {
+                    ventana.cancelarCarga();
+                    mostrarError("Error al cargar productos", "Hubo un error al cargar más productos.");
+                });
+    }
+
+    /**
+     * Mantiene a la vista las mismas filas después de añadir o descartar filas al principio.
+     *
+     * @param filas el número de filas que se han añadido (positivo) o descartado (negativo) al principio
+     */
+    private void desplazarVista(int filas) {
+        if (filas == 0 || !(table.lookup(".virtual-flow") instanceof VirtualFlow<?> flujo)
+                || flujo.getFirstVisibleCell() == null) {
+            return;
+        }
+        table.scrollTo(Math.max(0, flujo.getFirstVisibleCell().getIndex() + filas));
+    }
+
     /**
      * Muestra un diálogo para seleccionar una imagen y la carga en el ImageView.
+     * La imagen se guarda en la base de datos al crear o actualizar el producto.
      *
      * @param event el evento de selección de imagen
      */
     @FXML
     void onSeleccionarImagenButtonClicked(ActionEvent event) {
-        var archivo = fileChooser.showOpenDialog(seleccionarImagenButton.getScene().getWindow());
-        if (archivo != null) {
-            Image image = new Image(archivo.toURI().toString());
-            imagenView.setImage(image);
-        }
+        medirFx("seleccionarImagen", () -> {
+            var archivo = esperarDialogo(() -> fileChooser.showOpenDialog(seleccionarImagenButton.getScene().getWindow()));
+            if (archivo != null) {
+                // Se decodifica en segundo plano al tamaño del recuadro (en píxeles reales de la pantalla)
+                String url = archivo.toURI().toString();
+                double escala = imagenView.getScene().getWindow().getOutputScaleX();
+                imagenSolicitada = url;
+                archivoImagen = archivo;
+                enSegundoPlano(cargadorImagenes.cargar(url, imagenView.getFitWidth() * escala,
+                                imagenView.getFitHeight() * escala),
+                        imagen -> {
+                            // Si entretanto se ha elegido otra imagen o se ha limpiado el formulario, se descarta
+                            if (url.equals(imagenSolicitada)) {
+                                imagenView.setImage(imagen);
+                            }
+                        },
+                        e -> mostrarError("Error al cargar la imagen", "No se pudo cargar la imagen: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Muestra en otra ventana la imagen del formulario a resolución completa (como mucho, del tamaño
+     * de la pantalla). Si es la imagen guardada de un producto, solo ahora se lee la original.
+     */
+    @FXML
+    void onImagenClicked() {
+        medirFx("verImagen", () -> {
+            String solicitada = imagenSolicitada;
+            if (solicitada == null || imagenView.getImage() == null) {
+                return;
+            }
+            Rectangle2D pantalla = Screen.getPrimary().getVisualBounds();
+            double escala = imagenView.getScene().getWindow().getOutputScaleX();
+            double ancho = pantalla.getWidth() * 0.9;
+            double alto = pantalla.getHeight() * 0.9;
+
+            CompletableFuture<Image> carga;
+            String titulo;
+            if (solicitada.startsWith(PREFIJO_MINIATURA)) {
+                String codigo = solicitada.substring(PREFIJO_MINIATURA.length());
+                carga = cargadorImagenes.cargar(PREFIJO_IMAGEN + codigo, () -> imagenDao.obtenerImagen(codigo),
+                        ancho * escala, alto * escala);
+                titulo = "Imagen del producto " + codigo;
+            } else {
+                carga = cargadorImagenes.cargar(solicitada, ancho * escala, alto * escala);
+                titulo = archivoImagen != null ? archivoImagen.getName() : "Imagen";
+            }
+
+            enSegundoPlano(carga,
+                    imagen -> {
+                        if (imagen == null) {
+                            return;
+                        }
+                        ImageView vista = new ImageView(imagen);
+                        vista.setPreserveRatio(true);
+                        vista.setFitWidth(imagen.getWidth() / escala);
+                        vista.setFitHeight(imagen.getHeight() / escala);
+                        Stage ventanaImagen = new Stage();
+                        ventanaImagen.initOwner(imagenView.getScene().getWindow());
+                        ventanaImagen.setTitle(titulo);
+                        ventanaImagen.setScene(new Scene(new StackPane(vista)));
+                        ventanaImagen.show();
+                    },
+                    e -> mostrarError("Error al cargar la imagen", "No se pudo cargar la imagen: " + e.getMessage()));
+        });
+    }
+
+    /**
+     * Muestra la miniatura guardada de un producto, leyéndola de la base de datos solo si no
+     * está ya en la caché de imágenes. Si el producto no tiene imagen, el recuadro queda vacío.
+     *
+     * @param codigo el código del producto
+     */
+    private void mostrarMiniatura(String codigo) {
+        String clave = PREFIJO_MINIATURA + codigo;
+        imagenSolicitada = clave;
+        archivoImagen = null;
+        imagenView.setImage(null);
+        double escala = imagenView.getScene().getWindow().getOutputScaleX();
+        cargadorImagenes.cargar(clave, () -> imagenDao.obtenerMiniatura(codigo),
+                        imagenView.getFitWidth() * escala, imagenView.getFitHeight() * escala)
+                .whenCompleteAsync((imagen, error) -> {
+                    // Si entretanto se ha seleccionado otro producto, la miniatura ya no interesa
+                    if (!clave.equals(imagenSolicitada)) {
+                        return;
+                    }
+                    if (error != null) {
+                        System.err.println("Error al cargar la miniatura de " + codigo + ": " + error.getMessage());
+                    } else {
+                        imagenView.setImage(imagen);
+                    }
+                }, Platform::runLater);
+    }
+
+    /**
+     * Guarda en segundo plano la imagen elegida para un producto, junto con su miniatura.
+     *
+     * @param codigo el código del producto
+     * @param archivo el fichero de la imagen
+     */
+    private void guardarImagen(String codigo, File archivo) {
+        long maximo = Propiedades.getEntero("imagenes.maximoMB", 16) * 1024L * 1024L;
+        int lado = Propiedades.getEntero("imagenes.miniatura", 200);
+        CompletableFuture<Void> guardado = productoDao.conDao(dao -> {
+            if (archivo.length() > maximo) {
+                throw new IOException("La imagen ocupa más de " + maximo / (1024 * 1024) + " MB");
+            }
+            byte[] bytes = Files.readAllBytes(archivo.toPath());
+            GeneradorMiniaturas.Miniatura miniatura = GeneradorMiniaturas.generar(bytes, lado);
+            imagenDao.guardar(codigo, miniatura.getTipoOriginal(), bytes, miniatura.getBytes());
+            return null;
+        });
+        imagenesEnCurso.add(guardado);
+        enSegundoPlano(guardado,
+                v -> {
+                    cargadorImagenes.invalidar(PREFIJO_MINIATURA + codigo);
+                    cargadorImagenes.invalidar(PREFIJO_IMAGEN + codigo);
+                    continuarCierre();
+                },
+                e -> {
+                    mostrarError("Error al guardar la imagen", "El producto " + codigo
+                            + " se ha guardado, pero su imagen no: " + e.getMessage());
+                    continuarCierre();
+                });
     }
 
     /**
      * Crea un nuevo producto con los datos ingresados y lo guarda en la base de datos.
      *
      * @param event el evento de creación del producto
-     * @throws SQLException si ocurre un error al acceder a la base de datos
      */
     @FXML
-    void onCrearButtonClicked(ActionEvent event) throws SQLException {
-        StringBuilder errores = new StringBuilder();
+    void onCrearButtonClicked(ActionEvent event) {
+        medirFx("crear", () -> {
+            String codigo = codigoField.getText();
+            String nombre = nombreField.getText();
+            String precioStr = precioField.getText();
 
-        String codigo = codigoField.getText();
-        String nombre = nombreField.getText();
-        String precioStr = precioField.getText();
-        productoDao = new ProductoDao();
+            List<String> errores = ValidadorProducto.validar(codigo, nombre, precioStr);
+            if (!errores.isEmpty()) {
+                mostrarError("Errores de validación", String.join("\n", errores) + "\n");
+                return;
+            }
+
+            double precio = ValidadorProducto.parsearPrecio(precioStr);
+            Producto producto = new Producto(codigo, nombre, precio, disponibleCheckBox.isSelected());
+
+            File imagen = archivoImagen;
+            crearButton.setDisable(true);
+            enSegundoPlano(productoDao.crear(producto),
+                    v -> {
+                        crearButton.setDisable(false);
+                        ventana.insertar(producto);
+                        if (imagen != null) {
+                            guardarImagen(producto.getCodigo(), imagen);
+                        }
+                        limpiarCampos();
+                        mostrarExito("Producto creado exitosamente.");
+                        refrescarCambios();
+                    },
+                    e -> {
+                        crearButton.setDisable(false);
+                        mostrarError("Error en la base de datos", "Hubo un error al guardar el producto.");
+                    });
+        });
+    }
 
-        if (codigo.length() != 5) {
-            errores.append("El código debe tener exactamente 5 caracteres.\n");
+    /**
+     * Actualiza el producto seleccionado con los nuevos datos ingresados.
+     *
+     * @param event el evento de actualización del producto
+     */
+    @FXML
+    void onActualizarButtonClicked(ActionEvent event) {
+        medirFx("actualizar", () -> {
+            Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
+            if (productoSeleccionado != null) {
+                double precio;
+                try {
+                    precio = Double.parseDouble(precioField.getText());
+                } catch (NumberFormatException e) {
+                    System.out.println("Error: El precio debe ser un número.");
+                    return;
+                }
+
+                // Los cambios se aplican a la fila solo cuando la base de datos los confirma. Se envía
+                // la versión que había al empezar a editar, para no pisar lo que otro usuario guarde mientras
+                Producto original = productoEditado != null ? productoEditado : productoSeleccionado;
+                Producto cambios = new Producto(codigoField.getText(), nombreField.getText(), precio,
+                        disponibleCheckBox.isSelected(), original.getVersion());
+                guardarActualizacion(productoSeleccionado, original, cambios, archivoImagen);
+            }
+        });
+    }
+
+    /**
+     * Pone en la cola los cambios de un producto y deja el formulario libre para la siguiente
+     * edición. Los cambios se guardan junto con los demás de la cola; si otro usuario ha
+     * modificado el producto mientras tanto, se ofrece combinar las dos versiones.
+     *
+     * @param fila el producto de la tabla que se está editando
+     * @param original el producto tal como era al empezar a editarlo
+     * @param cambios el producto con los datos editados y la versión esperada
+     * @param imagen la imagen elegida para el producto, o null
+     */
+    private void guardarActualizacion(Producto fila, Producto original, Producto cambios, File imagen) {
+        boolean llena = colaActualizaciones.anotar(fila, original, cambios, imagen);
+        actualizarButton.setDisable(true);
+        limpiarCampos();
+        mostrarEstado(colaActualizaciones.getPendientes() == 1 ? "1 cambio pendiente de guardar."
+                : colaActualizaciones.getPendientes() + " cambios pendientes de guardar.", false);
+        if (llena) {
+            enviarActualizaciones();
         }
-        if (nombre.isEmpty()) {
-            errores.append("El nombre del producto es obligatorio.\n");
+    }
+
+    /**
+     * Envía en segundo plano, en una sola transacción, las actualizaciones de la cola.
+     * Si ya hay un envío en curso, las pendientes salen cuando termine. Si el envío falla,
+     * las actualizaciones vuelven a la cola y se reintentan más tarde.
+     */
+    private void enviarActualizaciones() {
+        if (colaActualizaciones.isEnviando() || colaActualizaciones.isVacia() || colaActualizaciones.isReintentando()) {
+            return;
         }
-        if (precioStr.isEmpty()) {
-            errores.append("El precio del producto es obligatorio.\n");
+        List<ColaActualizaciones.Actualizacion> lote = colaActualizaciones.sacar();
+        List<Producto> productos = new ArrayList<>(lote.size());
+        for (ColaActualizaciones.Actualizacion actualizacion : lote) {
+            productos.add(actualizacion.getCambios());
         }
+        CompletableFuture<ResultadoLote> envio = productoDao.conDao(dao -> dao.actualizarVersionados(productos));
+        colaActualizaciones.empezarEnvio(envio);
+        enSegundoPlano(envio,
+                resultado -> {
+                    colaActualizaciones.terminarEnvio(lote);
+                    ultimoFalloEnvio = null;
+                    aplicarActualizaciones(lote, resultado);
+                    enviarActualizaciones();
+                    continuarCierre();
+                },
+                e -> {
+                    long pausa = colaActualizaciones.devolver(lote);
+                    ultimoFalloEnvio = e.getMessage();
+                    mostrarEstado("No se han podido guardar " + lote.size() + " cambios: " + e.getMessage()
+                            + ". Se volverá a intentar en " + Math.max(1, (pausa + 999) / 1000) + " s.", true);
+                    continuarCierre();
+                });
+    }
 
-        double precio = -1;
-        try {
-            precio = Double.parseDouble(precioStr);
-        } catch (NumberFormatException e) {
-            errores.append("El precio debe ser un número válido.\n");
+    /**
+     * Aplica a la tabla las actualizaciones guardadas y pide al usuario que resuelva,
+     * una a una, las que otro usuario ha modificado mientras tanto.
+     *
+     * @param lote las actualizaciones enviadas, en el orden del resultado
+     * @param resultado el resultado del envío
+     */
+    private void aplicarActualizaciones(List<ColaActualizaciones.Actualizacion> lote, ResultadoLote resultado) {
+        Set<Integer> fallidas = new HashSet<>();
+        for (ResultadoLote.Fallo fallo : resultado.getFallos()) {
+            fallidas.add(fallo.getIndice());
         }
+        for (int i = 0; i < lote.size(); i++) {
+            if (fallidas.contains(i)) {
+                continue;
+            }
+            ColaActualizaciones.Actualizacion actualizacion = lote.get(i);
+            Producto fila = actualizacion.getFila();
+            Producto cambios = actualizacion.getCambios();
+            if (actualizacion.getImagen() != null) {
+                guardarImagen(cambios.getCodigo(), actualizacion.getImagen());
+            }
+            fila.setNombre(cambios.getNombre());
+            fila.setPrecio(cambios.getPrecio());
+            fila.setDisponible(cambios.isDisponible());
+            fila.setVersion(cambios.getVersion());
+            indice.reindexar(cambios.getCodigo());
+        }
+        aplicarFiltroLocal();
+        int guardadas = resultado.getCorrectos();
+        mostrarEstado((guardadas == 1 ? "1 producto actualizado" : guardadas + " productos actualizados")
+                + (fallidas.isEmpty() ? "." : ", " + fallidas.size() + " con conflictos."), !fallidas.isEmpty());
+        refrescarCambios();
+
+        List<ColaActualizaciones.Actualizacion> conflictos = new ArrayList<>();
+        for (int i : fallidas) {
+            conflictos.add(lote.get(i));
+        }
+        if (ventanaCerrando != null) {
+            // Se resuelven después, si el usuario decide no salir todavía
+            conflictosAlCerrar.addAll(conflictos);
+        } else {
+            resolverConflictos(conflictos);
+        }
+    }
 
-        if (errores.length() > 0) {
-            mostrarError("Errores de validación", errores.toString());
+    /**
+     * Lee el estado actual de cada producto con conflicto y pide al usuario que lo resuelva.
+     *
+     * @param conflictos las actualizaciones que otro usuario ha modificado mientras tanto
+     */
+    private void resolverConflictos(List<ColaActualizaciones.Actualizacion> conflictos) {
+        for (ColaActualizaciones.Actualizacion actualizacion : conflictos) {
+            Producto cambios = actualizacion.getCambios();
+            enSegundoPlano(productoDao.obtenerPorCodigo(cambios.getCodigo()),
+                    actual -> resolverConflicto(actualizacion.getFila(), actualizacion.getOriginal(), cambios, actual,
+                            actualizacion.getImagen()),
+                    e -> mostrarEstado("No se ha podido leer el producto " + cambios.getCodigo() + ": "
+                            + e.getMessage(), true));
+        }
+    }
+
+    /**
+     * Antes de cerrar la ventana, guarda lo que queda en la cola y las imágenes que se están
+     * guardando. El cierre se aplaza hasta que terminan, sin bloquear la interfaz; si algo no
+     * se ha podido guardar, se pregunta antes de salir. Se llama al pedir el cierre de la ventana.
+     *
+     * @param event la petición de cierre de la ventana
+     */
+    public void confirmarCierre(WindowEvent event) {
+        imagenesEnCurso.removeIf(CompletableFuture::isDone);
+        if (ventanaCerrando == null && colaActualizaciones.isVacia() && !colaActualizaciones.isEnviando()
+                && imagenesEnCurso.isEmpty()) {
+            return;
+        }
+        event.consume();
+        if (ventanaCerrando != null) {
             return;
         }
+        ventanaCerrando = (Window) event.getSource();
+        mostrarEstado("Guardando los cambios pendientes antes de salir...", false);
+        // Los diálogos modales no pueden abrirse desde una animación: la pregunta se aplaza
+        esperaCierre.setOnFinished(e -> Platform.runLater(this::preguntarEspera));
+        esperaCierre.playFromStart();
+        colaActualizaciones.adelantar();
+        continuarCierre();
+    }
 
-        Producto producto = new Producto(codigo, nombre, precio, disponibleCheckBox.isSelected());
+    /**
+     * Sigue con el cierre de la ventana, si se está cerrando, cada vez que termina un envío o el
+     * guardado de una imagen. Cuando ya no queda nada en curso, cierra la ventana o, si algo no
+     * se ha podido guardar, pregunta si salir igualmente.
+     */
+    private void continuarCierre() {
+        if (ventanaCerrando == null || preguntandoCierre) {
+            return;
+        }
+        imagenesEnCurso.removeIf(CompletableFuture::isDone);
+        enviarActualizaciones();
+        // Lo que siga en la cola sin enviarse es lo que ha fallado y espera a reintentarse
+        if (colaActualizaciones.isEnviando() || !imagenesEnCurso.isEmpty()) {
+            return;
+        }
+        esperaCierre.stop();
+        if (colaActualizaciones.isVacia() && conflictosAlCerrar.isEmpty()) {
+            cerrarVentana();
+            return;
+        }
 
+        StringBuilder mensaje = new StringBuilder();
+        for (ColaActualizaciones.Actualizacion actualizacion : conflictosAlCerrar) {
+            mensaje.append("Otro usuario ha modificado el producto ").append(actualizacion.getCambios().getCodigo())
+                    .append(" mientras lo editabas.\n");
+        }
+        int pendientes = colaActualizaciones.getPendientes();
+        if (pendientes > 0) {
+            mensaje.append(pendientes == 1 ? "No se ha podido guardar 1 cambio" : "No se han podido guardar "
+                    + pendientes + " cambios").append(": ").append(ultimoFalloEnvio).append('\n');
+        }
+        ButtonType salir = new ButtonType("Salir sin guardarlos");
+        ButtonType volver = new ButtonType("Volver");
+        Alert alert = new Alert(AlertType.WARNING, mensaje.toString(), salir, volver);
+        alert.setTitle("Cambios sin guardar");
+        alert.setHeaderText("Algunos cambios no se han guardado.");
+        Optional<ButtonType> eleccion;
+        preguntandoCierre = true;
         try {
-            productoDao.crear(producto);
-            productos.add(producto);
-            table.refresh();
-            limpiarCampos();
-            mostrarExito("Producto creado exitosamente.");
-        } catch (SQLException e) {
-            mostrarError("Error en la base de datos", "Hubo un error al guardar el producto.");
+            eleccion = esperarDialogo(alert::showAndWait);
+        } finally {
+            preguntandoCierre = false;
         }
+
+        List<ColaActualizaciones.Actualizacion> conflictos = new ArrayList<>(conflictosAlCerrar);
+        conflictosAlCerrar.clear();
+        if (eleccion.isPresent() && eleccion.get() == salir) {
+            colaActualizaciones.descartar();
+            cerrarVentana();
+            return;
+        }
+        // Se vuelve a la aplicación: la cola se sigue reintentando y se resuelven los conflictos
+        ventanaCerrando = null;
+        resolverConflictos(conflictos);
     }
 
     /**
-     * Actualiza el producto seleccionado con los nuevos datos ingresados.
+     * Pregunta si salir sin esperar cuando los cambios pendientes tardan más de {@code cola.cierreMs}
+     * en guardarse al cerrar la ventana.
+     */
+    private void preguntarEspera() {
+        if (ventanaCerrando == null || preguntandoCierre) {
+            return;
+        }
+        ButtonType esperar = new ButtonType("Seguir esperando");
+        ButtonType salir = new ButtonType("Salir sin esperar");
+        Alert alert = new Alert(AlertType.CONFIRMATION, "Si sales ahora, pueden perderse los cambios que faltan.",
+                esperar, salir);
+        alert.setTitle("Guardando cambios");
+        alert.setHeaderText("Los cambios pendientes todavía se están guardando.");
+        Optional<ButtonType> eleccion;
+        preguntandoCierre = true;
+        try {
+            eleccion = esperarDialogo(alert::showAndWait);
+        } finally {
+            preguntandoCierre = false;
+        }
+        if (ventanaCerrando == null) {
+            return;
+        }
+        if (eleccion.isPresent() && eleccion.get() == salir) {
+            colaActualizaciones.descartar();
+            conflictosAlCerrar.clear();
+            cerrarVentana();
+            return;
+        }
+        esperaCierre.playFromStart();
+        // Puede que haya terminado todo mientras se preguntaba
+        continuarCierre();
+    }
+
+    /**
+     * Cierra la ventana que se estaba cerrando cuando ya no queda nada por guardar.
+     */
+    private void cerrarVentana() {
+        Window ventana = ventanaCerrando;
+        ventanaCerrando = null;
+        esperaCierre.stop();
+        ventana.hide();
+    }
+
+    /**
+     * Muestra las diferencias entre los cambios del usuario y lo que otro usuario ha guardado,
+     * y deja elegir entre combinarlos, guardar los propios o quedarse con los de la base de datos.
      *
-     * @param event el evento de actualización del producto
-     * @throws SQLException si ocurre un error al acceder a la base de datos
+     * Al combinar, cada campo toma el valor de quien lo haya cambiado; si los dos han cambiado
+     * el mismo campo, gana el del usuario. El resultado queda en el formulario para revisarlo
+     * antes de volver a pulsar Actualizar.
+     *
+     * @param fila el producto de la tabla que se está editando
+     * @param original el producto tal como era al empezar a editarlo
+     * @param cambios el producto con los datos editados
+     * @param actual el producto tal como está ahora en la base de datos, o null si se ha eliminado
+     * @param imagen la imagen elegida para el producto, o null
      */
-    @FXML
-    void onActualizarButtonClicked(ActionEvent event) throws SQLException {
-        productoDao = new ProductoDao();
-        Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
-        if (productoSeleccionado != null) {
-            productoSeleccionado.setCodigo(codigoField.getText());
-            productoSeleccionado.setNombre(nombreField.getText());
+    private void resolverConflicto(Producto fila, Producto original, Producto cambios, Producto actual,
+                                   File imagen) {
+        if (actual == null) {
+            ventana.eliminar(cambios.getCodigo());
+            limpiarCampos();
+            crearButton.setDisable(false);
+            actualizarButton.setDisable(true);
+            mostrarError("Producto eliminado", "Otro usuario ha eliminado el producto " + cambios.getCodigo()
+                    + " mientras lo editabas.");
+            return;
+        }
 
-            try {
-                productoSeleccionado.setPrecio(Double.parseDouble(precioField.getText()));
-            } catch (NumberFormatException e) {
-                System.out.println("Error: El precio debe ser un número.");
-                return;
-            }
+        StringBuilder diferencias = new StringBuilder();
+        anadirDiferencia(diferencias, "Nombre", original.getNombre(), cambios.getNombre(), actual.getNombre());
+        anadirDiferencia(diferencias, "Precio", original.getPrecio(), cambios.getPrecio(), actual.getPrecio());
+        anadirDiferencia(diferencias, "Disponible", original.isDisponible(), cambios.isDisponible(), actual.isDisponible());
 
-            productoSeleccionado.setDisponible(disponibleCheckBox.isSelected());
+        ButtonType combinar = new ButtonType("Combinar");
+        ButtonType guardarMios = new ButtonType("Guardar los míos");
+        ButtonType descartarMios = new ButtonType("Descartar los míos");
+        Alert alert = new Alert(AlertType.CONFIRMATION, diferencias.toString(), combinar, guardarMios, descartarMios,
+                ButtonType.CANCEL);
+        alert.setTitle("Conflicto al actualizar");
+        alert.setHeaderText("Otro usuario ha modificado el producto " + cambios.getCodigo() + " mientras lo editabas.");
+        Optional<ButtonType> eleccion = esperarDialogo(alert::showAndWait);
+        if (eleccion.isEmpty() || eleccion.get() == ButtonType.CANCEL) {
+            return;
+        }
 
-            try {
-                productoDao.actualizar(productoSeleccionado);
-                table.refresh();
-                mostrarExito("Producto actualizado exitosamente.");
-            } catch (SQLException e) {
-                mostrarError("Error al actualizar producto", "Hubo un error al actualizar el producto.");
-            }
+        // En cualquier caso la fila pasa a mostrar lo que hay en la base de datos
+        ventana.insertar(actual);
+        indice.reindexar(actual.getCodigo());
+        aplicarFiltroLocal();
+        productoEditado = copiar(actual);
 
-            actualizarButton.setDisable(true);
-            limpiarCampos();
+        if (eleccion.get() == guardarMios) {
+            cambios.setVersion(actual.getVersion());
+            guardarActualizacion(fila, productoEditado, cambios, imagen);
+            return;
+        }
+
+        // El formulario ya se había liberado al poner los cambios en la cola: se vuelve a cargar el producto
+        table.getSelectionModel().select(fila);
+        codigoField.setText(cambios.getCodigo());
+        codigoField.setDisable(true);
+        crearButton.setDisable(true);
+        actualizarButton.setDisable(false);
+        archivoImagen = imagen;
+        if (eleccion.get() == combinar) {
+            nombreField.setText(Objects.equals(cambios.getNombre(), original.getNombre())
+                    ? actual.getNombre() : cambios.getNombre());
+            precioField.setText(String.valueOf(cambios.getPrecio() == original.getPrecio()
+                    ? actual.getPrecio() : cambios.getPrecio()));
+            disponibleCheckBox.setSelected(cambios.isDisponible() == original.isDisponible()
+                    ? actual.isDisponible() : cambios.isDisponible());
+        } else {
+            nombreField.setText(actual.getNombre());
+            precioField.setText(String.valueOf(actual.getPrecio()));
+            disponibleCheckBox.setSelected(actual.isDisponible());
         }
     }
 
+    /**
+     * Añade una línea con un campo que ha cambiado, indicando si los dos usuarios lo han cambiado.
+     */
+    private static void anadirDiferencia(StringBuilder diferencias, String campo, Object original, Object mio,
+                                         Object suyo) {
+        if (Objects.equals(mio, suyo)) {
+            return;
+        }
+        boolean cambiadoPorMi = !Objects.equals(mio, original);
+        boolean cambiadoPorOtro = !Objects.equals(suyo, original);
+        diferencias.append(campo).append(": tuyo = ").append(mio).append(", base de datos = ").append(suyo);
+        if (cambiadoPorMi && cambiadoPorOtro) {
+            diferencias.append("  (cambiado por los dos)");
+        }
+        diferencias.append("\n");
+    }
+
+    /**
+     * Crea una copia independiente de un producto, con su versión.
+     */
+    private static Producto copiar(Producto producto) {
+        return new Producto(producto.getCodigo(), producto.getNombre(), producto.getPrecio(), producto.isDisponible(),
+                producto.getVersion());
+    }
+
     /**
      * Elimina el producto seleccionado de la tabla y la base de datos.
      */
     private void onEliminarMenuItemClicked() {
-        Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
-        productoDao = new ProductoDao();
-        if (productoSeleccionado != null) {
-            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-            alert.setTitle("Confirmar eliminación");
-            alert.setHeaderText("¿Estás seguro de que quieres eliminar este producto?");
-            alert.setContentText("El producto con código " + productoSeleccionado.getCodigo() + " será eliminado.");
-
-            Optional<ButtonType> result = alert.showAndWait();
-            if (result.isPresent() && result.get() == ButtonType.OK) {
-                try {
-                    productoDao.eliminar(productoSeleccionado.getCodigo());
-                    productos.remove(productoSeleccionado);
-                    table.refresh();
-                    limpiarCampos();
-                    mostrarExito("Producto eliminado correctamente.");
-                    actualizarButton.setDisable(true);
-                    crearButton.setDisable(false);
-                    cargarProductos();
-                } catch (SQLException e) {
-                    mostrarError("Error en la base de datos", "Hubo un error al eliminar el producto.");
-                    e.printStackTrace();
+        medirFx("eliminar", () -> {
+            Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
+            if (productoSeleccionado != null) {
+                Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+                alert.setTitle("Confirmar eliminación");
+                alert.setHeaderText("¿Estás seguro de que quieres eliminar este producto?");
+                alert.setContentText("El producto con código " + productoSeleccionado.getCodigo() + " será eliminado.");
+
+                Optional<ButtonType> result = esperarDialogo(alert::showAndWait);
+                if (result.isPresent() && result.get() == ButtonType.OK) {
+                    enSegundoPlano(productoDao.eliminar(productoSeleccionado.getCodigo()),
+                            v -> {
+                                ventana.eliminar(productoSeleccionado.getCodigo());
+                                // La base de datos borra su imagen junto con el producto
+                                cargadorImagenes.invalidar(PREFIJO_MINIATURA + productoSeleccionado.getCodigo());
+                                cargadorImagenes.invalidar(PREFIJO_IMAGEN + productoSeleccionado.getCodigo());
+                                limpiarCampos();
+                                mostrarExito("Producto eliminado correctamente.");
+                                actualizarButton.setDisable(true);
+                                crearButton.setDisable(false);
+                                refrescarCambios();
+                            },
+                            e -> {
+                                mostrarError("Error en la base de datos", "Hubo un error al eliminar el producto.");
+                                e.printStackTrace();
+                            });
                 }
+            } else {
+                mostrarError("No hay producto seleccionado", "Por favor, selecciona un producto para eliminar.");
             }
-        } else {
-            mostrarError("No hay producto seleccionado", "Por favor, selecciona un producto para eliminar.");
+        });
+    }
+
+    /**
+     * Importa productos desde un fichero CSV o TSV elegido por el usuario.
+     * La importación se hace en segundo plano; al terminar se muestra el resumen
+     * y se vuelve a cargar la primera página de la tabla.
+     *
+     * @param event el evento del menú
+     */
+    @FXML
+    void onImportarMenuItemClicked(ActionEvent event) {
+        medirFx("importar", () -> {
+            FileChooser selector = new FileChooser();
+            selector.setTitle("Importar productos");
+            selector.getExtensionFilters().add(new ExtensionFilter("Ficheros CSV o TSV", "*.csv", "*.tsv", "*.txt"));
+            var archivo = esperarDialogo(() -> selector.showOpenDialog(table.getScene().getWindow()));
+            if (archivo == null) {
+                return;
+            }
+
+            AtomicReference<ImportadorProductos> importador = new AtomicReference<>();
+            CompletableFuture<ResumenImportacion> importacion = productoDao.conDao(dao -> {
+                importador.set(new ImportadorProductos(dao));
+                return importador.get().importar(archivo.toPath());
+            });
+            // El botón Cancelar cancela el futuro; la importación se detiene tras el bloque en curso
+            importacion.whenComplete((resumen, error) -> {
+                if (importacion.isCancelled() && importador.get() != null) {
+                    importador.get().cancelar();
+                }
+            });
+
+            enSegundoPlano(importacion,
+                    resumen -> {
+                        StringBuilder mensaje = new StringBuilder(resumen.toString());
+                        resumen.getDetallesRechazos().stream().limit(20)
+                                .forEach(rechazo -> mensaje.append("\n").append(rechazo));
+                        mostrarExito(mensaje.toString());
+                        cargarProductos();
+                    },
+                    e -> mostrarError("Error al importar", "No se pudo importar el fichero: " + e.getMessage()));
+        });
+    }
+
+    /**
+     * Exporta todos los productos a un fichero CSV o JSON Lines elegido por el usuario.
+     * Mientras dura la exportación, el indicador de carga muestra el porcentaje escrito
+     * y el botón Cancelar la detiene sin dejar un fichero a medias.
+     *
+     * @param event el evento del menú
+     */
+    @FXML
+    void onExportarMenuItemClicked(ActionEvent event) {
+        medirFx("exportar", () -> {
+            FileChooser selector = new FileChooser();
+            selector.setTitle("Exportar productos");
+            selector.getExtensionFilters().addAll(new ExtensionFilter("CSV", "*.csv"),
+                    new ExtensionFilter("JSON Lines", "*.jsonl"));
+            var archivo = esperarDialogo(() -> selector.showSaveDialog(table.getScene().getWindow()));
+            if (archivo == null) {
+                return;
+            }
+            ExportadorProductos.Formato formato = selector.getSelectedExtensionFilter() != null
+                    && selector.getSelectedExtensionFilter().getDescription().equals("JSON Lines")
+                    ? ExportadorProductos.Formato.JSONL : ExportadorProductos.Formato.desdeFichero(archivo.toPath());
+
+            AtomicReference<ExportadorProductos> exportador = new AtomicReference<>();
+            CompletableFuture<Long> exportacion = productoDao.conDao(dao -> {
+                exportador.set(new ExportadorProductos(dao));
+                exportador.get().setProgreso((escritas, total) -> Platform.runLater(() ->
+                        cargandoIndicator.setProgress(total > 0 ? (double) escritas / total : ProgressIndicator.INDETERMINATE_PROGRESS)));
+                return exportador.get().exportar(archivo.toPath(), formato);
+            });
+            exportacion.whenComplete((filas, error) -> {
+                if (exportacion.isCancelled() && exportador.get() != null) {
+                    exportador.get().cancelar();
+                }
+                Platform.runLater(() -> cargandoIndicator.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS));
+            });
+
+            enSegundoPlano(exportacion,
+                    filas -> mostrarExito(filas + " productos exportados a " + archivo.getName() + "."),
+                    e -> mostrarError("Error al exportar", "No se pudo exportar el catálogo: " + e.getMessage()));
+        });
+    }
+
+    /**
+     * Muestra las estadísticas del pool de conexiones, de la caché de productos y de la de imágenes,
+     * para comprobar si están bien dimensionados, y las métricas de tiempos si están activas.
+     *
+     * @param event el evento del menú
+     */
+    @FXML
+    void onEstadisticasMenuItemClicked(ActionEvent event) {
+        medirFx("estadisticas", () -> {
+            // La cola solo se lee desde el hilo de JavaFX
+            String cola = "Cola[pendientes=" + colaActualizaciones.getPendientes()
+                    + ", ediciones combinadas=" + colaActualizaciones.getCombinadas() + "]";
+            enSegundoPlano(productoDao.conDao(dao -> ConexionBD.getInstancia().getEstadisticas() + "\n"
+                            + (dao instanceof ProductoDaoCache cache ? cache.getEstadisticas() : "Caché desactivada") + "\n"
+                            + cargadorImagenes.getEstadisticas() + "\n" + cola + resumirMetricas()),
+                    this::mostrarExito,
+                    e -> mostrarError("Estadísticas", "No se pudieron obtener las estadísticas: " + e.getMessage()));
+        });
+    }
+
+    /**
+     * Resume las métricas registradas, una por línea, para el diálogo de estadísticas.
+     *
+     * @return las métricas precedidas de un salto de línea, o una cadena vacía si están desactivadas
+     */
+    private static String resumirMetricas() {
+        StringBuilder resumen = new StringBuilder();
+        for (Histograma histograma : Metricas.getHistogramas()) {
+            resumen.append("\n").append(histograma);
+        }
+        return resumen.toString();
+    }
+
+    /**
+     * Carga el catálogo completo en memoria y lo muestra en una ventana de solo lectura.
+     * El catálogo se guarda por columnas, de modo que incluso con un millón de productos
+     * ocupa pocas decenas de MB y la tabla solo crea objetos para las filas visibles.
+     *
+     * @param event el evento del menú
+     */
+    @FXML
+    void onCatalogoMenuItemClicked(ActionEvent event) {
+        medirFx("catalogo", () -> {
+            enSegundoPlano(productoDao.cargarCatalogo(),
+                    this::mostrarCatalogo,
+                    e -> mostrarError("Catálogo completo", "No se pudo cargar el catálogo: " + e.getMessage()));
+        });
+    }
+
+    /**
+     * Abre la ventana con el catálogo completo y un campo para saltar a un código.
+     *
+     * @param catalogo el catálogo cargado
+     */
+    private void mostrarCatalogo(CatalogoProductos catalogo) {
+        TableView<Producto> tabla = new TableView<>(new ListaCatalogo(catalogo));
+        TableColumn<Producto, String> codigo = new TableColumn<>("CÓDIGO");
+        TableColumn<Producto, String> nombre = new TableColumn<>("NOMBRE");
+        TableColumn<Producto, Number> precio = new TableColumn<>("PRECIO");
+        TableColumn<Producto, Boolean> disponible = new TableColumn<>("DISPONIBLE");
+        configurarColumnas(codigo, nombre, precio, disponible);
+        for (TableColumn<Producto, ?> columna : List.of(codigo, nombre, precio, disponible)) {
+            // El catálogo ya viene ordenado por código y no se puede reordenar
+            columna.setSortable(false);
+            tabla.getColumns().add(columna);
         }
+        tabla.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        tabla.setFixedCellSize(24);
+
+        TextField irA = new TextField();
+        irA.setPromptText("Ir al código...");
+        irA.setOnAction(e -> {
+            int posicion = catalogo.indiceDe(irA.getText().strip());
+            if (posicion >= 0) {
+                tabla.scrollTo(posicion);
+                tabla.getSelectionModel().clearAndSelect(posicion);
+            }
+        });
+
+        VBox raiz = new VBox(5, irA, tabla);
+        raiz.setPadding(new Insets(5));
+        VBox.setVgrow(tabla, Priority.ALWAYS);
+        Stage ventanaCatalogo = new Stage();
+        ventanaCatalogo.initOwner(table.getScene().getWindow());
+        ventanaCatalogo.setTitle(String.format("Catálogo completo: %d productos (%.1f MB)",
+                catalogo.size(), catalogo.getBytesOcupados() / (1024.0 * 1024.0)));
+        ventanaCatalogo.setScene(new Scene(raiz, 575, 627));
+        ventanaCatalogo.show();
+    }
+
+    /**
+     * Cancela todas las operaciones contra la base de datos que siguen en curso.
+     *
+     * @param event el evento de cancelación
+     */
+    @FXML
+    void onCancelarButtonClicked(ActionEvent event) {
+        medirFx("cancelar", () -> {
+            for (CompletableFuture<?> operacion : new ArrayList<>(operacionesEnCurso)) {
+                operacion.cancel(true);
+            }
+            // Una página cancelada no llega nunca: la ventana puede volver a pedirla
+            ventana.cancelarCarga();
+            int descartadas = colaActualizaciones.descartar();
+            if (descartadas > 0) {
+                mostrarEstado(descartadas + " cambios pendientes descartados.", true);
+            }
+            crearButton.setDisable(codigoField.isDisabled());
+            actualizarButton.setDisable(table.getSelectionModel().getSelectedItem() == null);
+        });
     }
 
     /**
@@ -255,7 +1344,9 @@ public class HelloController {
      */
     @FXML
     void onLimpiarButtonClicked(ActionEvent event) {
-        limpiarCampos();
+        medirFx("limpiar", () -> {
+            limpiarCampos();
+        });
     }
 
     /**
@@ -263,23 +1354,31 @@ public class HelloController {
      */
     @FXML
     void onTableClicked() {
-        Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
-        if (productoSeleccionado != null) {
-            codigoField.setText(productoSeleccionado.getCodigo());
-            nombreField.setText(productoSeleccionado.getNombre());
-            precioField.setText(String.valueOf(productoSeleccionado.getPrecio()));
-            disponibleCheckBox.setSelected(productoSeleccionado.isDisponible());
-
-            codigoField.setDisable(true);
-            actualizarButton.setDisable(false);
-            crearButton.setDisable(true);
-        }
+        medirFx("seleccionarProducto", () -> {
+            Producto productoSeleccionado = table.getSelectionModel().getSelectedItem();
+            if (productoSeleccionado != null) {
+                codigoField.setText(productoSeleccionado.getCodigo());
+                nombreField.setText(productoSeleccionado.getNombre());
+                precioField.setText(String.valueOf(productoSeleccionado.getPrecio()));
+                disponibleCheckBox.setSelected(productoSeleccionado.isDisponible());
+                // Lo que había al empezar a editar, para detectar y combinar cambios de otros usuarios
+                productoEditado = copiar(productoSeleccionado);
+                mostrarMiniatura(productoSeleccionado.getCodigo());
+
+                codigoField.setDisable(true);
+                actualizarButton.setDisable(false);
+                crearButton.setDisable(true);
+            }
+        });
     }
 
     /**
      * Limpia todos los campos de entrada del formulario.
      */
     private void limpiarCampos() {
+        productoEditado = null;
+        imagenSolicitada = null;
+        archivoImagen = null;
         codigoField.clear();
         nombreField.clear();
         precioField.clear();
@@ -287,6 +1386,101 @@ public class HelloController {
         imagenView.setImage(null);
     }
 
+    /**
+     * Registra una operación asíncrona y aplica su resultado en el hilo de JavaFX.
+     * Mientras la operación está en curso se muestra el indicador de carga; si se
+     * cancela, no se muestra ningún error.
+     *
+     * @param operacion la operación en curso
+     * @param alTerminar acción que se ejecuta con el resultado si la operación termina bien
+     * @param alFallar acción que se ejecuta con la causa si la operación falla
+     * @param <T> el tipo del resultado
+     */
+    private <T> void enSegundoPlano(CompletableFuture<T> operacion, Consumer<T> alTerminar,
+                                    Consumer<Throwable> alFallar) {
+        operacionesEnCurso.add(operacion);
+        actualizarIndicador();
+        operacion.whenCompleteAsync((resultado, error) -> medirFx("resultado", () -> {
+            operacionesEnCurso.remove(operacion);
+            actualizarIndicador();
+            if (error == null) {
+                alTerminar.accept(resultado);
+                return;
+            }
+            Throwable causa = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (!(causa instanceof CancellationException)) {
+                alFallar.accept(causa);
+            }
+        }), Platform::runLater);
+    }
+
+    /**
+     * Ejecuta un manejador en el hilo de JavaFX y anota en las métricas ({@code fx.<nombre>})
+     * cuánto tiempo lo ha tenido ocupado. El tiempo que el usuario tarda en cerrar los diálogos
+     * modales que abra no cuenta, porque mientras tanto la interfaz sigue respondiendo.
+     *
+     * @param nombre el nombre del manejador en las métricas
+     * @param manejador el cuerpo del manejador
+     */
+    private void medirFx(String nombre, Runnable manejador) {
+        long inicio = Metricas.inicio();
+        if (inicio == 0) {
+            manejador.run();
+            return;
+        }
+        long dialogosAntes = nanosEnDialogos;
+        try {
+            manejador.run();
+        } finally {
+            Metricas.tiempo("fx." + nombre, inicio + (nanosEnDialogos - dialogosAntes));
+        }
+    }
+
+    /**
+     * Muestra un diálogo modal y acumula el tiempo que permanece abierto, para descontarlo
+     * del tiempo de los manejadores.
+     *
+     * @param dialogo la apertura del diálogo, que espera a que se cierre
+     * @param <T> el tipo de la respuesta del diálogo
+     * @return la respuesta del diálogo
+     */
+    private <T> T esperarDialogo(Supplier<T> dialogo) {
+        long inicio = Metricas.inicio();
+        try {
+            return dialogo.get();
+        } finally {
+            if (inicio != 0) {
+                nanosEnDialogos += System.nanoTime() - inicio;
+            }
+        }
+    }
+
+    /**
+     * Muestra el indicador de carga y el botón de cancelar solo si hay operaciones en curso.
+     */
+    private void actualizarIndicador() {
+        boolean ocupado = !operacionesEnCurso.isEmpty();
+        cargandoIndicator.setVisible(ocupado);
+        cancelarButton.setVisible(ocupado);
+    }
+
+    /**
+     * Muestra un mensaje en la barra de estado sin interrumpir al usuario. Los mensajes
+     * normales desaparecen al poco; los errores se quedan hasta el siguiente mensaje.
+     *
+     * @param mensaje el contenido del mensaje
+     * @param error true si el mensaje informa de un error
+     */
+    private void mostrarEstado(String mensaje, boolean error) {
+        esperaEstado.stop();
+        estadoLabel.setText(mensaje);
+        estadoLabel.setTextFill(error ? Color.FIREBRICK : Color.BLACK);
+        if (!error) {
+            esperaEstado.playFromStart();
+        }
+    }
+
     /**
      * Muestra un mensaje de error en un cuadro de diálogo.
      *
@@ -298,7 +1492,7 @@ public class HelloController {
         alert.setTitle(titulo);
         alert.setHeaderText(null);
         alert.setContentText(mensaje);
-        alert.showAndWait();
+        esperarDialogo(alert::showAndWait);
     }
 
     /**
@@ -311,6 +1505,6 @@ public class HelloController {
         alert.setTitle("Éxito");
         alert.setHeaderText(null);
         alert.setContentText(mensaje);
-        alert.showAndWait();
+        esperarDialogo(alert::showAndWait);
     }
 }
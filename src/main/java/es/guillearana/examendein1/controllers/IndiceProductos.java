@@ -0,0 +1,409 @@
+package es.guillearana.examendein1.controllers;
+
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Índices en memoria sobre los productos cargados en la tabla, para filtrar sin recorrerlos uno a uno.
+ *
+ * Cada producto ocupa una posición (hueco) y los índices guardan posiciones:
+ * <ul>
+ *     <li>código: tabla hash para buscar un producto y array ordenado para los prefijos</li>
+ *     <li>precio: array ordenado para los rangos, con búsqueda binaria</li>
+ *     <li>nombre: trigramas con las posiciones de los nombres que los contienen</li>
+ *     <li>disponible: un BitSet con las posiciones de los productos disponibles</li>
+ * </ul>
+ * El resultado de una búsqueda es un BitSet de posiciones, que se combina con AND entre criterios.
+ *
+ * Los huecos no se reutilizan: un producto eliminado o modificado deja su hueco vacío y, si se
+ * modifica, ocupa uno nuevo al final. Así las listas de trigramas solo crecen y siempre están
+ * ordenadas. Cuando hay más huecos vacíos que productos, los índices se reconstruyen.
+ * Los arrays ordenados se reconstruyen solo cuando se usan después de algún cambio.
+ *
+ * Los índices siguen los cambios de la lista observada. Los cambios hechos sobre un producto
+ * sin sustituirlo en la lista deben notificarse con {@link #reindexar(String)}.
+ * Todos los métodos deben llamarse desde el hilo de JavaFX.
+ */
+class IndiceProductos {
+
+    private static final int LONGITUD_NGRAMA = 3;
+    // Mínimo de huecos vacíos antes de plantearse reconstruir los índices
+    private static final int MINIMO_COMPACTAR = 1024;
+
+    private final ObservableList<Producto> origen;
+
+    // Datos por hueco, copiados al indexar para que los índices no cambien por debajo
+    private Producto[] productos = new Producto[16];
+    private String[] codigos = new String[16];
+    private String[] nombres = new String[16];
+    private double[] precios = new double[16];
+    private int huecos;
+    private int vacios;
+    // Cambia cada vez que se compacta, porque los productos cambian de hueco
+    private int generacion;
+
+    private final BitSet ocupados = new BitSet();
+    private final BitSet disponibles = new BitSet();
+    private final Map<Producto, Integer> porProducto = new IdentityHashMap<>();
+    private final Map<String, Integer> porCodigo = new HashMap<>();
+    private final Map<Long, ListaHuecos> porTrigrama = new HashMap<>();
+
+    private final IndiceOrdenado ordenCodigo = new IndiceOrdenado((a, b) -> codigos[a].compareTo(codigos[b]));
+    private final IndiceOrdenado ordenPrecio = new IndiceOrdenado((a, b) -> Double.compare(precios[a], precios[b]));
+
+    /**
+     * Constructor para indexar una lista y seguir sus cambios.
+     *
+     * @param origen la lista de productos que se indexa
+     */
+    IndiceProductos(ObservableList<Producto> origen) {
+        this.origen = origen;
+        origen.forEach(this::anadir);
+        origen.addListener((ListChangeListener<Producto>) cambio -> {
+            while (cambio.next()) {
+                if (cambio.wasUpdated()) {
+                    for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                        quitar(cambio.getList().get(i));
+                        anadir(cambio.getList().get(i));
+                    }
+                } else if (!cambio.wasPermutated()) {
+                    cambio.getRemoved().forEach(this::quitar);
+                    cambio.getAddedSubList().forEach(this::anadir);
+                }
+            }
+            compactarSiHaceFalta();
+        });
+    }
+
+    /**
+     * @return el número de productos indexados
+     */
+    int getTamano() {
+        return porProducto.size();
+    }
+
+    /**
+     * Busca un producto cargado por su código, sin distinguir mayúsculas.
+     *
+     * @param codigo el código del producto
+     * @return el producto, o null si no está cargado
+     */
+    Producto obtener(String codigo) {
+        Integer hueco = porCodigo.get(clave(codigo));
+        return hueco == null ? null : productos[hueco];
+    }
+
+    /**
+     * Vuelve a indexar un producto cuyos datos han cambiado sin sustituirlo en la lista.
+     *
+     * @param codigo el código del producto modificado
+     */
+    void reindexar(String codigo) {
+        Producto producto = obtener(codigo);
+        if (producto != null) {
+            quitar(producto);
+            anadir(producto);
+            compactarSiHaceFalta();
+        }
+    }
+
+    /**
+     * Obtiene las posiciones de los productos que cumplen un filtro.
+     *
+     * @param filtro los criterios de búsqueda
+     * @return las posiciones de los productos que cumplen todos los criterios
+     */
+    BitSet buscar(FiltroProductos filtro) {
+        BitSet resultado = (BitSet) ocupados.clone();
+        if (filtro.getCodigo() != null) {
+            resultado.and(buscarPrefijo(clave(filtro.getCodigo())));
+        }
+        if ((filtro.getPrecioMinimo() != null || filtro.getPrecioMaximo() != null) && !resultado.isEmpty()) {
+            resultado.and(buscarPrecio(filtro.getPrecioMinimo(), filtro.getPrecioMaximo()));
+        }
+        if (Boolean.TRUE.equals(filtro.getDisponible())) {
+            resultado.and(disponibles);
+        } else if (Boolean.FALSE.equals(filtro.getDisponible())) {
+            resultado.andNot(disponibles);
+        }
+        // El nombre va el último: comprobar el texto es lo más caro y así solo se comprueban
+        // los productos que ya cumplen el resto de criterios
+        if (filtro.getNombre() != null && !resultado.isEmpty()) {
+            resultado = buscarNombre(filtro.getNombre().toLowerCase(Locale.ROOT), resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Crea el predicado de un filtro para una {@link javafx.collections.transformation.FilteredList}.
+     * El trabajo se hace una sola vez con los índices; el predicado solo consulta el resultado.
+     * Los productos que se añadan después, o todos si los índices se compactan, se comprueban
+     * directamente con el filtro.
+     *
+     * @param filtro los criterios de búsqueda
+     * @return el predicado, o null si el filtro está vacío (se muestran todos)
+     */
+    Predicate<Producto> predicado(FiltroProductos filtro) {
+        if (filtro.isVacio()) {
+            return null;
+        }
+        BitSet coincidentes = buscar(filtro);
+        int limite = huecos;
+        int generacionBuscada = generacion;
+        return producto -> {
+            Integer hueco = generacionBuscada == generacion ? porProducto.get(producto) : null;
+            return hueco != null && hueco < limite ? coincidentes.get(hueco) : filtro.cumple(producto);
+        };
+    }
+
+    /**
+     * Busca los productos cuyo código empieza por un prefijo, con el array ordenado por código.
+     */
+    private BitSet buscarPrefijo(String prefijo) {
+        int[] orden = ordenCodigo.obtener();
+        int bajo = 0;
+        int alto = orden.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (codigos[orden[medio]].compareTo(prefijo) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        BitSet resultado = new BitSet(huecos);
+        for (int i = bajo; i < orden.length && codigos[orden[i]].startsWith(prefijo); i++) {
+            resultado.set(orden[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Busca los productos con un precio dentro del rango, con el array ordenado por precio.
+     */
+    private BitSet buscarPrecio(Double minimo, Double maximo) {
+        int[] orden = ordenPrecio.obtener();
+        int desde = 0;
+        if (minimo != null) {
+            int alto = orden.length;
+            while (desde < alto) {
+                int medio = (desde + alto) >>> 1;
+                if (precios[orden[medio]] < minimo) {
+                    desde = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+        }
+        BitSet resultado = new BitSet(huecos);
+        for (int i = desde; i < orden.length && (maximo == null || precios[orden[i]] <= maximo); i++) {
+            resultado.set(orden[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Busca, entre las posiciones indicadas, los productos cuyo nombre contiene un texto.
+     * Con textos de al menos tres caracteres, los candidatos son los nombres que contienen todos
+     * sus trigramas; después se comprueba que el texto aparece seguido en cada candidato.
+     */
+    private BitSet buscarNombre(String texto, BitSet entre) {
+        BitSet resultado = new BitSet(huecos);
+        if (texto.length() < LONGITUD_NGRAMA) {
+            for (int hueco = entre.nextSetBit(0); hueco >= 0; hueco = entre.nextSetBit(hueco + 1)) {
+                if (nombres[hueco].contains(texto)) {
+                    resultado.set(hueco);
+                }
+            }
+            return resultado;
+        }
+
+        ListaHuecos[] listas = new ListaHuecos[texto.length() - LONGITUD_NGRAMA + 1];
+        for (int i = 0; i < listas.length; i++) {
+            listas[i] = porTrigrama.get(trigrama(texto, i));
+            if (listas[i] == null) {
+                return resultado;
+            }
+        }
+        // Se empieza por la lista más corta, quedándose solo con las posiciones permitidas,
+        // para que las intersecciones sean lo más baratas posible
+        Arrays.sort(listas, Comparator.comparingInt(lista -> lista.tamano));
+        int[] candidatos = new int[listas[0].tamano];
+        int cantidad = 0;
+        for (int i = 0; i < listas[0].tamano; i++) {
+            if (entre.get(listas[0].valores[i])) {
+                candidatos[cantidad++] = listas[0].valores[i];
+            }
+        }
+        for (int i = 1; i < listas.length && cantidad > 0; i++) {
+            cantidad = intersecar(candidatos, cantidad, listas[i]);
+        }
+        for (int i = 0; i < cantidad; i++) {
+            if (nombres[candidatos[i]].contains(texto)) {
+                resultado.set(candidatos[i]);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Deja en los primeros elementos de {@code candidatos} los que también están en la lista.
+     * Ambas secuencias están ordenadas, así que basta con recorrerlas a la vez.
+     *
+     * @return el número de candidatos que quedan
+     */
+    private static int intersecar(int[] candidatos, int cantidad, ListaHuecos lista) {
+        int quedan = 0;
+        int j = 0;
+        for (int i = 0; i < cantidad && j < lista.tamano; i++) {
+            while (j < lista.tamano && lista.valores[j] < candidatos[i]) {
+                j++;
+            }
+            if (j < lista.tamano && lista.valores[j] == candidatos[i]) {
+                candidatos[quedan++] = candidatos[i];
+            }
+        }
+        return quedan;
+    }
+
+    /**
+     * Indexa un producto en un hueco nuevo al final.
+     */
+    private void anadir(Producto producto) {
+        if (porProducto.containsKey(producto)) {
+            return;
+        }
+        if (huecos == productos.length) {
+            int capacidad = huecos * 2;
+            productos = Arrays.copyOf(productos, capacidad);
+            codigos = Arrays.copyOf(codigos, capacidad);
+            nombres = Arrays.copyOf(nombres, capacidad);
+            precios = Arrays.copyOf(precios, capacidad);
+        }
+        int hueco = huecos++;
+        String nombre = producto.getNombre() == null ? "" : producto.getNombre().toLowerCase(Locale.ROOT);
+        productos[hueco] = producto;
+        codigos[hueco] = clave(producto.getCodigo());
+        nombres[hueco] = nombre;
+        precios[hueco] = producto.getPrecio();
+
+        ocupados.set(hueco);
+        disponibles.set(hueco, producto.isDisponible());
+        porProducto.put(producto, hueco);
+        porCodigo.put(codigos[hueco], hueco);
+        for (int i = 0; i + LONGITUD_NGRAMA <= nombre.length(); i++) {
+            // Un trigrama repetido en el mismo nombre solo se anota una vez
+            porTrigrama.computeIfAbsent(trigrama(nombre, i), k -> new ListaHuecos()).anadirSiNoEsUltimo(hueco);
+        }
+        ordenCodigo.invalidar();
+        ordenPrecio.invalidar();
+    }
+
+    /**
+     * Deja vacío el hueco de un producto. Las listas de trigramas no se tocan: los huecos
+     * vacíos se descartan al buscar y desaparecen al compactar.
+     */
+    private void quitar(Producto producto) {
+        Integer hueco = porProducto.remove(producto);
+        if (hueco == null) {
+            return;
+        }
+        porCodigo.remove(codigos[hueco], hueco);
+        ocupados.clear(hueco);
+        disponibles.clear(hueco);
+        productos[hueco] = null;
+        vacios++;
+        ordenCodigo.invalidar();
+        ordenPrecio.invalidar();
+    }
+
+    /**
+     * Reconstruye los índices desde la lista si hay más huecos vacíos que productos.
+     */
+    private void compactarSiHaceFalta() {
+        if (vacios < MINIMO_COMPACTAR || vacios < porProducto.size()) {
+            return;
+        }
+        productos = new Producto[Math.max(16, origen.size())];
+        codigos = new String[productos.length];
+        nombres = new String[productos.length];
+        precios = new double[productos.length];
+        huecos = 0;
+        vacios = 0;
+        generacion++;
+        ocupados.clear();
+        disponibles.clear();
+        porProducto.clear();
+        porCodigo.clear();
+        porTrigrama.clear();
+        origen.forEach(this::anadir);
+    }
+
+    /**
+     * Codifica tres caracteres seguidos de un texto en un único número.
+     */
+    private static long trigrama(String texto, int desde) {
+        return ((long) texto.charAt(desde) << 32) | ((long) texto.charAt(desde + 1) << 16) | texto.charAt(desde + 2);
+    }
+
+    /**
+     * Normaliza el código, porque MySQL compara los códigos sin distinguir mayúsculas.
+     */
+    private static String clave(String codigo) {
+        return codigo.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Huecos ordenados por un criterio, reconstruidos la primera vez que se piden tras un cambio.
+     */
+    private final class IndiceOrdenado {
+        private final Comparator<Integer> criterio;
+        private int[] orden;
+
+        private IndiceOrdenado(Comparator<Integer> criterio) {
+            this.criterio = criterio;
+        }
+
+        private void invalidar() {
+            orden = null;
+        }
+
+        private int[] obtener() {
+            if (orden == null) {
+                orden = IntStream.range(0, huecos).filter(ocupados::get).boxed()
+                        .sorted(criterio).mapToInt(Integer::intValue).toArray();
+            }
+            return orden;
+        }
+    }
+
+    /**
+     * Lista creciente de huecos, guardada en un array de enteros para no crear objetos por elemento.
+     */
+    private static final class ListaHuecos {
+        private int[] valores = new int[4];
+        private int tamano;
+
+        private void anadirSiNoEsUltimo(int hueco) {
+            if (tamano > 0 && valores[tamano - 1] == hueco) {
+                return;
+            }
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, tamano * 2);
+            }
+            valores[tamano++] = hueco;
+        }
+    }
+}
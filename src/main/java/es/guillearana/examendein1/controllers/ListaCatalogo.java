@@ -0,0 +1,36 @@
+package es.guillearana.examendein1.controllers;
+
+import es.guillearana.examendein1.model.CatalogoProductos;
+import es.guillearana.examendein1.model.Producto;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Lista de solo lectura que muestra un {@link CatalogoProductos} en una tabla.
+ *
+ * La tabla solo pide las filas que están a la vista, así que solo se crean objetos
+ * Producto para esas filas; el resto del catálogo sigue guardado por columnas.
+ * El catálogo no cambia mientras se muestra, por eso la lista nunca avisa de cambios.
+ */
+class ListaCatalogo extends ObservableListBase<Producto> {
+
+    private final CatalogoProductos catalogo;
+
+    /**
+     * Constructor para inicializar la lista.
+     *
+     * @param catalogo el catálogo que se muestra
+     */
+    ListaCatalogo(CatalogoProductos catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    @Override
+    public Producto get(int indice) {
+        return catalogo.get(indice);
+    }
+
+    @Override
+    public int size() {
+        return catalogo.size();
+    }
+}
@@ -0,0 +1,280 @@
+package es.guillearana.examendein1.controllers;
+
+import es.guillearana.examendein1.dao.Cambio;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+import javafx.collections.ObservableList;
+
+import java.util.List;
+
+/**
+ * Ventana acotada de productos que respalda la tabla.
+ *
+ * La lista de la tabla solo contiene un tramo contiguo del catálogo, ordenado por código.
+ * Al llegar al final se añade la página siguiente y se descartan las filas más antiguas
+ * del principio; al volver al principio ocurre lo contrario. Así nunca hay en memoria más
+ * de {@code maximoFilas} productos, sea cual sea el tamaño de la tabla.
+ *
+ * Si hay una búsqueda activa, la ventana es un tramo de los resultados de la búsqueda y
+ * los productos que no cumplen el filtro no se añaden aunque se creen o modifiquen.
+ *
+ * Todos los métodos deben llamarse desde el hilo de JavaFX.
+ */
+class VentanaProductos {
+
+    private final ObservableList<Producto> elementos;
+    private final int tamanoPagina;
+    private final int maximoFilas;
+
+    // Indica si quedan productos por delante o por detrás de la ventana
+    private boolean hayMasAdelante;
+    private boolean hayMasAtras;
+    // Evita pedir la misma página dos veces mientras llega la respuesta
+    private boolean cargando;
+    // Búsqueda cuyos resultados muestra la ventana
+    private FiltroProductos filtro = FiltroProductos.TODOS;
+
+    /**
+     * Constructor para inicializar la ventana sobre la lista de la tabla.
+     *
+     * @param elementos la lista observable que muestra la tabla
+     * @param tamanoPagina el número de productos que se piden en cada página
+     * @param maximoFilas el número máximo de productos que se mantienen en memoria
+     */
+    VentanaProductos(ObservableList<Producto> elementos, int tamanoPagina, int maximoFilas) {
+        this.elementos = elementos;
+        this.tamanoPagina = Math.max(1, tamanoPagina);
+        this.maximoFilas = Math.max(this.tamanoPagina * 2, maximoFilas);
+    }
+
+    /**
+     * @return el número de productos que se piden en cada página
+     */
+    int getTamanoPagina() {
+        return tamanoPagina;
+    }
+
+    /**
+     * @return el código del último producto de la ventana, o null si está vacía
+     */
+    String getUltimoCodigo() {
+        return elementos.isEmpty() ? null : elementos.get(elementos.size() - 1).getCodigo();
+    }
+
+    /**
+     * @return el código del primer producto de la ventana, o null si está vacía
+     */
+    String getPrimerCodigo() {
+        return elementos.isEmpty() ? null : elementos.get(0).getCodigo();
+    }
+
+    /**
+     * @return la búsqueda cuyos resultados muestra la ventana
+     */
+    FiltroProductos getFiltro() {
+        return filtro;
+    }
+
+    /**
+     * Cambia la búsqueda de la ventana. Las páginas pedidas para la búsqueda anterior dejan
+     * de esperarse; el contenido se sustituye al llegar la primera página de la nueva.
+     *
+     * @param filtro la nueva búsqueda
+     */
+    void cambiarFiltro(FiltroProductos filtro) {
+        this.filtro = filtro;
+        cargando = false;
+    }
+
+    /**
+     * Marca el inicio de la carga de la página siguiente, si tiene sentido pedirla.
+     *
+     * @return true si hay que pedir la página siguiente
+     */
+    boolean empezarAvance() {
+        if (cargando || !hayMasAdelante) {
+            return false;
+        }
+        cargando = true;
+        return true;
+    }
+
+    /**
+     * Marca el inicio de la carga de la página anterior, si tiene sentido pedirla.
+     *
+     * @return true si hay que pedir la página anterior
+     */
+    boolean empezarRetroceso() {
+        if (cargando || !hayMasAtras || elementos.isEmpty()) {
+            return false;
+        }
+        cargando = true;
+        return true;
+    }
+
+    /**
+     * Marca el fin de una carga que ha fallado o se ha cancelado.
+     */
+    void cancelarCarga() {
+        cargando = false;
+    }
+
+    /**
+     * Muestra una primera página provisional, por ejemplo la de la copia local, hasta que llegue
+     * la de la base de datos. Mientras tanto no se piden más páginas, para no mezclar las dos.
+     *
+     * @param pagina la primera página provisional
+     */
+    void aplicarProvisional(List<Producto> pagina) {
+        elementos.setAll(pagina);
+        cargando = true;
+        hayMasAdelante = false;
+        hayMasAtras = false;
+    }
+
+    /**
+     * Sustituye el contenido de la ventana por la primera página del catálogo.
+     *
+     * @param pagina la primera página
+     */
+    void aplicarPrimera(List<Producto> pagina) {
+        cargando = false;
+        elementos.setAll(pagina);
+        hayMasAdelante = pagina.size() >= tamanoPagina;
+        hayMasAtras = false;
+    }
+
+    /**
+     * Añade la página siguiente al final y descarta filas del principio si se supera el máximo.
+     *
+     * @param pagina la página siguiente
+     * @return el número de filas descartadas al principio de la ventana
+     */
+    int aplicarSiguiente(List<Producto> pagina) {
+        cargando = false;
+        hayMasAdelante = pagina.size() >= tamanoPagina;
+        elementos.addAll(pagina);
+
+        int sobrantes = elementos.size() - maximoFilas;
+        if (sobrantes <= 0) {
+            return 0;
+        }
+        elementos.remove(0, sobrantes);
+        hayMasAtras = true;
+        return sobrantes;
+    }
+
+    /**
+     * Añade la página anterior al principio y descarta filas del final si se supera el máximo.
+     *
+     * @param pagina la página anterior
+     * @return el número de filas añadidas al principio de la ventana
+     */
+    int aplicarAnterior(List<Producto> pagina) {
+        cargando = false;
+        hayMasAtras = pagina.size() >= tamanoPagina;
+        elementos.addAll(0, pagina);
+
+        int sobrantes = elementos.size() - maximoFilas;
+        if (sobrantes > 0) {
+            elementos.remove(elementos.size() - sobrantes, elementos.size());
+            hayMasAdelante = true;
+        }
+        return pagina.size();
+    }
+
+    /**
+     * Inserta un producto en su posición según el código, si cae dentro del tramo cargado.
+     * Si queda fuera de la ventana no se añade: aparecerá al desplazarse hasta su página.
+     * Si no cumple la búsqueda activa, se quita de la ventana en caso de estar cargado.
+     * Si ya está en la ventana, se actualizan sus datos sin sustituir el objeto, para no
+     * perder la selección de la tabla.
+     *
+     * @param producto el producto que se quiere insertar
+     * @return true si el producto se ha añadido o actualizado en la ventana
+     */
+    boolean insertar(Producto producto) {
+        if (!filtro.cumple(producto)) {
+            eliminar(producto.getCodigo());
+            return false;
+        }
+        int posicion = buscarPosicion(producto.getCodigo());
+        if (posicion >= 0) {
+            Producto existente = elementos.get(posicion);
+            if (existente != producto) {
+                existente.setNombre(producto.getNombre());
+                existente.setPrecio(producto.getPrecio());
+                existente.setDisponible(producto.isDisponible());
+                existente.setVersion(producto.getVersion());
+            }
+            return true;
+        }
+        posicion = -posicion - 1;
+        if ((posicion == 0 && hayMasAtras) || (posicion == elementos.size() && hayMasAdelante)) {
+            return false;
+        }
+        elementos.add(posicion, producto);
+        return true;
+    }
+
+    /**
+     * Aplica a la ventana los cambios del registro de cambios.
+     *
+     * @param cambios los cambios, con el estado actual de cada producto
+     */
+    void aplicar(List<Cambio> cambios) {
+        for (Cambio cambio : cambios) {
+            if (cambio.isEliminado()) {
+                eliminar(cambio.getCodigo());
+            } else {
+                insertar(cambio.getActual());
+            }
+        }
+    }
+
+    /**
+     * @return el número máximo de productos que se mantienen en memoria
+     */
+    int getMaximoFilas() {
+        return maximoFilas;
+    }
+
+    /**
+     * Elimina de la ventana el producto con el código indicado, si está cargado.
+     *
+     * @param codigo el código del producto que se quiere eliminar
+     * @return true si el producto estaba en la ventana
+     */
+    boolean eliminar(String codigo) {
+        int posicion = buscarPosicion(codigo);
+        if (posicion < 0) {
+            return false;
+        }
+        elementos.remove(posicion);
+        return true;
+    }
+
+    /**
+     * Busca un código en la ventana mediante búsqueda binaria.
+     *
+     * @param codigo el código buscado
+     * @return la posición del código, o {@code -(punto de inserción) - 1} si no está
+     */
+    private int buscarPosicion(String codigo) {
+        int bajo = 0;
+        int alto = elementos.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            // Sin distinguir mayúsculas, igual que la intercalación por defecto de MySQL
+            int comparacion = elementos.get(medio).getCodigo().compareToIgnoreCase(codigo);
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else if (comparacion > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+}
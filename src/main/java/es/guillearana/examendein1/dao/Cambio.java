@@ -0,0 +1,108 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.model.Producto;
+
+/**
+ * Cambio anotado en el registro de cambios de la tabla productos.
+ *
+ * Junto con el cambio se lee el estado actual del producto, de modo que aplicar un cambio
+ * consiste en sustituir la fila (si el producto existe) o quitarla (si ya no existe).
+ */
+public class Cambio {
+
+    /**
+     * Tipos de cambio, con el código de una letra que se guarda en la columna {@code operacion}.
+     */
+    public enum Tipo {
+        /** Producto creado. */
+        ALTA("I"),
+        /** Producto modificado. */
+        MODIFICACION("U"),
+        /** Producto eliminado. */
+        BAJA("D");
+
+        private final String codigo;
+
+        Tipo(String codigo) {
+            this.codigo = codigo;
+        }
+
+        /**
+         * @return el código de una letra que se guarda en la base de datos
+         */
+        public String getCodigo() {
+            return codigo;
+        }
+
+        /**
+         * Obtiene el tipo de cambio a partir de su código.
+         *
+         * @param codigo el código de una letra
+         * @return el tipo de cambio
+         * @throws IllegalArgumentException si el código no es válido
+         */
+        public static Tipo desdeCodigo(String codigo) {
+            for (Tipo tipo : values()) {
+                if (tipo.codigo.equals(codigo)) {
+                    return tipo;
+                }
+            }
+            throw new IllegalArgumentException("Tipo de cambio desconocido: " + codigo);
+        }
+    }
+
+    private final long id;
+    private final String codigo;
+    private final Tipo tipo;
+    private final Producto actual;
+
+    /**
+     * Constructor para inicializar un cambio.
+     *
+     * @param id el identificador del cambio en el registro
+     * @param codigo el código del producto cambiado
+     * @param tipo el tipo de cambio
+     * @param actual el estado actual del producto, o null si ya no existe
+     */
+    public Cambio(long id, String codigo, Tipo tipo, Producto actual) {
+        this.id = id;
+        this.codigo = codigo;
+        this.tipo = tipo;
+        this.actual = actual;
+    }
+
+    /**
+     * @return el identificador del cambio en el registro
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return el código del producto cambiado
+     */
+    public String getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * @return el tipo de cambio
+     */
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @return el estado actual del producto, o null si ya no existe
+     */
+    public Producto getActual() {
+        return actual;
+    }
+
+    /**
+     * @return true si el producto ya no existe y hay que quitarlo
+     */
+    public boolean isEliminado() {
+        return actual == null;
+    }
+}
@@ -0,0 +1,26 @@
+package es.guillearana.examendein1.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Excepción que indica que el registro de cambios ya no conserva todos los cambios posteriores
+ * al último aplicado, porque se han purgado (ver {@link ProductoRepositorio#purgarCambios}).
+ *
+ * Aplicar solo los cambios que quedan dejaría datos antiguos: quien la recibe debe recargar
+ * todos los productos desde cero.
+ */
+public class CambiosPurgadosException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor para inicializar la excepción.
+     *
+     * @param aplicado el identificador del último cambio aplicado
+     * @param primero el identificador del primer cambio que conserva el registro
+     */
+    public CambiosPurgadosException(long aplicado, long primero) {
+        super("El registro de cambios ya no conserva los cambios posteriores al " + aplicado
+                + " (el primero que queda es el " + primero + "): hay que recargar los productos");
+    }
+}
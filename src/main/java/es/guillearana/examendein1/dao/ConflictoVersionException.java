@@ -0,0 +1,41 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.model.Producto;
+
+import java.sql.SQLException;
+
+/**
+ * Excepción que indica que otro usuario ha modificado o eliminado un producto desde que se leyó,
+ * de modo que la actualización no se ha guardado.
+ *
+ * Lleva el estado actual del producto en la base de datos, para que la interfaz pueda
+ * mostrar las diferencias y combinar los cambios antes de volver a intentarlo.
+ */
+public class ConflictoVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Producto actual;
+
+    /**
+     * Constructor para inicializar la excepción.
+     *
+     * @param codigo el código del producto que no se ha podido actualizar
+     * @param version la versión con la que se intentó actualizar
+     * @param actual el producto tal como está ahora en la base de datos, o null si se ha eliminado
+     */
+    public ConflictoVersionException(String codigo, int version, Producto actual) {
+        super(actual == null
+                ? "El producto " + codigo + " ha sido eliminado por otro usuario"
+                : "El producto " + codigo + " ha sido modificado por otro usuario (versión " + version
+                        + ", actual " + actual.getVersion() + ")");
+        this.actual = actual;
+    }
+
+    /**
+     * @return el producto tal como está ahora en la base de datos, o null si se ha eliminado
+     */
+    public Producto getActual() {
+        return actual;
+    }
+}
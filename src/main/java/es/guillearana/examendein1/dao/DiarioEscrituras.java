@@ -0,0 +1,269 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diario en disco de las escrituras de productos que todavía no se han enviado a la base de datos.
+ *
+ * Cada escritura se añade al final del fichero y se fuerza al disco antes de devolver el control,
+ * así que sobrevive a un cierre inesperado de la aplicación o del equipo. Cada registro lleva su
+ * longitud y un CRC32: si el último quedó a medias por un corte, se descarta al abrir el diario
+ * y se conservan todos los anteriores.
+ *
+ * Formato de cada registro: int longitud, int CRC32, y los datos (byte tipo, código, nombre,
+ * double precio, boolean disponible, int versión esperada).
+ *
+ * Si se interrumpe el hilo que escribe (por ejemplo, al cancelar la operación), Java cierra el
+ * canal del fichero; la siguiente escritura lo vuelve a abrir y descarta lo que quedó a medias.
+ */
+public class DiarioEscrituras {
+
+    /**
+     * Tipo de escritura anotada.
+     */
+    public enum Tipo {
+        CREAR, ACTUALIZAR, ELIMINAR
+    }
+
+    private final Path fichero;
+    // Copia en memoria de las escrituras pendientes, en el orden en que se hicieron
+    private final List<Escritura> pendientes = new ArrayList<>();
+    private FileChannel canal;
+    // Posición donde termina el último registro completo y forzado al disco
+    private long fin;
+    private boolean cerrado;
+
+    /**
+     * Constructor que abre el diario, creándolo si no existe, y lee las escrituras pendientes.
+     *
+     * @param fichero el fichero del diario
+     * @throws IOException si el fichero no se puede leer ni crear
+     */
+    public DiarioEscrituras(Path fichero) throws IOException {
+        this.fichero = fichero;
+        Files.createDirectories(fichero.toAbsolutePath().getParent());
+        this.canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.fin = leerPendientes();
+        if (fin < canal.size()) {
+            // Registro incompleto al final: se escribió a medias antes de un corte
+            canal.truncate(fin);
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Añade una escritura al final del diario y espera a que esté en el disco.
+     *
+     * @param escritura la escritura
+     * @throws IOException si no se puede escribir el fichero
+     */
+    public synchronized void anotar(Escritura escritura) throws IOException {
+        abrirSiCerrado();
+        int escrito = escribirRegistro(canal, fin, escritura);
+        canal.force(false);
+        fin += escrito;
+        pendientes.add(escritura);
+    }
+
+    /**
+     * Escribe un registro en una posición del fichero.
+     *
+     * @return los bytes escritos
+     */
+    private static int escribirRegistro(FileChannel destino, long posicion, Escritura escritura) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream datos = new DataOutputStream(bytes);
+        Producto producto = escritura.getProducto();
+        datos.writeByte(escritura.getTipo().ordinal());
+        datos.writeUTF(producto.getCodigo());
+        datos.writeUTF(producto.getNombre() != null ? producto.getNombre() : "");
+        datos.writeDouble(producto.getPrecio());
+        datos.writeBoolean(producto.isDisponible());
+        datos.writeInt(producto.getVersion());
+
+        byte[] contenido = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(contenido);
+        ByteBuffer registro = ByteBuffer.allocate(8 + contenido.length);
+        registro.putInt(contenido.length).putInt((int) crc.getValue()).put(contenido).flip();
+        while (registro.hasRemaining()) {
+            destino.write(registro, posicion + registro.position());
+        }
+        return registro.limit();
+    }
+
+    /**
+     * Vuelve a abrir el canal si lo ha cerrado la interrupción de un hilo, descartando
+     * lo que quedara escrito a medias.
+     */
+    private void abrirSiCerrado() throws IOException {
+        if (cerrado) {
+            throw new IOException("El diario de escrituras está cerrado");
+        }
+        if (!canal.isOpen()) {
+            canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            canal.truncate(fin);
+        }
+    }
+
+    /**
+     * @return una copia de las escrituras pendientes, en el orden en que se hicieron
+     */
+    public synchronized List<Escritura> getPendientes() {
+        return new ArrayList<>(pendientes);
+    }
+
+    /**
+     * @return true si no hay escrituras pendientes
+     */
+    public synchronized boolean isVacio() {
+        return pendientes.isEmpty();
+    }
+
+    /**
+     * Quita del diario las primeras escrituras, por ejemplo porque ya se han enviado.
+     * El resto se reescribe en un fichero nuevo que sustituye al anterior.
+     *
+     * @param cantidad el número de escrituras que se quitan desde el principio
+     * @throws IOException si no se puede reescribir el fichero
+     */
+    public synchronized void descartar(int cantidad) throws IOException {
+        if (cantidad <= 0) {
+            return;
+        }
+        abrirSiCerrado();
+        List<Escritura> resto = new ArrayList<>(pendientes.subList(Math.min(cantidad, pendientes.size()), pendientes.size()));
+        if (resto.isEmpty()) {
+            canal.truncate(0);
+            canal.force(true);
+            fin = 0;
+            pendientes.clear();
+            return;
+        }
+
+        // El resto se escribe aparte y sustituye al diario de una vez: un corte deja uno u otro entero
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        long escrito = 0;
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Escritura escritura : resto) {
+                escrito += escribirRegistro(nuevo, escrito, escritura);
+            }
+            nuevo.force(true);
+        }
+        canal.close();
+        Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fin = escrito;
+        pendientes.clear();
+        pendientes.addAll(resto);
+    }
+
+    /**
+     * Cierra el fichero del diario. Las escrituras pendientes se leerán al volver a abrirlo.
+     */
+    public synchronized void cerrar() {
+        cerrado = true;
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar el diario de escrituras: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee los registros completos y correctos del fichero.
+     *
+     * @return la posición donde termina el último registro válido
+     */
+    private long leerPendientes() throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(8);
+        long posicion = 0;
+        long tamano = canal.size();
+        while (posicion + 8 <= tamano) {
+            cabecera.clear();
+            canal.read(cabecera, posicion);
+            cabecera.flip();
+            int longitud = cabecera.getInt();
+            int esperado = cabecera.getInt();
+            if (longitud <= 0 || posicion + 8 + longitud > tamano) {
+                break;
+            }
+            ByteBuffer contenido = ByteBuffer.allocate(longitud);
+            while (contenido.hasRemaining() && canal.read(contenido, posicion + 8 + contenido.position()) > 0) {
+                // Se sigue leyendo hasta completar el registro
+            }
+            CRC32 crc = new CRC32();
+            crc.update(contenido.array());
+            if ((int) crc.getValue() != esperado) {
+                break;
+            }
+            pendientes.add(leerEscritura(contenido.array()));
+            posicion += 8 + longitud;
+        }
+        return posicion;
+    }
+
+    private static Escritura leerEscritura(byte[] contenido) throws IOException {
+        DataInputStream datos = new DataInputStream(new ByteArrayInputStream(contenido));
+        Tipo tipo = Tipo.values()[datos.readByte()];
+        Producto producto = new Producto(datos.readUTF(), datos.readUTF(), datos.readDouble(), datos.readBoolean(),
+                datos.readInt());
+        return new Escritura(tipo, producto);
+    }
+
+    /**
+     * Escritura anotada en el diario: el tipo y el producto con la versión que se espera encontrar.
+     */
+    public static final class Escritura {
+
+        private final Tipo tipo;
+        private final Producto producto;
+
+        /**
+         * Constructor para inicializar la escritura.
+         *
+         * @param tipo el tipo de escritura
+         * @param producto el producto; para {@link Tipo#ELIMINAR} basta con el código
+         */
+        public Escritura(Tipo tipo, Producto producto) {
+            this.tipo = tipo;
+            this.producto = producto;
+        }
+
+        /**
+         * @return el tipo de escritura
+         */
+        public Tipo getTipo() {
+            return tipo;
+        }
+
+        /**
+         * @return el producto escrito, con la versión que se espera encontrar en la base de datos
+         */
+        public Producto getProducto() {
+            return producto;
+        }
+
+        @Override
+        public String toString() {
+            return tipo + " " + producto.getCodigo();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package es.guillearana.examendein1.dao;
+
+/**
+ * Instantánea de las estadísticas de la caché de productos.
+ *
+ * Si la tasa de aciertos es baja y las expulsiones son frecuentes, conviene aumentar
+ * {@code cache.maximo}; si casi todo caduca antes de reutilizarse, {@code cache.ttlSegundos}.
+ */
+public class EstadisticasCache {
+
+    private final long aciertos;
+    private final long fallos;
+    private final long expulsiones;
+    private final long caducadas;
+    private final int tamano;
+
+    /**
+     * Constructor para inicializar las estadísticas con los valores de la caché.
+     *
+     * @param aciertos las búsquedas resueltas desde memoria
+     * @param fallos las búsquedas que tuvieron que ir a la base de datos
+     * @param expulsiones las entradas descartadas por superar el tamaño máximo
+     * @param caducadas las entradas descartadas por superar su tiempo de vida
+     * @param tamano el número de productos guardados en este momento
+     */
+    public EstadisticasCache(long aciertos, long fallos, long expulsiones, long caducadas, int tamano) {
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.expulsiones = expulsiones;
+        this.caducadas = caducadas;
+        this.tamano = tamano;
+    }
+
+    /**
+     * @return las búsquedas resueltas desde memoria
+     */
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * @return las búsquedas que tuvieron que ir a la base de datos
+     */
+    public long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * @return las entradas descartadas por superar el tamaño máximo
+     */
+    public long getExpulsiones() {
+        return expulsiones;
+    }
+
+    /**
+     * @return las entradas descartadas por superar su tiempo de vida
+     */
+    public long getCaducadas() {
+        return caducadas;
+    }
+
+    /**
+     * @return el número de productos guardados en este momento
+     */
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * @return la proporción de búsquedas resueltas desde memoria, entre 0 y 1
+     */
+    public double getTasaAciertos() {
+        long consultas = aciertos + fallos;
+        return consultas == 0 ? 0 : (double) aciertos / consultas;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache[aciertos=%d, fallos=%d, tasa=%.1f%%, expulsiones=%d, caducadas=%d, tamaño=%d]",
+                aciertos, fallos, getTasaAciertos() * 100, expulsiones, caducadas, tamano);
+    }
+}
@@ -0,0 +1,109 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.ConexionBD;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Clase DAO para guardar y leer las imágenes de los productos (tabla "productos_imagenes").
+ *
+ * Cada producto tiene como mucho una imagen, guardada dos veces: la original y una miniatura
+ * generada al subirla. Al seleccionar un producto solo se lee la miniatura; la original se
+ * lee únicamente cuando el usuario la pide. Las imágenes se borran solas al eliminar el
+ * producto (clave ajena con ON DELETE CASCADE).
+ *
+ * Usa el mismo pool de conexiones que {@link ProductoDao}, que se obtiene la primera vez que
+ * se usa, así que crear un ImagenDao no abre ninguna conexión.
+ */
+public class ImagenDao {
+
+    /**
+     * Guarda la imagen de un producto, sustituyendo la que tuviera.
+     *
+     * @param codigo el código del producto
+     * @param tipo el tipo MIME de la imagen original
+     * @param imagen los bytes de la imagen original
+     * @param miniatura los bytes de la miniatura
+     * @throws SQLException si ocurre un error al guardar la imagen
+     */
+    public void guardar(String codigo, String tipo, byte[] imagen, byte[] miniatura) throws SQLException {
+        String sql = "INSERT INTO productos_imagenes (codigo, tipo, miniatura, imagen) VALUES (?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE tipo = VALUES(tipo), miniatura = VALUES(miniatura), imagen = VALUES(imagen)";
+        try (Connection conn = ConexionBD.getInstancia().getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, codigo);
+            stmt.setString(2, tipo);
+            stmt.setBytes(3, miniatura);
+            stmt.setBytes(4, imagen);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException("Error al guardar la imagen: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Obtiene la miniatura de la imagen de un producto.
+     *
+     * @param codigo el código del producto
+     * @return los bytes de la miniatura, o null si el producto no tiene imagen
+     * @throws SQLException si ocurre un error al leer la imagen
+     */
+    public byte[] obtenerMiniatura(String codigo) throws SQLException {
+        return leer("miniatura", codigo);
+    }
+
+    /**
+     * Obtiene la imagen original de un producto, a resolución completa.
+     *
+     * @param codigo el código del producto
+     * @return los bytes de la imagen, o null si el producto no tiene imagen
+     * @throws SQLException si ocurre un error al leer la imagen
+     */
+    public byte[] obtenerImagen(String codigo) throws SQLException {
+        return leer("imagen", codigo);
+    }
+
+    /**
+     * Elimina la imagen de un producto, si la tiene.
+     *
+     * @param codigo el código del producto
+     * @throws SQLException si ocurre un error al eliminar la imagen
+     */
+    public void eliminar(String codigo) throws SQLException {
+        String sql = "DELETE FROM productos_imagenes WHERE codigo = ?";
+        try (Connection conn = ConexionBD.getInstancia().getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, codigo);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException("Error al eliminar la imagen: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee una sola columna de bytes de la imagen de un producto.
+     *
+     * @param columna la columna que se lee (miniatura o imagen), nunca un texto del usuario
+     * @param codigo el código del producto
+     * @return los bytes, o null si el producto no tiene imagen
+     * @throws SQLException si ocurre un error al leer la imagen
+     */
+    private byte[] leer(String columna, String codigo) throws SQLException {
+        String sql = "SELECT " + columna + " FROM productos_imagenes WHERE codigo = ?";
+        try (Connection conn = ConexionBD.getInstancia().getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, codigo);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al leer la imagen: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Copia local del catálogo de productos en un fichero binario, que se proyecta en memoria
+ * ({@link FileChannel#map}) para leerla sin cargarla entera.
+ *
+ * El fichero tiene una cabecera, los productos en orden de código y un índice con la posición
+ * del primero de cada bloque de 256. Una página cuesta una búsqueda binaria en el índice y la
+ * lectura de las filas que devuelve, así que abrir la copia y mostrar la primera página lleva
+ * milisegundos aunque tenga un millón de productos: el sistema operativo solo lee del disco
+ * las partes del fichero que se tocan.
+ *
+ * Formato (enteros en big-endian):
+ * <pre>
+ *   cabecera: int magia, int formato, long último cambio, long fecha (ms), int filas, int bloques, long inicio del índice
+ *   fila:     short bytes código, código UTF-8, short bytes nombre, nombre UTF-8, double precio, byte disponible, int versión
+ *   índice:   long posición de la primera fila de cada bloque
+ * </pre>
+ * Cada copia nueva es una generación: se escribe en un fichero temporal que después se renombra
+ * a {@code <nombre>.<generación>.<extensión>} junto al fichero configurado, de modo que un corte
+ * a mitad de escritura nunca deja una copia a medias. La copia anterior no se sustituye, porque
+ * puede seguir proyectada en memoria (en Windows no se puede reemplazar ni borrar un fichero
+ * proyectado): quien la usaba la borra cuando deja de necesitarla.
+ */
+public class InstantaneaProductos {
+
+    private static final int MAGIA = 0x50524F44;  // "PROD"
+    private static final int FORMATO = 1;
+    private static final int TAMANO_CABECERA = 4 + 4 + 8 + 8 + 4 + 4 + 8;
+    private static final int FILAS_BLOQUE = 256;
+
+    // Mismo orden que la columna código de la base de datos, que no distingue mayúsculas
+    private static final Comparator<String> ORDEN = String.CASE_INSENSITIVE_ORDER;
+
+    private final Path fichero;
+    private final long generacion;
+    private final ByteBuffer datos;
+    private final long ultimoCambio;
+    private final long fecha;
+    private final int filas;
+    // Posición de la primera fila de cada bloque; el último bloque termina donde empieza el índice
+    private final int[] bloques;
+    private final int finFilas;
+
+    private InstantaneaProductos(Path fichero, long generacion, MappedByteBuffer datos) throws IOException {
+        if (datos.capacity() < TAMANO_CABECERA || datos.getInt(0) != MAGIA || datos.getInt(4) != FORMATO) {
+            throw new IOException("El fichero no es una copia del catálogo o es de otra versión");
+        }
+        this.fichero = fichero;
+        this.generacion = generacion;
+        this.datos = datos;
+        this.ultimoCambio = datos.getLong(8);
+        this.fecha = datos.getLong(16);
+        this.filas = datos.getInt(24);
+        int numeroBloques = datos.getInt(28);
+        long inicioIndice = datos.getLong(32);
+        if (numeroBloques < 0 || inicioIndice < TAMANO_CABECERA || inicioIndice + numeroBloques * 8L != datos.capacity()) {
+            throw new IOException("La copia del catálogo está incompleta");
+        }
+        this.finFilas = (int) inicioIndice;
+        this.bloques = new int[numeroBloques];
+        for (int i = 0; i < numeroBloques; i++) {
+            bloques[i] = (int) datos.getLong(finFilas + i * 8);
+        }
+    }
+
+    /**
+     * Abre la generación más reciente de la copia del catálogo que se puede leer.
+     *
+     * @param base el fichero configurado para la copia; las generaciones están a su lado
+     * @return la copia, o null si no hay ninguna generación
+     * @throws IOException si hay generaciones pero ninguna se puede leer o es una copia válida
+     */
+    public static InstantaneaProductos abrirUltima(Path base) throws IOException {
+        IOException error = null;
+        for (Map.Entry<Long, Path> generacion : generaciones(base).descendingMap().entrySet()) {
+            try {
+                return abrir(generacion.getValue(), generacion.getKey());
+            } catch (IOException e) {
+                // Puede ser de otro formato o de otro programa: se prueba con la anterior
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return null;
+    }
+
+    /**
+     * Busca las generaciones de la copia que hay junto al fichero configurado. El propio fichero
+     * configurado, escrito por versiones anteriores de la aplicación, cuenta como la generación 0.
+     *
+     * @param base el fichero configurado para la copia
+     * @return los ficheros de cada generación, por número de generación
+     * @throws IOException si no se puede leer la carpeta
+     */
+    public static TreeMap<Long, Path> generaciones(Path base) throws IOException {
+        TreeMap<Long, Path> generaciones = new TreeMap<>();
+        Path carpeta = base.toAbsolutePath().getParent();
+        if (!Files.isDirectory(carpeta)) {
+            return generaciones;
+        }
+        if (Files.exists(base)) {
+            generaciones.put(0L, base);
+        }
+        String prefijo = prefijo(base);
+        String sufijo = sufijo(base);
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(carpeta, prefijo + "*" + sufijo)) {
+            for (Path fichero : ficheros) {
+                String nombre = fichero.getFileName().toString();
+                String numero = nombre.substring(prefijo.length(), nombre.length() - sufijo.length());
+                if (!numero.isEmpty() && numero.chars().allMatch(Character::isDigit) && numero.length() < 19) {
+                    generaciones.put(Long.parseLong(numero), fichero);
+                }
+            }
+        }
+        return generaciones;
+    }
+
+    /**
+     * Abre un fichero de la copia del catálogo.
+     */
+    private static InstantaneaProductos abrir(Path fichero, long generacion) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("La copia del catálogo ocupa más de 2 GB");
+            }
+            // La proyección sigue siendo válida después de cerrar el canal
+            return new InstantaneaProductos(fichero, generacion, canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * Escribe una generación nueva de la copia del catálogo con todos los productos de un
+     * repositorio, leyéndolos de uno en uno. Las generaciones anteriores no se tocan.
+     *
+     * @param origen el repositorio del que se leen los productos
+     * @param ultimoCambio el último cambio del registro antes de empezar a leer
+     * @param base el fichero configurado para la copia
+     * @return la copia nueva, ya abierta
+     * @throws SQLException si ocurre un error al leer los productos
+     * @throws IOException si ocurre un error al escribir el fichero
+     */
+    public static InstantaneaProductos escribir(ProductoRepositorio origen, long ultimoCambio, Path base)
+            throws SQLException, IOException {
+        return escribir(base, ultimoCambio, origen::recorrerTodos);
+    }
+
+    /**
+     * Escribe una generación nueva de la copia aplicando cambios a esta, sin leer el catálogo de
+     * la base de datos: se recorren las filas de esta copia y se sustituyen, quitan o añaden las
+     * de los productos cambiados.
+     *
+     * @param cambios los cambios que se aplican, como mucho uno por producto, con su estado actual
+     * @param ultimoCambio el último cambio del registro incluido en la copia nueva
+     * @param base el fichero configurado para la copia
+     * @return la copia nueva, ya abierta
+     * @throws IOException si ocurre un error al escribir el fichero
+     */
+    public InstantaneaProductos aplicar(Collection<Cambio> cambios, long ultimoCambio, Path base) throws IOException {
+        TreeMap<String, Cambio> pendientes = new TreeMap<>(ORDEN);
+        for (Cambio cambio : cambios) {
+            pendientes.put(cambio.getCodigo(), cambio);
+        }
+        return escribir(base, ultimoCambio, visitante -> {
+            recorrer(producto -> {
+                // Antes de cada fila van los productos nuevos con código menor
+                while (!pendientes.isEmpty() && ORDEN.compare(pendientes.firstKey(), producto.getCodigo()) < 0) {
+                    aplicar(pendientes.pollFirstEntry().getValue(), visitante);
+                }
+                Cambio cambio = pendientes.remove(producto.getCodigo());
+                if (cambio == null) {
+                    visitante.accept(producto);
+                } else {
+                    aplicar(cambio, visitante);
+                }
+            });
+            for (Cambio cambio : pendientes.values()) {
+                aplicar(cambio, visitante);
+            }
+        });
+    }
+
+    private static void aplicar(Cambio cambio, Consumer<Producto> visitante) {
+        if (!cambio.isEliminado()) {
+            visitante.accept(cambio.getActual());
+        }
+    }
+
+    /**
+     * Escribe en una generación nueva los productos que entrega un recorrido en orden de código.
+     */
+    private static <E extends Exception> InstantaneaProductos escribir(Path base, long ultimoCambio,
+                                                                       Recorrido<E> recorrido) throws E, IOException {
+        Path carpeta = base.toAbsolutePath().getParent();
+        Files.createDirectories(carpeta);
+        Path temporal = Files.createTempFile(carpeta, "instantanea", ".tmp");
+        try {
+            Escritor escritor;
+            try (DataOutputStream salida = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporal), 64 * 1024))) {
+                escritor = new Escritor(salida);
+                try {
+                    recorrido.recorrer(escritor);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                escritor.escribirIndice();
+            }
+
+            // La cabecera se completa al final, cuando ya se sabe cuántas filas hay
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+            cabecera.putInt(MAGIA).putInt(FORMATO).putLong(ultimoCambio).putLong(System.currentTimeMillis())
+                    .putInt(escritor.filas).putInt(escritor.bloques).putLong(escritor.posicion).flip();
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                canal.write(cabecera, 0);
+                canal.force(true);
+            }
+            // Un nombre nuevo: la generación anterior puede estar proyectada y no se puede reemplazar
+            TreeMap<Long, Path> existentes = generaciones(base);
+            long generacion = existentes.isEmpty() ? 1 : existentes.lastKey() + 1;
+            Path fichero = carpeta.resolve(prefijo(base) + generacion + sufijo(base));
+            Files.move(temporal, fichero, StandardCopyOption.ATOMIC_MOVE);
+            return abrir(fichero, generacion);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * @return el nombre del fichero configurado sin la extensión, seguido de un punto
+     */
+    private static String prefijo(Path base) {
+        String nombre = base.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        return (punto > 0 ? nombre.substring(0, punto) : nombre) + ".";
+    }
+
+    /**
+     * @return la extensión del fichero configurado con su punto, o vacío si no tiene
+     */
+    private static String sufijo(Path base) {
+        String nombre = base.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        return punto > 0 ? nombre.substring(punto) : "";
+    }
+
+    /**
+     * @return el fichero de esta generación de la copia
+     */
+    public Path getFichero() {
+        return fichero;
+    }
+
+    /**
+     * @return el número de generación de la copia; las más recientes tienen números mayores
+     */
+    public long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * @return el identificador del último cambio del registro incluido en la copia
+     */
+    public long getUltimoCambio() {
+        return ultimoCambio;
+    }
+
+    /**
+     * @return el momento en que se escribió la copia, en milisegundos desde 1970
+     */
+    public long getFecha() {
+        return fecha;
+    }
+
+    /**
+     * @return el número de productos de la copia
+     */
+    public int size() {
+        return filas;
+    }
+
+    /**
+     * Busca una página de productos que cumplen un filtro, en orden de código.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código mayor que {@code despuesDe}
+     */
+    public List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) {
+        List<Producto> pagina = new ArrayList<>(Math.min(limite, 1024));
+        int bloque = despuesDe == null ? 0 : Math.max(0, bloqueDe(despuesDe));
+        for (int b = bloque; b < bloques.length && pagina.size() < limite; b++) {
+            int posicion = bloques[b];
+            int fin = finBloque(b);
+            while (posicion < fin && pagina.size() < limite) {
+                Producto producto = leerFila(posicion);
+                posicion = siguienteFila(posicion);
+                if ((despuesDe == null || ORDEN.compare(producto.getCodigo(), despuesDe) > 0) && filtro.cumple(producto)) {
+                    pagina.add(producto);
+                }
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Busca la página de productos que cumplen un filtro inmediatamente anterior a un código.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código menor que {@code antesDe}, en orden ascendente
+     */
+    public List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) {
+        // Las filas tienen longitud variable y no se pueden leer hacia atrás: se leen bloques
+        // completos, del más cercano al primero, hasta reunir la página
+        List<List<Producto>> encontrados = new ArrayList<>();
+        int total = 0;
+        for (int b = bloqueDe(antesDe); b >= 0 && total < limite; b--) {
+            List<Producto> enBloque = new ArrayList<>();
+            for (int posicion = bloques[b], fin = finBloque(b); posicion < fin; posicion = siguienteFila(posicion)) {
+                Producto producto = leerFila(posicion);
+                if (ORDEN.compare(producto.getCodigo(), antesDe) < 0 && filtro.cumple(producto)) {
+                    enBloque.add(producto);
+                }
+            }
+            encontrados.add(enBloque);
+            total += enBloque.size();
+        }
+        List<Producto> pagina = new ArrayList<>(Math.min(total, limite));
+        for (int i = encontrados.size() - 1; i >= 0; i--) {
+            pagina.addAll(encontrados.get(i));
+        }
+        return pagina.size() > limite ? new ArrayList<>(pagina.subList(pagina.size() - limite, pagina.size())) : pagina;
+    }
+
+    /**
+     * Busca un producto por su código.
+     *
+     * @param codigo el código del producto
+     * @return el producto, o null si no está en la copia
+     */
+    public Producto obtenerPorCodigo(String codigo) {
+        int b = bloqueDe(codigo);
+        if (b < 0) {
+            return null;
+        }
+        for (int posicion = bloques[b], fin = finBloque(b); posicion < fin; posicion = siguienteFila(posicion)) {
+            if (ORDEN.compare(leerTexto(posicion), codigo) == 0) {
+                return leerFila(posicion);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recorre todos los productos de la copia en orden de código.
+     *
+     * @param visitante la acción que se ejecuta con cada producto
+     * @return el número de productos recorridos
+     */
+    public long recorrer(Consumer<Producto> visitante) {
+        for (int posicion = TAMANO_CABECERA; posicion < finFilas; posicion = siguienteFila(posicion)) {
+            visitante.accept(leerFila(posicion));
+        }
+        return filas;
+    }
+
+    /**
+     * Busca el último bloque cuyo primer código es menor o igual que un código.
+     *
+     * @return el índice del bloque, o -1 si el código es anterior a todos
+     */
+    private int bloqueDe(String codigo) {
+        int bajo = 0;
+        int alto = bloques.length - 1;
+        int encontrado = -1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ORDEN.compare(leerTexto(bloques[medio]), codigo) <= 0) {
+                encontrado = medio;
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return encontrado;
+    }
+
+    private int finBloque(int bloque) {
+        return bloque + 1 < bloques.length ? bloques[bloque + 1] : finFilas;
+    }
+
+    private int siguienteFila(int posicion) {
+        int nombre = posicion + 2 + Short.toUnsignedInt(datos.getShort(posicion));
+        return nombre + 2 + Short.toUnsignedInt(datos.getShort(nombre)) + 8 + 1 + 4;
+    }
+
+    private Producto leerFila(int posicion) {
+        String codigo = leerTexto(posicion);
+        int nombreEn = posicion + 2 + Short.toUnsignedInt(datos.getShort(posicion));
+        String nombre = leerTexto(nombreEn);
+        int resto = nombreEn + 2 + Short.toUnsignedInt(datos.getShort(nombreEn));
+        return new Producto(codigo, nombre, datos.getDouble(resto), datos.get(resto + 8) != 0, datos.getInt(resto + 9));
+    }
+
+    private String leerTexto(int posicion) {
+        byte[] bytes = new byte[Short.toUnsignedInt(datos.getShort(posicion))];
+        datos.get(posicion + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Recorrido de productos en orden de código, desde la base de datos o desde otra copia.
+     */
+    @FunctionalInterface
+    private interface Recorrido<E extends Exception> {
+        void recorrer(Consumer<Producto> visitante) throws E;
+    }
+
+    /**
+     * Escribe las filas a medida que llegan y anota dónde empieza cada bloque.
+     */
+    private static final class Escritor implements Consumer<Producto> {
+
+        private final DataOutputStream salida;
+        private long[] indice = new long[64];
+        private int filas;
+        private int bloques;
+        private long posicion = TAMANO_CABECERA;
+
+        Escritor(DataOutputStream salida) throws IOException {
+            this.salida = salida;
+            // Hueco para la cabecera, que se escribe al terminar
+            salida.write(new byte[TAMANO_CABECERA]);
+        }
+
+        @Override
+        public void accept(Producto producto) {
+            try {
+                if (filas % FILAS_BLOQUE == 0) {
+                    if (bloques == indice.length) {
+                        indice = Arrays.copyOf(indice, bloques * 2);
+                    }
+                    indice[bloques++] = posicion;
+                }
+                byte[] codigo = producto.getCodigo().getBytes(StandardCharsets.UTF_8);
+                byte[] nombre = producto.getNombre().getBytes(StandardCharsets.UTF_8);
+                salida.writeShort(codigo.length);
+                salida.write(codigo);
+                salida.writeShort(nombre.length);
+                salida.write(nombre);
+                salida.writeDouble(producto.getPrecio());
+                salida.writeByte(producto.isDisponible() ? 1 : 0);
+                salida.writeInt(producto.getVersion());
+                posicion += 2 + codigo.length + 2 + nombre.length + 8 + 1 + 4;
+                filas++;
+                if (posicion > Integer.MAX_VALUE - 8L * (bloques + 1)) {
+                    throw new IOException("La copia del catálogo ocuparía más de 2 GB");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void escribirIndice() throws IOException {
+            for (int i = 0; i < bloques; i++) {
+                salida.writeLong(indice[i]);
+            }
+        }
+    }
+}
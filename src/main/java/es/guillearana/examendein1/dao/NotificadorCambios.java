@@ -0,0 +1,94 @@
+package es.guillearana.examendein1.dao;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Lee en segundo plano el registro de cambios y entrega los nuevos a quien los escucha,
+ * para que cada cliente vea las ediciones de los demás sin refrescar a mano.
+ *
+ * Cada lectura es la consulta incremental de {@link SeguidorCambios} (por clave primaria y
+ * solo con los cambios posteriores al último entregado), así que sin actividad cuesta una
+ * consulta vacía por intervalo. Si la base de datos falla, se espera el doble cada vez,
+ * hasta {@code 30 × intervalo}, y se vuelve al intervalo normal en cuanto responde.
+ *
+ * Si el registro se ha purgado y faltan cambios, en lugar de entregarlos se llama a la acción
+ * de recarga, que debe volver a leer todo.
+ *
+ * El oyente se llama desde el hilo del notificador: la interfaz debe pasar los cambios
+ * al hilo de JavaFX con {@code Platform.runLater}.
+ */
+public class NotificadorCambios {
+
+    private final SeguidorCambios seguidor;
+    private final long intervaloMs;
+    private final Consumer<List<Cambio>> oyente;
+    private final Runnable recargar;
+    private Thread hilo;
+
+    /**
+     * Constructor para inicializar el notificador, sin ponerlo en marcha.
+     *
+     * @param seguidor el seguidor del registro de cambios; puede compartirse con refrescos manuales
+     * @param intervaloMs los milisegundos entre lecturas
+     * @param oyente la acción que recibe cada grupo de cambios nuevos, nunca vacío
+     * @param recargar la acción que vuelve a leer todo cuando se han purgado cambios sin entregar
+     */
+    public NotificadorCambios(SeguidorCambios seguidor, long intervaloMs, Consumer<List<Cambio>> oyente,
+                              Runnable recargar) {
+        this.seguidor = seguidor;
+        this.intervaloMs = Math.max(100, intervaloMs);
+        this.oyente = oyente;
+        this.recargar = recargar;
+    }
+
+    /**
+     * Pone en marcha la lectura periódica en un hilo virtual. No hace nada si ya está en marcha.
+     */
+    public synchronized void iniciar() {
+        if (hilo == null) {
+            hilo = Thread.ofVirtual().name("notificador-cambios").start(this::ejecutar);
+        }
+    }
+
+    /**
+     * Detiene la lectura periódica, interrumpiendo la espera o la consulta en curso.
+     */
+    public synchronized void detener() {
+        if (hilo != null) {
+            hilo.interrupt();
+            hilo = null;
+        }
+    }
+
+    /**
+     * Bucle del hilo: lee, entrega y espera hasta que se detiene el notificador.
+     */
+    private void ejecutar() {
+        long espera = intervaloMs;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Cambio> cambios = seguidor.leer();
+                if (!cambios.isEmpty()) {
+                    oyente.accept(cambios);
+                }
+                espera = intervaloMs;
+            } catch (CambiosPurgadosException e) {
+                recargar.run();
+                espera = intervaloMs;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                System.err.println("Error al leer los cambios de productos: " + e.getMessage());
+                espera = Math.min(espera * 2, intervaloMs * 30);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(espera);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
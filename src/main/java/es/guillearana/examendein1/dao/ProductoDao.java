@@ -1,29 +1,49 @@
 package es.guillearana.examendein1.dao;
 
 import es.guillearana.examendein1.conexion.ConexionBD;
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.model.FiltroProductos;
 import es.guillearana.examendein1.model.Producto;
 
 import java.sql.*;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Clase DAO (Data Access Object) para gestionar las operaciones de la tabla "productos" en la base de datos.
  * Contiene métodos para crear, obtener, actualizar y eliminar productos.
+ *
+ * Es la implementación de {@link ProductoRepositorio} para MySQL. Las partes que dependen del
+ * dialecto (lectura continua y búsqueda de texto completo) están en métodos protegidos que
+ * {@link ProductoDaoLocal} sustituye para la base de datos embebida.
  */
-public class ProductoDao {
+public class ProductoDao implements ProductoRepositorio {
 
-    // Conexión a la base de datos, se obtiene desde la clase ConexionBD
-    private ConexionBD conexionBD;
+    // Anota un cambio en el registro que usan los clientes para refrescar solo lo que ha cambiado
+    private static final String SQL_REGISTRAR_CAMBIO = "INSERT INTO productos_cambios (codigo, operacion) VALUES (?, ?)";
+    // Longitud de los n-gramas del índice FULLTEXT (ngram_token_size); los textos más cortos no lo usan
+    private static final int LONGITUD_MINIMA_TEXTO_COMPLETO = 2;
+
+    // Pool de conexiones a la base de datos, compartido por toda la aplicación
+    protected ConexionBD conexionBD;
 
     /**
-     * Constructor para inicializar la conexión a la base de datos utilizando la clase ConexionBD.
+     * Constructor para inicializar el acceso al pool de conexiones de la clase ConexionBD.
+     * Cada operación toma prestada una conexión del pool y la devuelve al terminar.
      *
-     * @throws RuntimeException si ocurre un error al obtener la conexión a la base de datos
+     * @throws RuntimeException si ocurre un error al crear el pool de conexiones
      */
     public ProductoDao(){
         try {
-            this.conexionBD = new ConexionBD();  // Obtener la conexión desde ConexionBD
+            this.conexionBD = ConexionBD.getInstancia();  // Obtener el pool compartido desde ConexionBD
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -35,9 +55,10 @@ public class ProductoDao {
      * @param producto el producto a crear
      * @throws SQLException si ocurre un error al ejecutar la consulta
      */
+    @Override
     public void crear(Producto producto) throws SQLException {
         String sql = "INSERT INTO productos (codigo, nombre, precio, disponible) VALUES (?, ?, ?, ?)";
-        try (Connection conn = conexionBD.getConexion();  // Usamos conexionBD.getConexion() para obtener la conexión
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, producto.getCodigo());
@@ -45,7 +66,11 @@ public class ProductoDao {
             stmt.setDouble(3, producto.getPrecio());
             stmt.setBoolean(4, producto.isDisponible());
 
+            // El alta y su anotación en el registro de cambios se confirman juntas
+            conn.setAutoCommit(false);
             stmt.executeUpdate();
+            registrarCambio(conn, producto.getCodigo(), Cambio.Tipo.ALTA);
+            conn.commit();
         } catch (SQLException e) {
             System.err.println("Error al ejecutar la consulta: " + e.getMessage());
             e.printStackTrace();
@@ -59,20 +84,16 @@ public class ProductoDao {
      * @return una lista con todos los productos
      * @throws SQLException si ocurre un error al ejecutar la consulta
      */
+    @Override
     public List<Producto> obtenerTodos() throws SQLException {
         List<Producto> productos = new ArrayList<>();
         String sql = "SELECT * FROM productos";
-        try (Connection conn = conexionBD.getConexion();  // Usamos conexionBD.getConexion() para obtener la conexión
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                productos.add(new Producto(
-                        rs.getString("codigo"),
-                        rs.getString("nombre"),
-                        rs.getDouble("precio"),
-                        rs.getBoolean("disponible")
-                ));
+                productos.add(mapear(rs));
             }
         } catch (SQLException e) {
             throw new SQLException("Error al obtener todos los productos: " + e.getMessage(), e);
@@ -81,25 +102,363 @@ public class ProductoDao {
     }
 
     /**
-     * Actualiza un producto en la base de datos.
+     * Obtiene un producto a partir de su código.
+     *
+     * @param codigo el código del producto
+     * @return el producto, o null si no existe ningún producto con ese código
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public Producto obtenerPorCodigo(String codigo) throws SQLException {
+        String sql = "SELECT codigo, nombre, precio, disponible, version FROM productos WHERE codigo = ?";
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, codigo);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapear(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el producto: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cuenta los productos de la base de datos.
+     *
+     * @return el número de productos
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public long contar() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM productos";
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new SQLException("Error al contar los productos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre todos los productos de la base de datos, fila a fila, sin cargarlos en memoria.
+     * Cada producto se entrega al visitante en cuanto llega del servidor, por lo que la memoria
+     * usada no depende del tamaño de la tabla. El tamaño de lectura se configura con
+     * {@code consulta.fetchSize} (ver {@link #prepararLecturaContinua(Connection, String)}).
+     *
+     * @param visitante la acción que se ejecuta con cada producto, en orden de código
+     * @return el número de productos recorridos
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public long recorrerTodos(Consumer<Producto> visitante) throws SQLException {
+        String sql = "SELECT codigo, nombre, precio, disponible, version FROM productos ORDER BY codigo";
+        long filas = 0;
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = prepararLecturaContinua(conn, sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                visitante.accept(mapear(rs));
+                filas++;
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al recorrer los productos: " + e.getMessage(), e);
+        }
+        return filas;
+    }
+
+    /**
+     * Obtiene todos los productos como un Stream que se lee del servidor a medida que se consume.
+     * El Stream mantiene ocupada una conexión del pool hasta que se cierra, por lo que debe
+     * usarse siempre dentro de un try-with-resources. Los errores de lectura se propagan como
+     * {@link RuntimeException} con la {@link SQLException} original como causa.
+     *
+     * @return un Stream con todos los productos, en orden de código
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public Stream<Producto> streamTodos() throws SQLException {
+        String sql = "SELECT codigo, nombre, precio, disponible, version FROM productos ORDER BY codigo";
+        Connection conn = conexionBD.getConexion();
+        PreparedStatement stmt = null;
+        try {
+            stmt = prepararLecturaContinua(conn, sql);
+            ResultSet rs = stmt.executeQuery();
+            PreparedStatement sentencia = stmt;
+
+            Spliterator<Producto> filas = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Producto> accion) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        accion.accept(mapear(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Error al leer los productos: " + e.getMessage(), e);
+                    }
+                }
+            };
+            return StreamSupport.stream(filas, false).onClose(() -> cerrar(rs, sentencia, conn));
+        } catch (SQLException e) {
+            cerrar(null, stmt, conn);
+            throw new SQLException("Error al obtener los productos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Obtiene una página de productos ordenada por código usando paginación por clave.
+     * En lugar de saltar filas con OFFSET, se parte del último código de la página anterior,
+     * por lo que el coste de cada página no depende de lo lejos que esté en la tabla.
+     *
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return los productos con código mayor que {@code despuesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public List<Producto> obtenerPagina(String despuesDe, int limite) throws SQLException {
+        String sql = despuesDe == null
+                ? "SELECT codigo, nombre, precio, disponible, version FROM productos ORDER BY codigo LIMIT ?"
+                : "SELECT codigo, nombre, precio, disponible, version FROM productos WHERE codigo > ? ORDER BY codigo LIMIT ?";
+        List<Producto> productos = new ArrayList<>(limite);
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int indice = 1;
+            if (despuesDe != null) {
+                stmt.setString(indice++, despuesDe);
+            }
+            stmt.setInt(indice, limite);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener la página de productos: " + e.getMessage(), e);
+        }
+        return productos;
+    }
+
+    /**
+     * Obtiene la página de productos inmediatamente anterior a un código, usando paginación por clave.
+     *
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return los productos con código menor que {@code antesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public List<Producto> obtenerPaginaAnterior(String antesDe, int limite) throws SQLException {
+        String sql = "SELECT codigo, nombre, precio, disponible, version FROM productos WHERE codigo < ? ORDER BY codigo DESC LIMIT ?";
+        List<Producto> productos = new ArrayList<>(limite);
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, antesDe);
+            stmt.setInt(2, limite);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(mapear(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener la página anterior de productos: " + e.getMessage(), e);
+        }
+        // La consulta recorre la tabla hacia atrás; devolvemos la página en orden ascendente
+        Collections.reverse(productos);
+        return productos;
+    }
+
+    /**
+     * Busca productos que cumplen un filtro y devuelve solo una página, ordenada por código.
+     * Todas las condiciones se resuelven en el servidor con los índices de
+     * {@code sql/002_indices_busqueda.sql}, y la paginación es por clave como en
+     * {@link #obtenerPagina(String, int)}.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código mayor que {@code despuesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) throws SQLException {
+        List<Object> parametros = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT codigo, nombre, precio, disponible, version FROM productos WHERE ");
+        sql.append(construirCondiciones(filtro, parametros));
+        if (despuesDe != null) {
+            sql.append(" AND codigo > ?");
+            parametros.add(despuesDe);
+        }
+        sql.append(" ORDER BY codigo LIMIT ?");
+        parametros.add(limite);
+
+        try {
+            return consultarPagina(sql.toString(), parametros, limite);
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar productos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca la página de productos que cumplen un filtro inmediatamente anterior a un código.
      *
-     * @param producto el producto con los datos actualizados
+     * @param filtro los criterios de búsqueda
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código menor que {@code antesDe}, en orden ascendente
      * @throws SQLException si ocurre un error al ejecutar la consulta
+     * @see #buscar(FiltroProductos, String, int)
      */
+    @Override
+    public List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) throws SQLException {
+        List<Object> parametros = new ArrayList<>();
+        String sql = "SELECT codigo, nombre, precio, disponible, version FROM productos WHERE "
+                + construirCondiciones(filtro, parametros) + " AND codigo < ? ORDER BY codigo DESC LIMIT ?";
+        parametros.add(antesDe);
+        parametros.add(limite);
+
+        List<Producto> productos;
+        try {
+            productos = consultarPagina(sql, parametros, limite);
+        } catch (SQLException e) {
+            throw new SQLException("Error al buscar productos: " + e.getMessage(), e);
+        }
+        // La consulta recorre la tabla hacia atrás; devolvemos la página en orden ascendente
+        Collections.reverse(productos);
+        return productos;
+    }
+
+    /**
+     * Traduce un filtro a condiciones SQL, añadiendo sus valores a la lista de parámetros.
+     *
+     * El código se busca por prefijo con LIKE, que usa la clave primaria. El nombre se busca
+     * con el índice FULLTEXT de n-gramas cuando el texto es lo bastante largo
+     * ({@code busqueda.textoCompleto}); el LIKE posterior solo descarta los falsos positivos
+     * entre las filas que devuelve el índice.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param parametros la lista donde se añaden los valores de las condiciones
+     * @return las condiciones unidas con AND, o "1 = 1" si el filtro está vacío
+     */
+    private String construirCondiciones(FiltroProductos filtro, List<Object> parametros) {
+        StringJoiner condiciones = new StringJoiner(" AND ");
+        condiciones.setEmptyValue("1 = 1");
+
+        if (filtro.getCodigo() != null) {
+            condiciones.add("codigo LIKE ? ESCAPE '!'");
+            parametros.add(escaparLike(filtro.getCodigo()) + "%");
+        }
+        if (filtro.getNombre() != null) {
+            String nombre = filtro.getNombre();
+            if (admiteTextoCompleto() && nombre.length() >= LONGITUD_MINIMA_TEXTO_COMPLETO) {
+                // Búsqueda de frase: los n-gramas del texto deben aparecer seguidos
+                condiciones.add("MATCH(nombre) AGAINST (? IN BOOLEAN MODE)");
+                parametros.add('"' + nombre.replace('"', ' ') + '"');
+            }
+            condiciones.add("nombre LIKE ? ESCAPE '!'");
+            parametros.add("%" + escaparLike(nombre) + "%");
+        }
+        if (filtro.getPrecioMinimo() != null) {
+            condiciones.add("precio >= ?");
+            parametros.add(filtro.getPrecioMinimo());
+        }
+        if (filtro.getPrecioMaximo() != null) {
+            condiciones.add("precio <= ?");
+            parametros.add(filtro.getPrecioMaximo());
+        }
+        if (filtro.getDisponible() != null) {
+            condiciones.add("disponible = ?");
+            parametros.add(filtro.getDisponible());
+        }
+        return condiciones.toString();
+    }
+
+    /**
+     * Indica si la búsqueda por nombre puede usar el índice FULLTEXT ({@code busqueda.textoCompleto}).
+     *
+     * @return true si se usa MATCH ... AGAINST para buscar por nombre
+     */
+    protected boolean admiteTextoCompleto() {
+        return Boolean.parseBoolean(Propiedades.getValor("busqueda.textoCompleto", "true"));
+    }
+
+    /**
+     * Ejecuta una consulta de página con los parámetros indicados.
+     */
+    private List<Producto> consultarPagina(String sql, List<Object> parametros, int limite) throws SQLException {
+        List<Producto> productos = new ArrayList<>(limite);
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < parametros.size(); i++) {
+                stmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(mapear(rs));
+                }
+            }
+        }
+        return productos;
+    }
+
+    /**
+     * Escapa los comodines de LIKE para que el texto se busque literalmente.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Actualiza un producto en la base de datos con bloqueo optimista: la fila solo se
+     * modifica si sigue en la versión del producto, y al guardarse la versión se incrementa.
+     * Si no se modifica ninguna fila, otro usuario se ha adelantado y se lee el estado
+     * actual para informar del conflicto; no se bloquea nada mientras el usuario edita.
+     *
+     * @param producto el producto con los datos actualizados; si se guarda, su versión pasa a la nueva
+     * @throws ConflictoVersionException si el producto ha cambiado o se ha eliminado desde que se leyó
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
     public void actualizar(Producto producto) throws SQLException {
-        String sql = "UPDATE productos SET nombre = ?, precio = ?, disponible = ? WHERE codigo = ?";
-        try (Connection conn = conexionBD.getConexion();  // Usamos conexionBD.getConexion() para obtener la conexión
+        String sql = "UPDATE productos SET nombre = ?, precio = ?, disponible = ?, version = version + 1 "
+                + "WHERE codigo = ? AND version = ?";
+        boolean guardado;
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, producto.getNombre());
             stmt.setDouble(2, producto.getPrecio());
             stmt.setBoolean(3, producto.isDisponible());
             stmt.setString(4, producto.getCodigo());
+            stmt.setInt(5, producto.getVersion());
 
-            stmt.executeUpdate();
+            conn.setAutoCommit(false);
+            guardado = stmt.executeUpdate() > 0;
+            if (guardado) {
+                registrarCambio(conn, producto.getCodigo(), Cambio.Tipo.MODIFICACION);
+            }
+            conn.commit();
         } catch (SQLException e) {
             throw new SQLException("Error al actualizar el producto: " + e.getMessage(), e);
         }
+
+        if (!guardado) {
+            throw new ConflictoVersionException(producto.getCodigo(), producto.getVersion(),
+                    obtenerPorCodigo(producto.getCodigo()));
+        }
+        producto.setVersion(producto.getVersion() + 1);
     }
 
     /**
@@ -108,15 +467,430 @@ public class ProductoDao {
      * @param codigo el código del producto a eliminar
      * @throws SQLException si ocurre un error al ejecutar la consulta
      */
+    @Override
     public void eliminar(String codigo) throws SQLException {
         String sql = "DELETE FROM productos WHERE codigo = ?";
-        try (Connection conn = conexionBD.getConexion();  // Usamos conexionBD.getConexion() para obtener la conexión
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, codigo);
-            stmt.executeUpdate();
+
+            conn.setAutoCommit(false);
+            if (stmt.executeUpdate() > 0) {
+                registrarCambio(conn, codigo, Cambio.Tipo.BAJA);
+            }
+            conn.commit();
         } catch (SQLException e) {
             throw new SQLException("Error al eliminar el producto: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Crea muchos productos a la vez usando lotes JDBC.
+     *
+     * @param productos los productos a crear
+     * @return el resultado con los productos creados y los que han fallado
+     * @throws SQLException si no se puede obtener una conexión o falla la transacción
+     * @see #ejecutarPorLotes(String, List, ParametrosLote, boolean, Cambio.Tipo)
+     */
+    @Override
+    public ResultadoLote crearTodos(List<Producto> productos) throws SQLException {
+        String sql = "INSERT INTO productos (codigo, nombre, precio, disponible) VALUES (?, ?, ?, ?)";
+        return ejecutarPorLotes(sql, productos, (stmt, producto) -> {
+            stmt.setString(1, producto.getCodigo());
+            stmt.setString(2, producto.getNombre());
+            stmt.setDouble(3, producto.getPrecio());
+            stmt.setBoolean(4, producto.isDisponible());
+        }, false, Cambio.Tipo.ALTA);
+    }
+
+    /**
+     * Actualiza muchos productos a la vez usando lotes JDBC.
+     * Los productos cuyo código no existe se anotan como fallos.
+     *
+     * No comprueba versiones (los datos vienen de fuera, por ejemplo de una importación),
+     * pero sí las incrementa, para que las ediciones abiertas en otros puestos detecten el cambio.
+     *
+     * @param productos los productos con los datos actualizados
+     * @return el resultado con los productos actualizados y los que han fallado
+     * @throws SQLException si no se puede obtener una conexión o falla la transacción
+     * @see #ejecutarPorLotes(String, List, ParametrosLote, boolean, Cambio.Tipo)
+     */
+    @Override
+    public ResultadoLote actualizarTodos(List<Producto> productos) throws SQLException {
+        String sql = "UPDATE productos SET nombre = ?, precio = ?, disponible = ?, version = version + 1 WHERE codigo = ?";
+        return ejecutarPorLotes(sql, productos, (stmt, producto) -> {
+            stmt.setString(1, producto.getNombre());
+            stmt.setDouble(2, producto.getPrecio());
+            stmt.setBoolean(3, producto.isDisponible());
+            stmt.setString(4, producto.getCodigo());
+        }, true, Cambio.Tipo.MODIFICACION);
+    }
+
+    /**
+     * Actualiza muchos productos en una sola transacción con un único lote JDBC, comprobando
+     * la versión de cada uno. Las filas que no se modifican tenían otra versión o ya no existen:
+     * se anotan como fallos y el resto se confirma igualmente, junto con su registro de cambios.
+     *
+     * @param productos los productos con los datos actualizados y la versión esperada; los que se
+     *                  guardan pasan a la nueva versión
+     * @return el resultado con los productos guardados y los que tenían otra versión
+     * @throws SQLException si ocurre un error al ejecutar el lote; entonces no se guarda ninguno
+     */
+    @Override
+    public ResultadoLote actualizarVersionados(List<Producto> productos) throws SQLException {
+        String sql = "UPDATE productos SET nombre = ?, precio = ?, disponible = ?, version = version + 1 "
+                + "WHERE codigo = ? AND version = ?";
+        ResultadoLote resultado = new ResultadoLote(productos.size());
+        List<Producto> guardados = new ArrayList<>(productos.size());
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             PreparedStatement cambios = conn.prepareStatement(SQL_REGISTRAR_CAMBIO)) {
+
+            conn.setAutoCommit(false);
+            for (Producto producto : productos) {
+                stmt.setString(1, producto.getNombre());
+                stmt.setDouble(2, producto.getPrecio());
+                stmt.setBoolean(3, producto.isDisponible());
+                stmt.setString(4, producto.getCodigo());
+                stmt.setInt(5, producto.getVersion());
+                stmt.addBatch();
+            }
+            int[] filas = stmt.executeBatch();
+
+            for (int i = 0; i < productos.size(); i++) {
+                Producto producto = productos.get(i);
+                if (filas[i] == 0) {
+                    resultado.anotarFallo(i, producto.getCodigo(), "El producto ha cambiado o se ha eliminado");
+                } else {
+                    asignarCambio(cambios, producto.getCodigo(), Cambio.Tipo.MODIFICACION);
+                    cambios.addBatch();
+                    guardados.add(producto);
+                }
+            }
+            if (!guardados.isEmpty()) {
+                cambios.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            throw new SQLException("Error al actualizar los productos: " + e.getMessage(), e);
+        }
+
+        for (Producto producto : guardados) {
+            producto.setVersion(producto.getVersion() + 1);
+        }
+        resultado.sumarCorrectos(guardados.size());
+        return resultado;
+    }
+
+    /**
+     * Elimina muchos productos a la vez usando lotes JDBC.
+     * Los códigos que no existen se anotan como fallos.
+     *
+     * @param codigos los códigos de los productos a eliminar
+     * @return el resultado con los productos eliminados y los que han fallado
+     * @throws SQLException si no se puede obtener una conexión o falla la transacción
+     * @see #ejecutarPorLotes(String, List, ParametrosLote, boolean, Cambio.Tipo)
+     */
+    @Override
+    public ResultadoLote eliminarTodos(List<String> codigos) throws SQLException {
+        List<Producto> productos = new ArrayList<>(codigos.size());
+        for (String codigo : codigos) {
+            productos.add(new Producto(codigo, null, 0, false));
+        }
+        String sql = "DELETE FROM productos WHERE codigo = ?";
+        return ejecutarPorLotes(sql, productos, (stmt, producto) -> stmt.setString(1, producto.getCodigo()), true,
+                Cambio.Tipo.BAJA);
+    }
+
+    /**
+     * Ejecuta la misma sentencia para muchos productos, agrupándolos en bloques de
+     * {@code lote.tamano} elementos. Cada bloque se envía con addBatch/executeBatch y se
+     * confirma en una única transacción (ConexionBD activa {@code rewriteBatchedStatements}
+     * para que el driver los agrupe en pocas sentencias).
+     *
+     * Si un bloque falla, se deshace y se repite fila a fila dentro de una nueva transacción,
+     * de modo que las filas válidas se guardan y cada fila errónea queda anotada en el resultado.
+     * Cada fila guardada se anota en el registro de cambios dentro de la misma transacción.
+     *
+     * @param sql la sentencia que se ejecuta para cada producto
+     * @param productos los productos a procesar
+     * @param parametros asigna los parámetros de la sentencia para un producto
+     * @param exigirFila si es true, una sentencia que no afecta a ninguna fila cuenta como fallo
+     * @param tipo el tipo de cambio que se anota para cada fila guardada
+     * @return el resultado de la operación
+     * @throws SQLException si no se puede obtener una conexión o falla una transacción
+     */
+    private ResultadoLote ejecutarPorLotes(String sql, List<Producto> productos, ParametrosLote parametros,
+                                           boolean exigirFila, Cambio.Tipo tipo) throws SQLException {
+        ResultadoLote resultado = new ResultadoLote(productos.size());
+        int tamanoLote = Math.max(1, Propiedades.getEntero("lote.tamano", 1000));
+
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             PreparedStatement cambios = conn.prepareStatement(SQL_REGISTRAR_CAMBIO)) {
+
+            conn.setAutoCommit(false);
+            for (int inicio = 0; inicio < productos.size(); inicio += tamanoLote) {
+                List<Producto> bloque = productos.subList(inicio, Math.min(inicio + tamanoLote, productos.size()));
+                try {
+                    for (Producto producto : bloque) {
+                        parametros.asignar(stmt, producto);
+                        stmt.addBatch();
+                    }
+                    int[] filas = stmt.executeBatch();
+
+                    if (exigirFila && contieneSinFilas(filas)) {
+                        // Algún código no existe: repetimos el bloque fila a fila para identificarlo
+                        conn.rollback();
+                        ejecutarFilaAFila(conn, stmt, cambios, bloque, inicio, parametros, exigirFila, tipo, resultado);
+                    } else {
+                        for (Producto producto : bloque) {
+                            asignarCambio(cambios, producto.getCodigo(), tipo);
+                            cambios.addBatch();
+                        }
+                        cambios.executeBatch();
+                        conn.commit();
+                        resultado.sumarCorrectos(bloque.size());
+                    }
+                } catch (BatchUpdateException e) {
+                    conn.rollback();
+                    stmt.clearBatch();
+                    cambios.clearBatch();
+                    ejecutarFilaAFila(conn, stmt, cambios, bloque, inicio, parametros, exigirFila, tipo, resultado);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al ejecutar la operación masiva: " + e.getMessage(), e);
+        }
+        return resultado;
+    }
+
+    /**
+     * Repite un bloque fila a fila en una transacción, anotando cada fila que falla.
+     */
+    private void ejecutarFilaAFila(Connection conn, PreparedStatement stmt, PreparedStatement cambios,
+                                   List<Producto> bloque, int inicio, ParametrosLote parametros, boolean exigirFila,
+                                   Cambio.Tipo tipo, ResultadoLote resultado) throws SQLException {
+        int correctos = 0;
+        for (int i = 0; i < bloque.size(); i++) {
+            Producto producto = bloque.get(i);
+            try {
+                parametros.asignar(stmt, producto);
+                if (stmt.executeUpdate() == 0 && exigirFila) {
+                    resultado.anotarFallo(inicio + i, producto.getCodigo(), "No existe ningún producto con ese código");
+                } else {
+                    asignarCambio(cambios, producto.getCodigo(), tipo);
+                    cambios.executeUpdate();
+                    correctos++;
+                }
+            } catch (SQLException e) {
+                resultado.anotarFallo(inicio + i, producto.getCodigo(), e.getMessage());
+            }
+        }
+        conn.commit();
+        resultado.sumarCorrectos(correctos);
+    }
+
+    /**
+     * Obtiene el identificador del último cambio anotado en el registro de cambios.
+     *
+     * @return el identificador del último cambio, o 0 si el registro está vacío
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public long obtenerUltimoCambio() throws SQLException {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM productos_cambios";
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el último cambio: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Obtiene los cambios anotados después de un identificador, junto con el estado actual
+     * de cada producto. El coste depende solo del número de cambios, no del tamaño del catálogo.
+     *
+     * @param despuesDe el identificador del último cambio ya aplicado
+     * @param limite el número máximo de cambios que se devuelven
+     * @return los cambios en orden de identificador; los productos eliminados no tienen producto
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public List<Cambio> obtenerCambiosDesde(long despuesDe, int limite) throws SQLException {
+        String sql = "SELECT c.id, c.codigo, c.operacion, p.codigo AS actual, p.nombre, p.precio, p.disponible, p.version "
+                + "FROM productos_cambios c LEFT JOIN productos p ON p.codigo = c.codigo "
+                + "WHERE c.id > ? ORDER BY c.id LIMIT ?";
+        List<Cambio> lista = new ArrayList<>();
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, despuesDe);
+            stmt.setInt(2, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Producto actual = rs.getString("actual") == null ? null : new Producto(
+                            rs.getString("actual"),
+                            rs.getString("nombre"),
+                            rs.getDouble("precio"),
+                            rs.getBoolean("disponible"),
+                            rs.getInt("version"));
+                    lista.add(new Cambio(rs.getLong("id"), rs.getString("codigo"),
+                            Cambio.Tipo.desdeCodigo(rs.getString("operacion")), actual));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener los cambios: " + e.getMessage(), e);
+        }
+        return lista;
+    }
+
+    /**
+     * Obtiene el identificador del cambio más antiguo que conserva el registro de cambios.
+     *
+     * @return el identificador del primer cambio conservado, o 0 si el registro está vacío
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public long obtenerPrimerCambio() throws SQLException {
+        String sql = "SELECT COALESCE(MIN(id), 0) FROM productos_cambios";
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new SQLException("Error al obtener el primer cambio: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Borra del registro de cambios los anotados antes de un instante, conservando siempre el último.
+     * Se borra en bloques de {@code lote.tamano} filas, cada uno en su propia transacción, para
+     * no bloquear durante mucho tiempo las escrituras que anotan cambios nuevos.
+     *
+     * @param antesDe el instante a partir del cual se conservan los cambios
+     * @return el número de cambios borrados
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    @Override
+    public long purgarCambios(Instant antesDe) throws SQLException {
+        String sql = "DELETE FROM productos_cambios WHERE id < ? AND instante < ? LIMIT ?";
+        int tamanoLote = Math.max(1, Propiedades.getEntero("lote.tamano", 1000));
+        long ultimo = obtenerUltimoCambio();
+        long borrados = 0;
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, ultimo);
+            stmt.setTimestamp(2, Timestamp.from(antesDe));
+            stmt.setInt(3, tamanoLote);
+            int filas;
+            do {
+                filas = stmt.executeUpdate();
+                borrados += filas;
+            } while (filas == tamanoLote);
+        } catch (SQLException e) {
+            throw new SQLException("Error al purgar el registro de cambios: " + e.getMessage(), e);
+        }
+        return borrados;
+    }
+
+    /**
+     * Anota un cambio en el registro de cambios, dentro de la transacción de la conexión.
+     *
+     * @param conn la conexión con la transacción en curso
+     * @param codigo el código del producto cambiado
+     * @param tipo el tipo de cambio
+     * @throws SQLException si ocurre un error al anotar el cambio
+     */
+    private void registrarCambio(Connection conn, String codigo, Cambio.Tipo tipo) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_REGISTRAR_CAMBIO)) {
+            asignarCambio(stmt, codigo, tipo);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void asignarCambio(PreparedStatement stmt, String codigo, Cambio.Tipo tipo) throws SQLException {
+        stmt.setString(1, codigo);
+        stmt.setString(2, tipo.getCodigo());
+    }
+
+    /**
+     * Comprueba si alguna sentencia de un lote no ha afectado a ninguna fila.
+     */
+    private static boolean contieneSinFilas(int[] filas) {
+        for (int cantidad : filas) {
+            if (cantidad == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asigna los parámetros de una sentencia de lote para un producto.
+     */
+    @FunctionalInterface
+    private interface ParametrosLote {
+        void asignar(PreparedStatement stmt, Producto producto) throws SQLException;
+    }
+
+    /**
+     * Prepara una consulta de solo lectura que se recorre hacia delante sin almacenar
+     * el resultado completo en el cliente.
+     *
+     * Con {@code consulta.fetchSize} a 0 (valor por defecto) el driver de MySQL entrega las
+     * filas una a una según llegan; con un valor positivo se usa un cursor en el servidor
+     * que envía las filas en bloques de ese tamaño (ConexionBD activa {@code useCursorFetch}).
+     *
+     * @param conn la conexión sobre la que se prepara la consulta
+     * @param sql la consulta SQL
+     * @return la consulta preparada con el tamaño de lectura configurado
+     * @throws SQLException si ocurre un error al preparar la consulta
+     */
+    protected PreparedStatement prepararLecturaContinua(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        int fetchSize = Propiedades.getEntero("consulta.fetchSize", 0);
+        stmt.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    /**
+     * Cierra los recursos de una consulta, ignorando los nulos y sin ocultar el primer error.
+     *
+     * @param rs el ResultSet, o null
+     * @param stmt la consulta, o null
+     * @param conn la conexión, que vuelve al pool
+     */
+    private void cerrar(ResultSet rs, Statement stmt, Connection conn) {
+        try (conn; stmt; rs) {
+            // try-with-resources cierra los recursos en orden inverso
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar la consulta: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Construye un producto a partir de la fila actual de un ResultSet.
+     *
+     * @param rs el ResultSet posicionado en la fila que se quiere leer
+     * @return el producto de la fila actual
+     * @throws SQLException si ocurre un error al leer las columnas
+     */
+    private Producto mapear(ResultSet rs) throws SQLException {
+        return new Producto(
+                rs.getString("codigo"),
+                rs.getString("nombre"),
+                rs.getDouble("precio"),
+                rs.getBoolean("disponible"),
+                rs.getInt("version")
+        );
+    }
 }
@@ -0,0 +1,272 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.model.CatalogoProductos;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Variante asíncrona de {@link ProductoRepositorio} pensada para la interfaz gráfica.
+ *
+ * Cada operación se ejecuta en un hilo virtual y devuelve un {@link CompletableFuture},
+ * de modo que el hilo de JavaFX nunca espera a la base de datos. Cancelar el futuro
+ * interrumpe el hilo que está ejecutando la consulta.
+ */
+public class ProductoDaoAsync {
+
+    // Ejecutor con un hilo virtual por operación
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Repositorio síncrono, se crea la primera vez que se usa para no bloquear al llamante
+    private ProductoRepositorio productoDao;
+    // Repositorio que trabaja sin conexión, o null si está desactivado en sinConexion.activo
+    private ProductoDaoSinConexion sinConexion;
+    private volatile Consumer<List<String>> oyenteConflictos = conflictos -> { };
+
+    /**
+     * Obtiene todos los productos de la base de datos en segundo plano.
+     *
+     * @return un futuro con la lista de todos los productos
+     */
+    public CompletableFuture<List<Producto>> obtenerTodos() {
+        return ejecutar(() -> dao().obtenerTodos());
+    }
+
+    /**
+     * Obtiene en segundo plano un producto a partir de su código.
+     *
+     * @param codigo el código del producto
+     * @return un futuro con el producto, o con null si no existe
+     */
+    public CompletableFuture<Producto> obtenerPorCodigo(String codigo) {
+        return ejecutar(() -> dao().obtenerPorCodigo(codigo));
+    }
+
+    /**
+     * Obtiene en segundo plano una página de productos ordenada por código.
+     *
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return un futuro con los productos de la página
+     * @see ProductoRepositorio#obtenerPagina(String, int)
+     */
+    public CompletableFuture<List<Producto>> obtenerPagina(String despuesDe, int limite) {
+        return ejecutar(() -> dao().obtenerPagina(despuesDe, limite));
+    }
+
+    /**
+     * Obtiene en segundo plano la página de productos anterior a un código.
+     *
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return un futuro con los productos de la página
+     * @see ProductoRepositorio#obtenerPaginaAnterior(String, int)
+     */
+    public CompletableFuture<List<Producto>> obtenerPaginaAnterior(String antesDe, int limite) {
+        return ejecutar(() -> dao().obtenerPaginaAnterior(antesDe, limite));
+    }
+
+    /**
+     * Busca en segundo plano una página de productos que cumplen un filtro.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return un futuro con los productos de la página
+     * @see ProductoRepositorio#buscar(FiltroProductos, String, int)
+     */
+    public CompletableFuture<List<Producto>> buscar(FiltroProductos filtro, String despuesDe, int limite) {
+        return ejecutar(() -> dao().buscar(filtro, despuesDe, limite));
+    }
+
+    /**
+     * Busca en segundo plano la página de productos que cumplen un filtro anterior a un código.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return un futuro con los productos de la página
+     * @see ProductoRepositorio#buscarAnterior(FiltroProductos, String, int)
+     */
+    public CompletableFuture<List<Producto>> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) {
+        return ejecutar(() -> dao().buscarAnterior(filtro, antesDe, limite));
+    }
+
+    /**
+     * Carga en segundo plano el catálogo completo en su representación por columnas,
+     * leyendo los productos de uno en uno sin crear la lista entera.
+     *
+     * @return un futuro con el catálogo completo, en orden de código
+     * @see CatalogoProductos
+     */
+    public CompletableFuture<CatalogoProductos> cargarCatalogo() {
+        return ejecutar(() -> {
+            CatalogoProductos catalogo = new CatalogoProductos((int) Math.min(dao().contar(), Integer.MAX_VALUE - 8));
+            dao().recorrerTodos(producto -> {
+                // Al cancelar el futuro se interrumpe el hilo: dejamos de leer filas
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Carga del catálogo cancelada");
+                }
+                catalogo.anadir(producto);
+            });
+            catalogo.recortar();
+            return catalogo;
+        });
+    }
+
+    /**
+     * Crea un nuevo producto en la base de datos en segundo plano.
+     *
+     * @param producto el producto a crear
+     * @return un futuro que se completa cuando el producto se ha guardado
+     */
+    public CompletableFuture<Void> crear(Producto producto) {
+        return ejecutar(() -> {
+            dao().crear(producto);
+            return null;
+        });
+    }
+
+    /**
+     * Actualiza un producto en la base de datos en segundo plano.
+     *
+     * @param producto el producto con los datos actualizados
+     * @return un futuro que se completa cuando el producto se ha actualizado
+     */
+    public CompletableFuture<Void> actualizar(Producto producto) {
+        return ejecutar(() -> {
+            dao().actualizar(producto);
+            return null;
+        });
+    }
+
+    /**
+     * Elimina un producto de la base de datos en segundo plano.
+     *
+     * @param codigo el código del producto a eliminar
+     * @return un futuro que se completa cuando el producto se ha eliminado
+     */
+    public CompletableFuture<Void> eliminar(String codigo) {
+        return ejecutar(() -> {
+            dao().eliminar(codigo);
+            return null;
+        });
+    }
+
+    /**
+     * Ejecuta en segundo plano una tarea que necesita el DAO síncrono, como una importación
+     * o una exportación completa.
+     *
+     * @param tarea la tarea que recibe el DAO síncrono
+     * @param <T> el tipo del resultado
+     * @return un futuro con el resultado de la tarea
+     */
+    public <T> CompletableFuture<T> conDao(TareaDao<T> tarea) {
+        return ejecutar(() -> tarea.ejecutar(dao()));
+    }
+
+    /**
+     * Establece quién recibe las escrituras hechas sin conexión que no se han podido aplicar
+     * al volver a conectar, por ejemplo porque otro usuario cambió antes el producto.
+     * Se llama desde un hilo de fondo.
+     *
+     * @param oyente la acción que recibe la descripción de cada conflicto
+     */
+    public void setOyenteConflictos(Consumer<List<String>> oyente) {
+        this.oyenteConflictos = oyente;
+    }
+
+    /**
+     * Detiene las tareas de fondo del repositorio sin conexión, si está activo.
+     * Se llama al cerrar la aplicación.
+     */
+    public synchronized void detener() {
+        if (sinConexion != null) {
+            sinConexion.detener();
+        }
+    }
+
+    /**
+     * Obtiene el DAO síncrono, creándolo la primera vez desde un hilo de fondo.
+     *
+     * @return el DAO síncrono
+     */
+    private synchronized ProductoRepositorio dao() {
+        if (productoDao == null) {
+            // Con la caché activa, las lecturas repetidas se resuelven en memoria
+            boolean conCache = Boolean.parseBoolean(Propiedades.getValor("cache.activa", "true"));
+            ProductoRepositorio repositorio;
+            if (Boolean.parseBoolean(Propiedades.getValor("sinConexion.activo", "false"))) {
+                // Si la base de datos no responde, se lee la copia local y se anotan las escrituras
+                sinConexion = new ProductoDaoSinConexion(ProductoRepositorio::crear);
+                sinConexion.setOyenteConflictos(conflictos -> oyenteConflictos.accept(conflictos));
+                sinConexion.iniciar();
+                repositorio = sinConexion;
+            } else {
+                repositorio = ProductoRepositorio.crear();
+            }
+            productoDao = conCache ? new ProductoDaoCache(repositorio) : repositorio;
+        }
+        return productoDao;
+    }
+
+    /**
+     * Ejecuta una operación en un hilo virtual y enlaza su cancelación con la del futuro.
+     *
+     * @param operacion la operación contra la base de datos
+     * @param <T> el tipo del resultado
+     * @return un futuro con el resultado de la operación
+     */
+    private <T> CompletableFuture<T> ejecutar(Operacion<T> operacion) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        Future<?> tarea = executor.submit(() -> {
+            try {
+                resultado.complete(operacion.ejecutar());
+            } catch (Throwable e) {
+                resultado.completeExceptionally(e);
+            }
+        });
+        // Si el llamante cancela el futuro, interrumpimos el hilo que espera a la base de datos
+        resultado.whenComplete((valor, error) -> {
+            if (resultado.isCancelled()) {
+                tarea.cancel(true);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Operación contra la base de datos que puede lanzar {@link java.sql.SQLException} u otros errores.
+     *
+     * @param <T> el tipo del resultado
+     */
+    @FunctionalInterface
+    private interface Operacion<T> {
+        T ejecutar() throws Exception;
+    }
+
+    /**
+     * Tarea que se ejecuta en segundo plano con el DAO síncrono.
+     *
+     * @param <T> el tipo del resultado
+     */
+    @FunctionalInterface
+    public interface TareaDao<T> {
+        /**
+         * Ejecuta la tarea.
+         *
+         * @param dao el DAO síncrono
+         * @return el resultado de la tarea
+         * @throws Exception si la tarea falla
+         */
+        T ejecutar(ProductoRepositorio dao) throws Exception;
+    }
+}
@@ -0,0 +1,437 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de productos con una caché en memoria delante de otro repositorio.
+ *
+ * Envuelve cualquier {@link ProductoRepositorio} (MySQL o la base de datos local): las lecturas
+ * repetidas se resuelven en memoria y el resto de operaciones se delegan en el repositorio envuelto.
+ *
+ * Los productos se guardan por código con expulsión LRU (como máximo {@code cache.maximo})
+ * y un tiempo de vida de {@code cache.ttlSegundos}. Las consultas de listas (todos los
+ * productos, las páginas de la tabla y las búsquedas) se guardan aparte y se invalidan con cualquier escritura,
+ * porque una inserción o un borrado desplaza el contenido de las páginas.
+ *
+ * Las escrituras van primero al repositorio envuelto y después se reflejan en la caché
+ * (write-through). La caché guarda copias de los productos, para que los cambios que
+ * la interfaz haga sobre sus objetos no se vean hasta que se guarden.
+ */
+public class ProductoDaoCache implements ProductoRepositorio {
+
+    // Número máximo de listas de productos guardadas
+    private static final int MAXIMO_CONSULTAS = 64;
+
+    // Repositorio que resuelve lo que no está en la caché
+    private final ProductoRepositorio repositorio;
+    private final int maximo;
+    private final long ttlNanos;
+
+    // Productos por código normalizado, en orden de acceso para la expulsión LRU
+    private final LinkedHashMap<String, Entrada<Producto>> productos;
+    // Resultados de consultas de listas por clave de consulta
+    private final LinkedHashMap<String, Entrada<List<Producto>>> consultas;
+
+    // Cambia con cada escritura, para no guardar resultados leídos antes de ella
+    private long generacion;
+
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+    private long caducadas;
+
+    /**
+     * Constructor para inicializar la caché vacía delante de un repositorio.
+     * El tamaño máximo y el tiempo de vida se leen del archivo de propiedades.
+     *
+     * @param repositorio el repositorio que resuelve lo que no está en la caché
+     */
+    public ProductoDaoCache(ProductoRepositorio repositorio) {
+        this.repositorio = repositorio;
+        this.maximo = Math.max(1, Propiedades.getEntero("cache.maximo", 10_000));
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Propiedades.getEntero("cache.ttlSegundos", 60));
+        this.productos = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada<Producto>> mayor) {
+                if (size() > maximo) {
+                    expulsiones++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.consultas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada<List<Producto>>> mayor) {
+                if (size() > MAXIMO_CONSULTAS) {
+                    expulsiones++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Producto obtenerPorCodigo(String codigo) throws SQLException {
+        long leida;
+        synchronized (this) {
+            Producto guardado = leer(productos, clave(codigo));
+            if (guardado != null) {
+                return copiar(guardado);
+            }
+            leida = generacion;
+        }
+
+        Producto producto = repositorio.obtenerPorCodigo(codigo);
+        if (producto != null) {
+            synchronized (this) {
+                if (leida == generacion) {
+                    productos.put(clave(codigo), new Entrada<>(copiar(producto), caducidad()));
+                }
+            }
+        }
+        return producto;
+    }
+
+    @Override
+    public List<Producto> obtenerTodos() throws SQLException {
+        return consultar("todos", repositorio::obtenerTodos);
+    }
+
+    @Override
+    public List<Producto> obtenerPagina(String despuesDe, int limite) throws SQLException {
+        return consultar("siguiente:" + despuesDe + ":" + limite,
+                () -> repositorio.obtenerPagina(despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> obtenerPaginaAnterior(String antesDe, int limite) throws SQLException {
+        return consultar("anterior:" + antesDe + ":" + limite,
+                () -> repositorio.obtenerPaginaAnterior(antesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) throws SQLException {
+        return consultar("buscar:" + filtro + ":" + despuesDe + ":" + limite,
+                () -> repositorio.buscar(filtro, despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) throws SQLException {
+        return consultar("buscarAnterior:" + filtro + ":" + antesDe + ":" + limite,
+                () -> repositorio.buscarAnterior(filtro, antesDe, limite));
+    }
+
+    @Override
+    public void crear(Producto producto) throws SQLException {
+        empezarEscritura();
+        repositorio.crear(producto);
+        guardar(List.of(producto), Set.of());
+    }
+
+    @Override
+    public void actualizar(Producto producto) throws SQLException {
+        empezarEscritura();
+        try {
+            repositorio.actualizar(producto);
+        } catch (SQLException e) {
+            // El estado real del producto es desconocido: que la próxima lectura vaya a la base de datos
+            invalidar(producto.getCodigo());
+            throw e;
+        }
+        guardar(List.of(producto), Set.of());
+    }
+
+    @Override
+    public void eliminar(String codigo) throws SQLException {
+        empezarEscritura();
+        try {
+            repositorio.eliminar(codigo);
+        } finally {
+            invalidar(codigo);
+        }
+    }
+
+    @Override
+    public ResultadoLote crearTodos(List<Producto> lista) throws SQLException {
+        empezarEscritura();
+        ResultadoLote resultado = repositorio.crearTodos(lista);
+        guardar(lista, indicesFallidos(resultado));
+        return resultado;
+    }
+
+    @Override
+    public ResultadoLote actualizarTodos(List<Producto> lista) throws SQLException {
+        empezarEscritura();
+        try {
+            return repositorio.actualizarTodos(lista);
+        } finally {
+            // La base de datos asigna las nuevas versiones: las próximas lecturas deben ir a buscarlas
+            synchronized (this) {
+                for (Producto producto : lista) {
+                    productos.remove(clave(producto.getCodigo()));
+                }
+                consultas.clear();
+                generacion++;
+            }
+        }
+    }
+
+    @Override
+    public ResultadoLote actualizarVersionados(List<Producto> lista) throws SQLException {
+        empezarEscritura();
+        try {
+            return repositorio.actualizarVersionados(lista);
+        } finally {
+            // Los que tenían otra versión tampoco coinciden ya con lo guardado en la caché
+            synchronized (this) {
+                for (Producto producto : lista) {
+                    productos.remove(clave(producto.getCodigo()));
+                }
+                consultas.clear();
+                generacion++;
+            }
+        }
+    }
+
+    @Override
+    public ResultadoLote eliminarTodos(List<String> codigos) throws SQLException {
+        empezarEscritura();
+        try {
+            return repositorio.eliminarTodos(codigos);
+        } finally {
+            synchronized (this) {
+                for (String codigo : codigos) {
+                    productos.remove(clave(codigo));
+                }
+                consultas.clear();
+                generacion++;
+            }
+        }
+    }
+
+    @Override
+    public List<Cambio> obtenerCambiosDesde(long despuesDe, int limite) throws SQLException {
+        long leida;
+        synchronized (this) {
+            leida = generacion;
+        }
+        List<Cambio> cambios = repositorio.obtenerCambiosDesde(despuesDe, limite);
+        if (!cambios.isEmpty()) {
+            // Los cambios traen el estado actual: la caché queda al día también con lo que hacen otros clientes.
+            // Si mientras se leían ha escrito este cliente, lo leído puede ser más antiguo: se descarta la entrada
+            synchronized (this) {
+                long caducidad = caducidad();
+                for (Cambio cambio : cambios) {
+                    if (cambio.isEliminado() || leida != generacion) {
+                        productos.remove(clave(cambio.getCodigo()));
+                    } else {
+                        productos.put(clave(cambio.getCodigo()), new Entrada<>(copiar(cambio.getActual()), caducidad));
+                    }
+                }
+                consultas.clear();
+                generacion++;
+            }
+        }
+        return cambios;
+    }
+
+    @Override
+    public long contar() throws SQLException {
+        return repositorio.contar();
+    }
+
+    @Override
+    public long recorrerTodos(Consumer<Producto> visitante) throws SQLException {
+        // Los recorridos completos no pasan por la caché: llenarían la memoria y expulsarían lo útil
+        return repositorio.recorrerTodos(visitante);
+    }
+
+    @Override
+    public Stream<Producto> streamTodos() throws SQLException {
+        return repositorio.streamTodos();
+    }
+
+    @Override
+    public long obtenerUltimoCambio() throws SQLException {
+        return repositorio.obtenerUltimoCambio();
+    }
+
+    @Override
+    public long obtenerPrimerCambio() throws SQLException {
+        return repositorio.obtenerPrimerCambio();
+    }
+
+    @Override
+    public long purgarCambios(Instant antesDe) throws SQLException {
+        return repositorio.purgarCambios(antesDe);
+    }
+
+    /**
+     * Descarta de la caché un producto y todas las listas guardadas.
+     *
+     * @param codigo el código del producto que se quiere descartar
+     */
+    public synchronized void invalidar(String codigo) {
+        productos.remove(clave(codigo));
+        consultas.clear();
+        generacion++;
+    }
+
+    /**
+     * Vacía la caché por completo.
+     */
+    public synchronized void invalidarTodo() {
+        productos.clear();
+        consultas.clear();
+        generacion++;
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas de la caché.
+     *
+     * @return las estadísticas actuales de la caché
+     */
+    public synchronized EstadisticasCache getEstadisticas() {
+        return new EstadisticasCache(aciertos, fallos, expulsiones, caducadas, productos.size());
+    }
+
+    /**
+     * Resuelve una consulta de lista desde la caché o, si no está, desde la base de datos.
+     * Los productos leídos se guardan también por código para las búsquedas individuales.
+     */
+    private List<Producto> consultar(String clave, Consulta consulta) throws SQLException {
+        long leida;
+        synchronized (this) {
+            List<Producto> guardada = leer(consultas, clave);
+            if (guardada != null) {
+                return copiar(guardada);
+            }
+            leida = generacion;
+        }
+
+        List<Producto> lista = consulta.ejecutar();
+        synchronized (this) {
+            if (leida == generacion) {
+                long caducidad = caducidad();
+                consultas.put(clave, new Entrada<>(copiar(lista), caducidad));
+                for (Producto producto : lista) {
+                    productos.put(clave(producto.getCodigo()), new Entrada<>(copiar(producto), caducidad));
+                }
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Lee una entrada contando el acierto o el fallo y descartándola si ha caducado.
+     * Debe llamarse con el cerrojo de la caché.
+     */
+    private <T> T leer(Map<String, Entrada<T>> mapa, String clave) {
+        Entrada<T> entrada = mapa.get(clave);
+        if (entrada != null && entrada.caducidad - System.nanoTime() <= 0) {
+            mapa.remove(clave);
+            caducadas++;
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return entrada.valor;
+    }
+
+    /**
+     * Marca el inicio de una escritura: las lecturas en curso ya no podrán guardar su resultado.
+     */
+    private synchronized void empezarEscritura() {
+        generacion++;
+    }
+
+    /**
+     * Refleja en la caché los productos escritos, salvo los que han fallado, e invalida las listas.
+     */
+    private synchronized void guardar(List<Producto> escritos, Set<Integer> fallidos) {
+        long caducidad = caducidad();
+        for (int i = 0; i < escritos.size(); i++) {
+            Producto producto = escritos.get(i);
+            if (fallidos.contains(i)) {
+                productos.remove(clave(producto.getCodigo()));
+            } else {
+                productos.put(clave(producto.getCodigo()), new Entrada<>(copiar(producto), caducidad));
+            }
+        }
+        consultas.clear();
+        generacion++;
+    }
+
+    private long caducidad() {
+        return System.nanoTime() + ttlNanos;
+    }
+
+    private static Set<Integer> indicesFallidos(ResultadoLote resultado) {
+        Set<Integer> indices = new HashSet<>();
+        for (ResultadoLote.Fallo fallo : resultado.getFallos()) {
+            indices.add(fallo.getIndice());
+        }
+        return indices;
+    }
+
+    /**
+     * Normaliza el código, porque MySQL compara los códigos sin distinguir mayúsculas.
+     */
+    private static String clave(String codigo) {
+        return codigo.toLowerCase(Locale.ROOT);
+    }
+
+    private static Producto copiar(Producto producto) {
+        return new Producto(producto.getCodigo(), producto.getNombre(), producto.getPrecio(), producto.isDisponible(),
+                producto.getVersion());
+    }
+
+    private static List<Producto> copiar(List<Producto> lista) {
+        List<Producto> copia = new ArrayList<>(lista.size());
+        for (Producto producto : lista) {
+            copia.add(copiar(producto));
+        }
+        return copia;
+    }
+
+    /**
+     * Valor guardado en la caché junto con el instante en que caduca.
+     */
+    private static final class Entrada<T> {
+        private final T valor;
+        private final long caducidad;
+
+        private Entrada(T valor, long caducidad) {
+            this.valor = valor;
+            this.caducidad = caducidad;
+        }
+    }
+
+    /**
+     * Consulta de lista contra la base de datos.
+     */
+    @FunctionalInterface
+    private interface Consulta {
+        List<Producto> ejecutar() throws SQLException;
+    }
+}
@@ -0,0 +1,92 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Implementación de {@link ProductoRepositorio} sobre una base de datos H2 embebida en un fichero.
+ *
+ * La base de datos se abre dentro del propio proceso, sin servidor ni red, con la URL de la clave
+ * {@code local.url} (ver ConexionBD). Las tablas se crean la primera vez que se abre. H2 se usa en
+ * modo MySQL y sin distinguir mayúsculas, así que las sentencias de {@link ProductoDao} valen tal
+ * cual; solo cambian la lectura continua y la búsqueda por nombre, que no usa FULLTEXT.
+ *
+ * Como no hay un servidor donde programar la purga del registro de cambios, se purga al abrir
+ * la base de datos lo anotado hace más de {@code cambios.retencionDias}.
+ */
+public final class ProductoDaoLocal extends ProductoDao {
+
+    // Esquema equivalente al de MySQL, con la versión, los índices de búsqueda, el registro de cambios y las imágenes
+    private static final String[] ESQUEMA = {
+            "CREATE TABLE IF NOT EXISTS productos ("
+                    + "codigo VARCHAR(5) NOT NULL PRIMARY KEY, "
+                    + "nombre VARCHAR(100) NOT NULL, "
+                    + "precio DOUBLE NOT NULL, "
+                    + "disponible BOOLEAN NOT NULL, "
+                    + "version INT NOT NULL DEFAULT 0)",
+            // Ficheros creados antes de que existiera la versión
+            "ALTER TABLE productos ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0",
+            "CREATE INDEX IF NOT EXISTS idx_productos_precio ON productos (precio, codigo)",
+            "CREATE INDEX IF NOT EXISTS idx_productos_disponible ON productos (disponible, codigo)",
+            "CREATE TABLE IF NOT EXISTS productos_cambios ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "codigo VARCHAR(5) NOT NULL, "
+                    + "operacion CHAR(1) NOT NULL, "
+                    + "instante TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))",
+            "CREATE TABLE IF NOT EXISTS productos_imagenes ("
+                    + "codigo VARCHAR(5) NOT NULL PRIMARY KEY, "
+                    + "tipo VARCHAR(50) NOT NULL, "
+                    + "miniatura BLOB NOT NULL, "
+                    + "imagen BLOB NOT NULL, "
+                    + "CONSTRAINT fk_productos_imagenes_producto FOREIGN KEY (codigo) "
+                    + "REFERENCES productos (codigo) ON DELETE CASCADE)"
+    };
+
+    /**
+     * Constructor para abrir la base de datos embebida y crear las tablas si no existen.
+     *
+     * @throws RuntimeException si ocurre un error al abrir la base de datos o al crear las tablas
+     */
+    public ProductoDaoLocal() {
+        super();
+        try (Connection conn = conexionBD.getConexion();  // Tomamos una conexión del pool; close() la devuelve
+             Statement stmt = conn.createStatement()) {
+
+            for (String sentencia : ESQUEMA) {
+                stmt.execute(sentencia);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al crear las tablas de la base de datos local: " + e.getMessage(), e);
+        }
+        try {
+            purgarCambios(Instant.now().minus(Duration.ofDays(Propiedades.getEntero("cambios.retencionDias", 7))));
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * H2 no admite el tamaño de lectura negativo con el que MySQL entrega las filas una a una.
+     * Al estar en el mismo proceso no hay red que ahorrar: los resultados grandes los guarda
+     * H2 en disco por sí misma (MAX_MEMORY_ROWS) y el ResultSet se recorre igual.
+     */
+    @Override
+    protected PreparedStatement prepararLecturaContinua(Connection conn, String sql) throws SQLException {
+        return conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * H2 no tiene MATCH ... AGAINST: la búsqueda por nombre se resuelve solo con LIKE.
+     */
+    @Override
+    protected boolean admiteTextoCompleto() {
+        return false;
+    }
+}
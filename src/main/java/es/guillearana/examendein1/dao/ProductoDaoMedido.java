@@ -0,0 +1,187 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.metricas.Metricas;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de productos que mide cuánto tarda cada operación del repositorio envuelto y
+ * cuántas filas devuelve, y lo anota en {@link Metricas} como {@code dao.<método>} y
+ * {@code dao.<método>.filas}.
+ *
+ * {@link ProductoRepositorio#crear()} solo lo coloca cuando las métricas están activas, de modo
+ * que desactivadas no añade ninguna llamada. Se mide también el tiempo de las operaciones que
+ * fallan, porque un tiempo de espera agotado es justo lo que interesa ver.
+ */
+public class ProductoDaoMedido implements ProductoRepositorio {
+
+    private final ProductoRepositorio repositorio;
+
+    /**
+     * Constructor para inicializar el repositorio medido.
+     *
+     * @param repositorio el repositorio cuyas operaciones se miden
+     */
+    public ProductoDaoMedido(ProductoRepositorio repositorio) {
+        this.repositorio = repositorio;
+    }
+
+    @Override
+    public void crear(Producto producto) throws SQLException {
+        medir("dao.crear", () -> {
+            repositorio.crear(producto);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Producto> obtenerTodos() throws SQLException {
+        return medirLista("dao.obtenerTodos", repositorio::obtenerTodos);
+    }
+
+    @Override
+    public Producto obtenerPorCodigo(String codigo) throws SQLException {
+        return medir("dao.obtenerPorCodigo", () -> repositorio.obtenerPorCodigo(codigo));
+    }
+
+    @Override
+    public long contar() throws SQLException {
+        return medir("dao.contar", repositorio::contar);
+    }
+
+    @Override
+    public long recorrerTodos(Consumer<Producto> visitante) throws SQLException {
+        long filas = medir("dao.recorrerTodos", () -> repositorio.recorrerTodos(visitante));
+        Metricas.valor("dao.recorrerTodos.filas", filas);
+        return filas;
+    }
+
+    @Override
+    public Stream<Producto> streamTodos() throws SQLException {
+        // El Stream se lee después de devolverlo: se mide desde que se abre hasta que se cierra
+        long inicio = Metricas.inicio();
+        LongAdder filas = new LongAdder();
+        return repositorio.streamTodos()
+                .peek(p -> filas.increment())
+                .onClose(() -> {
+                    Metricas.tiempo("dao.streamTodos", inicio);
+                    Metricas.valor("dao.streamTodos.filas", filas.sum());
+                });
+    }
+
+    @Override
+    public List<Producto> obtenerPagina(String despuesDe, int limite) throws SQLException {
+        return medirLista("dao.obtenerPagina", () -> repositorio.obtenerPagina(despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> obtenerPaginaAnterior(String antesDe, int limite) throws SQLException {
+        return medirLista("dao.obtenerPaginaAnterior", () -> repositorio.obtenerPaginaAnterior(antesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) throws SQLException {
+        return medirLista("dao.buscar", () -> repositorio.buscar(filtro, despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) throws SQLException {
+        return medirLista("dao.buscarAnterior", () -> repositorio.buscarAnterior(filtro, antesDe, limite));
+    }
+
+    @Override
+    public void actualizar(Producto producto) throws SQLException {
+        medir("dao.actualizar", () -> {
+            repositorio.actualizar(producto);
+            return null;
+        });
+    }
+
+    @Override
+    public void eliminar(String codigo) throws SQLException {
+        medir("dao.eliminar", () -> {
+            repositorio.eliminar(codigo);
+            return null;
+        });
+    }
+
+    @Override
+    public ResultadoLote crearTodos(List<Producto> productos) throws SQLException {
+        Metricas.valor("dao.crearTodos.filas", productos.size());
+        return medir("dao.crearTodos", () -> repositorio.crearTodos(productos));
+    }
+
+    @Override
+    public ResultadoLote actualizarTodos(List<Producto> productos) throws SQLException {
+        Metricas.valor("dao.actualizarTodos.filas", productos.size());
+        return medir("dao.actualizarTodos", () -> repositorio.actualizarTodos(productos));
+    }
+
+    @Override
+    public ResultadoLote actualizarVersionados(List<Producto> productos) throws SQLException {
+        Metricas.valor("dao.actualizarVersionados.filas", productos.size());
+        return medir("dao.actualizarVersionados", () -> repositorio.actualizarVersionados(productos));
+    }
+
+    @Override
+    public ResultadoLote eliminarTodos(List<String> codigos) throws SQLException {
+        Metricas.valor("dao.eliminarTodos.filas", codigos.size());
+        return medir("dao.eliminarTodos", () -> repositorio.eliminarTodos(codigos));
+    }
+
+    @Override
+    public long obtenerUltimoCambio() throws SQLException {
+        return medir("dao.obtenerUltimoCambio", repositorio::obtenerUltimoCambio);
+    }
+
+    @Override
+    public List<Cambio> obtenerCambiosDesde(long despuesDe, int limite) throws SQLException {
+        return medirLista("dao.obtenerCambiosDesde", () -> repositorio.obtenerCambiosDesde(despuesDe, limite));
+    }
+
+    @Override
+    public long obtenerPrimerCambio() throws SQLException {
+        return medir("dao.obtenerPrimerCambio", repositorio::obtenerPrimerCambio);
+    }
+
+    @Override
+    public long purgarCambios(Instant antesDe) throws SQLException {
+        return medir("dao.purgarCambios", () -> repositorio.purgarCambios(antesDe));
+    }
+
+    /**
+     * Ejecuta una operación y anota su tiempo, tanto si termina bien como si falla.
+     */
+    private static <T> T medir(String nombre, Operacion<T> operacion) throws SQLException {
+        long inicio = Metricas.inicio();
+        try {
+            return operacion.ejecutar();
+        } finally {
+            Metricas.tiempo(nombre, inicio);
+        }
+    }
+
+    /**
+     * Ejecuta una consulta de una lista y anota su tiempo y el número de filas devueltas.
+     */
+    private static <T> List<T> medirLista(String nombre, Operacion<List<T>> consulta) throws SQLException {
+        List<T> lista = medir(nombre, consulta);
+        Metricas.valor(nombre + ".filas", lista.size());
+        return lista;
+    }
+
+    /**
+     * Operación del repositorio que puede lanzar {@link SQLException}.
+     */
+    @FunctionalInterface
+    private interface Operacion<T> {
+        T ejecutar() throws SQLException;
+    }
+}
@@ -0,0 +1,648 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de productos que sigue funcionando cuando la base de datos no está disponible.
+ *
+ * Mientras hay conexión, todo se delega en el repositorio envuelto. Cuando una operación falla
+ * por la conexión (servidor caído, red cortada), el repositorio pasa a trabajar sin conexión:
+ * <ul>
+ *     <li>las lecturas se resuelven con la copia local del catálogo ({@link InstantaneaProductos},
+ *     fichero {@code sinConexion.instantanea})</li>
+ *     <li>las altas, modificaciones y bajas se anotan en el diario ({@link DiarioEscrituras},
+ *     fichero {@code sinConexion.diario}) y se dan por hechas</li>
+ * </ul>
+ * Un hilo en segundo plano comprueba cada {@code sinConexion.intervaloMs} si la base de datos
+ * vuelve a responder. Cuando responde, envía el diario en lotes de {@code lote.tamano} y avisa de
+ * las escrituras que no se han podido aplicar porque otro usuario cambió antes el producto.
+ * Mientras quedan escrituras en el diario, las nuevas también se anotan, para enviarlas en orden.
+ *
+ * El mismo hilo mantiene la copia local al día: como mucho cada {@code sinConexion.refrescoMinutos}
+ * lee los cambios posteriores a la copia y, si hay alguno, escribe una generación nueva aplicándolos
+ * a la anterior, sin volver a leer el catálogo. Solo se lee el catálogo entero la primera vez, si
+ * el registro se ha purgado por encima de la copia o si hay más cambios pendientes que productos.
+ * El fichero de la generación anterior se borra cuando ya no la usa ninguna lectura.
+ * Las operaciones masivas (importaciones, recorridos con Stream) necesitan conexión.
+ */
+public class ProductoDaoSinConexion implements ProductoRepositorio {
+
+    // Crea el repositorio envuelto; puede fallar si la base de datos no responde al arrancar
+    private final Supplier<ProductoRepositorio> fabrica;
+    private volatile ProductoRepositorio repositorio;
+
+    private final Path ficheroInstantanea;
+    private volatile InstantaneaProductos instantanea;
+    // Ficheros de generaciones sustituidas, que se borran cuando su copia ya no está proyectada;
+    // solo los usa el hilo de fondo
+    private final Map<Path, WeakReference<InstantaneaProductos>> retiradas = new HashMap<>();
+    // Cambios posteriores a la copia local; lo crea y lo usa el hilo de fondo
+    private SeguidorCambios seguidor;
+    private final DiarioEscrituras diario;
+
+    private final long intervaloMs;
+    private final long refrescoNanos;
+    private final int tamanoLote;
+
+    // Con false, las operaciones no intentan contactar con la base de datos: lo hace el hilo de fondo
+    private volatile boolean conectado = true;
+    private volatile Consumer<List<String>> oyenteConflictos = conflictos -> { };
+    // Momento de la última comprobación de la copia local, o 0 si no se ha comprobado aún
+    private long ultimaComprobacion;
+    private Thread hilo;
+
+    /**
+     * Constructor para inicializar el repositorio con los ficheros configurados.
+     * Abre la copia local y el diario, pero no contacta con la base de datos.
+     *
+     * @param fabrica la creación del repositorio envuelto, por ejemplo {@code ProductoRepositorio::crear}
+     * @throws RuntimeException si no se puede abrir el diario
+     */
+    public ProductoDaoSinConexion(Supplier<ProductoRepositorio> fabrica) {
+        this.fabrica = fabrica;
+        this.ficheroInstantanea = Path.of(Propiedades.getValor("sinConexion.instantanea", "./datos/instantanea.bin"));
+        this.intervaloMs = Math.max(100, Propiedades.getEntero("sinConexion.intervaloMs", 5000));
+        this.refrescoNanos = TimeUnit.MINUTES.toNanos(Propiedades.getEntero("sinConexion.refrescoMinutos", 10));
+        this.tamanoLote = Math.max(1, Propiedades.getEntero("lote.tamano", 1000));
+        this.instantanea = abrirInstantanea(ficheroInstantanea);
+        retirarAnteriores();
+        try {
+            this.diario = new DiarioEscrituras(Path.of(Propiedades.getValor("sinConexion.diario", "./datos/diario.bin")));
+        } catch (IOException e) {
+            throw new RuntimeException("Error al abrir el diario de escrituras: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee la primera página de la copia local configurada, sin contactar con la base de datos,
+     * para mostrar algo al instante mientras llega la página de verdad.
+     *
+     * @param limite el número máximo de productos
+     * @return los primeros productos de la copia, o una lista vacía si no hay copia
+     */
+    public static List<Producto> leerPrimeraPagina(int limite) {
+        InstantaneaProductos copia = abrirInstantanea(
+                Path.of(Propiedades.getValor("sinConexion.instantanea", "./datos/instantanea.bin")));
+        return copia == null ? List.of() : copia.buscar(FiltroProductos.TODOS, null, limite);
+    }
+
+    /**
+     * Indica si un error se debe a la conexión con la base de datos y no a la operación en sí.
+     *
+     * @param error el error
+     * @return true si el servidor no responde o la conexión se ha perdido
+     */
+    public static boolean esFalloDeConexion(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLTransientConnectionException || causa instanceof SQLNonTransientConnectionException
+                    || causa instanceof SQLRecoverableException || causa instanceof ConnectException
+                    || causa instanceof SocketTimeoutException || causa instanceof UnknownHostException) {
+                return true;
+            }
+            if (causa instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Establece quién recibe las escrituras del diario que no se han podido aplicar.
+     * Se llama desde el hilo de fondo.
+     *
+     * @param oyente la acción que recibe la descripción de cada conflicto
+     */
+    public void setOyenteConflictos(Consumer<List<String>> oyente) {
+        this.oyenteConflictos = oyente;
+    }
+
+    /**
+     * @return true si la última operación pudo contactar con la base de datos
+     */
+    public boolean isConectado() {
+        return conectado;
+    }
+
+    /**
+     * @return el número de escrituras anotadas que aún no se han enviado
+     */
+    public int getPendientes() {
+        return diario.getPendientes().size();
+    }
+
+    /**
+     * Pone en marcha el hilo que vuelve a conectar, envía el diario y refresca la copia local.
+     * No hace nada si ya está en marcha.
+     */
+    public synchronized void iniciar() {
+        if (hilo == null) {
+            hilo = Thread.ofVirtual().name("sincronizador-sin-conexion").start(this::ejecutar);
+        }
+    }
+
+    /**
+     * Detiene el hilo de fondo y cierra el diario. Lo que quede pendiente se enviará la próxima vez.
+     */
+    public synchronized void detener() {
+        if (hilo != null) {
+            hilo.interrupt();
+            hilo = null;
+        }
+        diario.cerrar();
+    }
+
+    @Override
+    public void crear(Producto producto) throws SQLException {
+        escribir(DiarioEscrituras.Tipo.CREAR, producto, r -> r.crear(producto));
+    }
+
+    @Override
+    public void actualizar(Producto producto) throws SQLException {
+        escribir(DiarioEscrituras.Tipo.ACTUALIZAR, producto, r -> r.actualizar(producto));
+    }
+
+    @Override
+    public void eliminar(String codigo) throws SQLException {
+        escribir(DiarioEscrituras.Tipo.ELIMINAR, new Producto(codigo, "", 0, false), r -> r.eliminar(codigo));
+    }
+
+    @Override
+    public List<Producto> obtenerTodos() throws SQLException {
+        return leer(ProductoRepositorio::obtenerTodos, copia -> {
+            List<Producto> todos = new ArrayList<>(copia.size());
+            copia.recorrer(todos::add);
+            return todos;
+        });
+    }
+
+    @Override
+    public Producto obtenerPorCodigo(String codigo) throws SQLException {
+        return leer(r -> r.obtenerPorCodigo(codigo), copia -> copia.obtenerPorCodigo(codigo));
+    }
+
+    @Override
+    public long contar() throws SQLException {
+        return leer(ProductoRepositorio::contar, copia -> (long) copia.size());
+    }
+
+    @Override
+    public long recorrerTodos(Consumer<Producto> visitante) throws SQLException {
+        return leer(r -> r.recorrerTodos(visitante), copia -> copia.recorrer(visitante));
+    }
+
+    @Override
+    public Stream<Producto> streamTodos() throws SQLException {
+        return repositorio().streamTodos();
+    }
+
+    @Override
+    public List<Producto> obtenerPagina(String despuesDe, int limite) throws SQLException {
+        return leer(r -> r.obtenerPagina(despuesDe, limite),
+                copia -> copia.buscar(FiltroProductos.TODOS, despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> obtenerPaginaAnterior(String antesDe, int limite) throws SQLException {
+        return leer(r -> r.obtenerPaginaAnterior(antesDe, limite),
+                copia -> copia.buscarAnterior(FiltroProductos.TODOS, antesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) throws SQLException {
+        return leer(r -> r.buscar(filtro, despuesDe, limite), copia -> copia.buscar(filtro, despuesDe, limite));
+    }
+
+    @Override
+    public List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) throws SQLException {
+        return leer(r -> r.buscarAnterior(filtro, antesDe, limite),
+                copia -> copia.buscarAnterior(filtro, antesDe, limite));
+    }
+
+    @Override
+    public ResultadoLote crearTodos(List<Producto> productos) throws SQLException {
+        return repositorio().crearTodos(productos);
+    }
+
+    @Override
+    public ResultadoLote actualizarTodos(List<Producto> productos) throws SQLException {
+        return repositorio().actualizarTodos(productos);
+    }
+
+    /**
+     * Con conexión y sin escrituras pendientes, envía el lote entero. Si no, anota cada
+     * producto en el diario como una actualización suelta.
+     */
+    @Override
+    public ResultadoLote actualizarVersionados(List<Producto> productos) throws SQLException {
+        if (conectado && diario.isVacio()) {
+            try {
+                return repositorio().actualizarVersionados(productos);
+            } catch (SQLException e) {
+                if (!esFalloDeConexion(e)) {
+                    throw e;
+                }
+                desconectar(e);
+            }
+        }
+
+        ResultadoLote resultado = new ResultadoLote(productos.size());
+        for (int i = 0; i < productos.size(); i++) {
+            Producto producto = productos.get(i);
+            try {
+                actualizar(producto);
+                resultado.sumarCorrectos(1);
+            } catch (ConflictoVersionException e) {
+                resultado.anotarFallo(i, producto.getCodigo(), e.getMessage());
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public ResultadoLote eliminarTodos(List<String> codigos) throws SQLException {
+        return repositorio().eliminarTodos(codigos);
+    }
+
+    @Override
+    public long obtenerUltimoCambio() throws SQLException {
+        // Sin conexión, el registro queda en el punto de la copia: al volver, llegan los cambios posteriores
+        return leer(ProductoRepositorio::obtenerUltimoCambio, InstantaneaProductos::getUltimoCambio);
+    }
+
+    @Override
+    public List<Cambio> obtenerCambiosDesde(long despuesDe, int limite) throws SQLException {
+        return leer(r -> r.obtenerCambiosDesde(despuesDe, limite), copia -> List.of());
+    }
+
+    @Override
+    public long obtenerPrimerCambio() throws SQLException {
+        return leer(ProductoRepositorio::obtenerPrimerCambio, copia -> 0L);
+    }
+
+    @Override
+    public long purgarCambios(Instant antesDe) throws SQLException {
+        return repositorio().purgarCambios(antesDe);
+    }
+
+    /**
+     * Ejecuta una lectura contra la base de datos o, si no hay conexión, contra la copia local.
+     */
+    private <T> T leer(Operacion<T> enLinea, LecturaLocal<T> local) throws SQLException {
+        if (conectado) {
+            try {
+                return enLinea.ejecutar(repositorio());
+            } catch (SQLException e) {
+                if (!esFalloDeConexion(e)) {
+                    throw e;
+                }
+                desconectar(e);
+            }
+        }
+        InstantaneaProductos copia = instantanea;
+        if (copia == null) {
+            throw new SQLTransientConnectionException("No hay conexión con la base de datos ni copia local del catálogo");
+        }
+        return local.leer(copia);
+    }
+
+    /**
+     * Ejecuta una escritura contra la base de datos o, si no hay conexión o quedan escrituras
+     * pendientes, la anota en el diario.
+     */
+    private void escribir(DiarioEscrituras.Tipo tipo, Producto producto, EscrituraEnLinea enLinea) throws SQLException {
+        if (conectado && diario.isVacio()) {
+            try {
+                enLinea.ejecutar(repositorio());
+                return;
+            } catch (SQLException e) {
+                if (!esFalloDeConexion(e)) {
+                    throw e;
+                }
+                desconectar(e);
+            }
+        }
+
+        // Se anota la versión que se espera encontrar, y el producto pasa a la siguiente
+        // como si la base de datos lo hubiera guardado, para poder editarlo otra vez
+        Producto anotado = new Producto(producto.getCodigo(), producto.getNombre(), producto.getPrecio(),
+                producto.isDisponible(), producto.getVersion());
+        try {
+            diario.anotar(new DiarioEscrituras.Escritura(tipo, anotado));
+        } catch (IOException e) {
+            throw new SQLException("Error al anotar la escritura en el diario: " + e.getMessage(), e);
+        }
+        if (tipo == DiarioEscrituras.Tipo.ACTUALIZAR) {
+            producto.setVersion(producto.getVersion() + 1);
+        }
+    }
+
+    /**
+     * Obtiene el repositorio envuelto, creándolo si todavía no se ha podido crear.
+     */
+    private ProductoRepositorio repositorio() throws SQLException {
+        ProductoRepositorio actual = repositorio;
+        if (actual == null) {
+            synchronized (this) {
+                if (repositorio == null) {
+                    try {
+                        repositorio = fabrica.get();
+                    } catch (RuntimeException e) {
+                        // ProductoDao envuelve en RuntimeException el error al crear el pool
+                        if (e.getCause() instanceof SQLException causa) {
+                            throw causa;
+                        }
+                        throw e;
+                    }
+                }
+                actual = repositorio;
+            }
+        }
+        return actual;
+    }
+
+    private void desconectar(SQLException causa) {
+        if (conectado) {
+            conectado = false;
+            System.err.println("Sin conexión con la base de datos, se trabaja con la copia local: " + causa.getMessage());
+        }
+    }
+
+    /**
+     * Bucle del hilo de fondo: comprueba la conexión, envía el diario y refresca la copia local.
+     */
+    private void ejecutar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            // Se espera antes de la primera vuelta para no competir con la primera carga de la tabla
+            try {
+                TimeUnit.MILLISECONDS.sleep(intervaloMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (!conectado) {
+                    repositorio().obtenerUltimoCambio();
+                    conectado = true;
+                    System.err.println("Conexión con la base de datos recuperada");
+                }
+                if (!diario.isVacio()) {
+                    sincronizar();
+                }
+                refrescarInstantanea();
+                borrarRetiradas();
+            } catch (SQLException e) {
+                if (esFalloDeConexion(e)) {
+                    desconectar(e);
+                } else {
+                    System.err.println("Error al sincronizar con la base de datos: " + e.getMessage());
+                }
+            } catch (IOException e) {
+                System.err.println("Error al escribir la copia local del catálogo: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Envía a la base de datos las escrituras del diario en orden: las altas y las bajas seguidas,
+     * en lotes; las modificaciones una a una, porque cada una comprueba su versión. Las que
+     * no se pueden aplicar se quitan del diario y se comunican al oyente de conflictos.
+     *
+     * Si la conexión se corta durante un lote, parte de él puede haberse confirmado aunque siga
+     * en el diario; al reenviarlo, las altas que ya están con los mismos datos y las bajas de
+     * productos que ya no existen se dan por aplicadas en lugar de como conflictos.
+     *
+     * @throws SQLException si se pierde la conexión; lo enviado hasta entonces sale del diario
+     */
+    private void sincronizar() throws SQLException {
+        List<DiarioEscrituras.Escritura> pendientes = diario.getPendientes();
+        List<String> conflictos = new ArrayList<>();
+        ProductoRepositorio destino = repositorio();
+        int enviadas = 0;
+        try {
+            while (enviadas < pendientes.size()) {
+                DiarioEscrituras.Tipo tipo = pendientes.get(enviadas).getTipo();
+                int fin = enviadas + 1;
+                while (tipo != DiarioEscrituras.Tipo.ACTUALIZAR && fin < pendientes.size()
+                        && fin - enviadas < tamanoLote && pendientes.get(fin).getTipo() == tipo) {
+                    fin++;
+                }
+                enviar(destino, tipo, pendientes.subList(enviadas, fin), conflictos);
+                enviadas = fin;
+            }
+        } finally {
+            try {
+                diario.descartar(enviadas);
+            } catch (IOException e) {
+                System.err.println("Error al actualizar el diario de escrituras: " + e.getMessage());
+            }
+            if (!conflictos.isEmpty()) {
+                oyenteConflictos.accept(conflictos);
+            }
+        }
+    }
+
+    /**
+     * Envía un grupo de escrituras del mismo tipo y anota las que no se han podido aplicar.
+     */
+    private static void enviar(ProductoRepositorio destino, DiarioEscrituras.Tipo tipo,
+                               List<DiarioEscrituras.Escritura> grupo, List<String> conflictos) throws SQLException {
+        List<Producto> productos = new ArrayList<>(grupo.size());
+        for (DiarioEscrituras.Escritura escritura : grupo) {
+            productos.add(escritura.getProducto());
+        }
+        switch (tipo) {
+            case CREAR -> {
+                for (ResultadoLote.Fallo fallo : destino.crearTodos(productos).getFallos()) {
+                    Producto enviado = productos.get(fallo.getIndice());
+                    if (!mismosDatos(enviado, destino.obtenerPorCodigo(enviado.getCodigo()))) {
+                        conflictos.add(fallo.getCodigo() + ": no se ha podido crear (" + fallo.getMensaje() + ")");
+                    }
+                }
+            }
+            case ELIMINAR -> {
+                List<String> codigos = new ArrayList<>(productos.size());
+                for (Producto producto : productos) {
+                    codigos.add(producto.getCodigo());
+                }
+                for (ResultadoLote.Fallo fallo : destino.eliminarTodos(codigos).getFallos()) {
+                    if (destino.obtenerPorCodigo(fallo.getCodigo()) != null) {
+                        conflictos.add(fallo.getCodigo() + ": no se ha podido eliminar (" + fallo.getMensaje() + ")");
+                    }
+                }
+            }
+            case ACTUALIZAR -> {
+                for (Producto producto : productos) {
+                    try {
+                        destino.actualizar(producto);
+                    } catch (ConflictoVersionException e) {
+                        conflictos.add(producto.getCodigo() + (e.getActual() == null
+                                ? ": otro usuario lo ha eliminado; tus cambios se han descartado"
+                                : ": otro usuario lo ha modificado; tus cambios se han descartado"));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Comprueba si el producto que hay en la base de datos es el que se quería crear,
+     * porque un envío anterior cortado llegó a confirmarlo.
+     */
+    private static boolean mismosDatos(Producto enviado, Producto actual) {
+        return actual != null && actual.getNombre().equals(enviado.getNombre())
+                && Double.compare(actual.getPrecio(), enviado.getPrecio()) == 0
+                && actual.isDisponible() == enviado.isDisponible();
+    }
+
+    /**
+     * Pone al día la copia local si ha pasado el tiempo de refresco, aplicándole los cambios
+     * del registro posteriores a ella o, si no se puede, escribiéndola desde cero.
+     */
+    private void refrescarInstantanea() throws SQLException, IOException {
+        long ahora = System.nanoTime();
+        if (ultimaComprobacion != 0 && ahora - ultimaComprobacion < refrescoNanos) {
+            return;
+        }
+        ultimaComprobacion = ahora;
+        ProductoRepositorio origen = repositorio();
+        InstantaneaProductos actual = instantanea;
+        if (actual == null) {
+            escribirInstantanea(origen);
+            return;
+        }
+        if (seguidor == null) {
+            seguidor = new SeguidorCambios(origen, actual.getUltimoCambio());
+        }
+        // Con más cambios pendientes que productos, sale más barato leer el catálogo
+        if (origen.obtenerUltimoCambio() - seguidor.getConfirmado() > Math.max(tamanoLote, actual.size())) {
+            escribirInstantanea(origen);
+            return;
+        }
+        List<Cambio> cambios;
+        try {
+            cambios = seguidor.leer();
+        } catch (CambiosPurgadosException e) {
+            escribirInstantanea(origen);
+            return;
+        }
+        if (!cambios.isEmpty()) {
+            sustituirInstantanea(actual.aplicar(cambios, seguidor.getConfirmado(), ficheroInstantanea));
+        }
+    }
+
+    /**
+     * Escribe la copia local desde cero con el catálogo entero, y sigue el registro desde ella.
+     */
+    private void escribirInstantanea(ProductoRepositorio origen) throws SQLException, IOException {
+        if (seguidor == null) {
+            seguidor = new SeguidorCambios(origen);
+        } else {
+            seguidor.reiniciar();
+        }
+        sustituirInstantanea(InstantaneaProductos.escribir(origen, seguidor.getConfirmado(), ficheroInstantanea));
+    }
+
+    /**
+     * Pasa a leer de una generación nueva de la copia y retira la anterior. Las lecturas que
+     * están usando la anterior terminan con ella.
+     */
+    private void sustituirInstantanea(InstantaneaProductos nueva) {
+        InstantaneaProductos anterior = instantanea;
+        instantanea = nueva;
+        if (anterior != null) {
+            retiradas.put(anterior.getFichero(), new WeakReference<>(anterior));
+        }
+    }
+
+    /**
+     * Retira las generaciones de la copia anteriores a la abierta, que quedan de otras ejecuciones.
+     */
+    private void retirarAnteriores() {
+        InstantaneaProductos actual = instantanea;
+        if (actual == null) {
+            return;
+        }
+        try {
+            for (Path fichero : InstantaneaProductos.generaciones(ficheroInstantanea)
+                    .headMap(actual.getGeneracion()).values()) {
+                retiradas.put(fichero, new WeakReference<>(null));
+            }
+        } catch (IOException e) {
+            System.err.println("No se pueden buscar las copias anteriores del catálogo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los ficheros de las generaciones retiradas que ya no usa nadie. Si alguno no se puede
+     * borrar (en Windows, mientras la proyección no se ha liberado), se vuelve a intentar en la
+     * siguiente vuelta.
+     */
+    private void borrarRetiradas() {
+        retiradas.entrySet().removeIf(retirada -> {
+            if (retirada.getValue().get() != null) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(retirada.getKey());
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    private static InstantaneaProductos abrirInstantanea(Path fichero) {
+        try {
+            return InstantaneaProductos.abrirUltima(fichero);
+        } catch (IOException e) {
+            System.err.println("No se puede leer la copia local del catálogo: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Operación contra el repositorio envuelto.
+     */
+    @FunctionalInterface
+    private interface Operacion<T> {
+        T ejecutar(ProductoRepositorio repositorio) throws SQLException;
+    }
+
+    /**
+     * Escritura contra el repositorio envuelto.
+     */
+    @FunctionalInterface
+    private interface EscrituraEnLinea {
+        void ejecutar(ProductoRepositorio repositorio) throws SQLException;
+    }
+
+    /**
+     * Lectura equivalente contra la copia local.
+     */
+    @FunctionalInterface
+    private interface LecturaLocal<T> {
+        T leer(InstantaneaProductos copia);
+    }
+}
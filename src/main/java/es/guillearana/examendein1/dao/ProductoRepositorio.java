@@ -0,0 +1,233 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.metricas.Metricas;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Operaciones de almacenamiento de productos, independientes de la base de datos que las resuelve.
+ *
+ * Hay dos implementaciones, que se eligen con la clave {@code almacenamiento} del archivo de
+ * propiedades (ver {@link #crear()}):
+ * <ul>
+ *     <li>{@code mysql}: {@link ProductoDao}, contra el servidor MySQL compartido</li>
+ *     <li>{@code local}: {@link ProductoDaoLocal}, con una base de datos H2 embebida en un fichero,
+ *     para puestos sin red, pruebas de carga o instalaciones de un solo usuario</li>
+ * </ul>
+ * {@link ProductoDaoCache} se puede colocar delante de cualquiera de las dos.
+ */
+public interface ProductoRepositorio {
+
+    /**
+     * Crea el repositorio configurado en la clave {@code almacenamiento}, sin caché.
+     * Con {@code metricas.activas=true} se devuelve envuelto en un {@link ProductoDaoMedido}.
+     *
+     * @return el repositorio de productos
+     * @throws RuntimeException si el almacenamiento configurado no existe o no se puede abrir
+     */
+    static ProductoRepositorio crear() {
+        String almacenamiento = Propiedades.getValor("almacenamiento", "mysql");
+        ProductoRepositorio repositorio = switch (almacenamiento.trim().toLowerCase(Locale.ROOT)) {
+            case "mysql" -> new ProductoDao();
+            case "local" -> new ProductoDaoLocal();
+            default -> throw new RuntimeException("El almacenamiento " + almacenamiento
+                    + " de configuration.properties no existe (valores posibles: mysql, local)");
+        };
+        return Metricas.activas() ? new ProductoDaoMedido(repositorio) : repositorio;
+    }
+
+    /**
+     * Crea un nuevo producto.
+     *
+     * @param producto el producto a crear
+     * @throws SQLException si ocurre un error al guardar el producto
+     */
+    void crear(Producto producto) throws SQLException;
+
+    /**
+     * Obtiene todos los productos.
+     *
+     * @return una lista con todos los productos
+     * @throws SQLException si ocurre un error al leer los productos
+     */
+    List<Producto> obtenerTodos() throws SQLException;
+
+    /**
+     * Obtiene un producto a partir de su código.
+     *
+     * @param codigo el código del producto
+     * @return el producto, o null si no existe ningún producto con ese código
+     * @throws SQLException si ocurre un error al leer el producto
+     */
+    Producto obtenerPorCodigo(String codigo) throws SQLException;
+
+    /**
+     * Cuenta los productos.
+     *
+     * @return el número de productos
+     * @throws SQLException si ocurre un error al contar los productos
+     */
+    long contar() throws SQLException;
+
+    /**
+     * Recorre todos los productos en orden de código sin cargarlos en memoria.
+     *
+     * @param visitante la acción que se ejecuta con cada producto
+     * @return el número de productos recorridos
+     * @throws SQLException si ocurre un error al leer los productos
+     */
+    long recorrerTodos(Consumer<Producto> visitante) throws SQLException;
+
+    /**
+     * Obtiene todos los productos como un Stream que se lee a medida que se consume.
+     * Debe cerrarse, preferiblemente con try-with-resources.
+     *
+     * @return un Stream con todos los productos, en orden de código
+     * @throws SQLException si ocurre un error al ejecutar la consulta
+     */
+    Stream<Producto> streamTodos() throws SQLException;
+
+    /**
+     * Obtiene una página de productos ordenada por código, usando paginación por clave.
+     *
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return los productos con código mayor que {@code despuesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al leer los productos
+     */
+    List<Producto> obtenerPagina(String despuesDe, int limite) throws SQLException;
+
+    /**
+     * Obtiene la página de productos inmediatamente anterior a un código.
+     *
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return los productos con código menor que {@code antesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al leer los productos
+     */
+    List<Producto> obtenerPaginaAnterior(String antesDe, int limite) throws SQLException;
+
+    /**
+     * Busca una página de productos que cumplen un filtro, ordenada por código.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param despuesDe el último código de la página anterior, o null para obtener la primera página
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código mayor que {@code despuesDe}
+     * @throws SQLException si ocurre un error al buscar los productos
+     */
+    List<Producto> buscar(FiltroProductos filtro, String despuesDe, int limite) throws SQLException;
+
+    /**
+     * Busca la página de productos que cumplen un filtro inmediatamente anterior a un código.
+     *
+     * @param filtro los criterios de búsqueda
+     * @param antesDe el primer código de la página siguiente
+     * @param limite el número máximo de productos de la página
+     * @return los productos que cumplen el filtro con código menor que {@code antesDe}, en orden ascendente
+     * @throws SQLException si ocurre un error al buscar los productos
+     */
+    List<Producto> buscarAnterior(FiltroProductos filtro, String antesDe, int limite) throws SQLException;
+
+    /**
+     * Actualiza un producto, siempre que nadie lo haya modificado desde que se leyó
+     * (su versión debe coincidir con la de la base de datos).
+     *
+     * @param producto el producto con los datos actualizados; si se guarda, su versión pasa a la nueva
+     * @throws ConflictoVersionException si el producto ha cambiado o se ha eliminado desde que se leyó
+     * @throws SQLException si ocurre un error al guardar el producto
+     */
+    void actualizar(Producto producto) throws SQLException;
+
+    /**
+     * Elimina un producto utilizando su código.
+     *
+     * @param codigo el código del producto a eliminar
+     * @throws SQLException si ocurre un error al eliminar el producto
+     */
+    void eliminar(String codigo) throws SQLException;
+
+    /**
+     * Crea muchos productos a la vez.
+     *
+     * @param productos los productos a crear
+     * @return el resultado con los productos creados y los que han fallado
+     * @throws SQLException si falla el acceso a la base de datos
+     */
+    ResultadoLote crearTodos(List<Producto> productos) throws SQLException;
+
+    /**
+     * Actualiza muchos productos a la vez. Los códigos que no existen se anotan como fallos.
+     *
+     * @param productos los productos con los datos actualizados
+     * @return el resultado con los productos actualizados y los que han fallado
+     * @throws SQLException si falla el acceso a la base de datos
+     */
+    ResultadoLote actualizarTodos(List<Producto> productos) throws SQLException;
+
+    /**
+     * Actualiza muchos productos en una sola transacción, comprobando la versión de cada uno
+     * igual que {@link #actualizar(Producto)}. Los que otro usuario ha modificado o eliminado
+     * se anotan como fallos y no impiden guardar los demás.
+     *
+     * @param productos los productos con los datos actualizados y la versión esperada; los que se
+     *                  guardan pasan a la nueva versión
+     * @return el resultado con los productos guardados y los que tenían otra versión
+     * @throws SQLException si falla el acceso a la base de datos; entonces no se guarda ninguno
+     */
+    ResultadoLote actualizarVersionados(List<Producto> productos) throws SQLException;
+
+    /**
+     * Elimina muchos productos a la vez. Los códigos que no existen se anotan como fallos.
+     *
+     * @param codigos los códigos de los productos a eliminar
+     * @return el resultado con los productos eliminados y los que han fallado
+     * @throws SQLException si falla el acceso a la base de datos
+     */
+    ResultadoLote eliminarTodos(List<String> codigos) throws SQLException;
+
+    /**
+     * Obtiene el identificador del último cambio anotado en el registro de cambios.
+     *
+     * @return el identificador del último cambio, o 0 si el registro está vacío
+     * @throws SQLException si ocurre un error al leer el registro
+     */
+    long obtenerUltimoCambio() throws SQLException;
+
+    /**
+     * Obtiene los cambios anotados después de un identificador, con el estado actual de cada producto.
+     *
+     * @param despuesDe el identificador del último cambio ya aplicado
+     * @param limite el número máximo de cambios que se devuelven
+     * @return los cambios en orden de identificador; los productos eliminados no tienen producto
+     * @throws SQLException si ocurre un error al leer el registro
+     */
+    List<Cambio> obtenerCambiosDesde(long despuesDe, int limite) throws SQLException;
+
+    /**
+     * Obtiene el identificador del cambio más antiguo que conserva el registro de cambios.
+     * Si es mayor que el siguiente al último cambio aplicado, los intermedios se han purgado.
+     *
+     * @return el identificador del primer cambio conservado, o 0 si el registro está vacío
+     * @throws SQLException si ocurre un error al leer el registro
+     */
+    long obtenerPrimerCambio() throws SQLException;
+
+    /**
+     * Borra del registro de cambios los anotados antes de un instante. El último cambio se conserva
+     * siempre, para que {@link #obtenerPrimerCambio()} indique hasta dónde se ha purgado.
+     *
+     * @param antesDe el instante a partir del cual se conservan los cambios
+     * @return el número de cambios borrados
+     * @throws SQLException si ocurre un error al borrar los cambios
+     */
+    long purgarCambios(Instant antesDe) throws SQLException;
+}
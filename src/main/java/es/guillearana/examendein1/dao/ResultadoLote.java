@@ -0,0 +1,129 @@
+package es.guillearana.examendein1.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una operación masiva de {@link ProductoDao}.
+ *
+ * Indica cuántos productos se han procesado correctamente y, para cada producto que
+ * ha fallado, su posición en la lista de entrada, su código y el motivo del error.
+ */
+public class ResultadoLote {
+
+    private final int total;
+    private int correctos;
+    private final List<Fallo> fallos = new ArrayList<>();
+
+    /**
+     * Constructor para inicializar el resultado de una operación masiva.
+     *
+     * @param total el número de productos que se han enviado
+     */
+    public ResultadoLote(int total) {
+        this.total = total;
+    }
+
+    /**
+     * @return el número de productos que se han enviado
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return el número de productos procesados correctamente
+     */
+    public int getCorrectos() {
+        return correctos;
+    }
+
+    /**
+     * @return los productos que han fallado, en orden de posición
+     */
+    public List<Fallo> getFallos() {
+        return Collections.unmodifiableList(fallos);
+    }
+
+    /**
+     * @return true si todos los productos se han procesado correctamente
+     */
+    public boolean isCompleto() {
+        return fallos.isEmpty() && correctos == total;
+    }
+
+    /**
+     * Suma productos procesados correctamente.
+     *
+     * @param cantidad el número de productos correctos que se añaden
+     */
+    void sumarCorrectos(int cantidad) {
+        correctos += cantidad;
+    }
+
+    /**
+     * Anota el fallo de un producto.
+     *
+     * @param indice la posición del producto en la lista de entrada
+     * @param codigo el código del producto
+     * @param mensaje el motivo del error
+     */
+    void anotarFallo(int indice, String codigo, String mensaje) {
+        fallos.add(new Fallo(indice, codigo, mensaje));
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote[total=" + total + ", correctos=" + correctos + ", fallos=" + fallos.size() + "]";
+    }
+
+    /**
+     * Fallo de un producto concreto dentro de una operación masiva.
+     */
+    public static class Fallo {
+
+        private final int indice;
+        private final String codigo;
+        private final String mensaje;
+
+        /**
+         * Constructor para inicializar el fallo de un producto.
+         *
+         * @param indice la posición del producto en la lista de entrada
+         * @param codigo el código del producto
+         * @param mensaje el motivo del error
+         */
+        public Fallo(int indice, String codigo, String mensaje) {
+            this.indice = indice;
+            this.codigo = codigo;
+            this.mensaje = mensaje;
+        }
+
+        /**
+         * @return la posición del producto en la lista de entrada
+         */
+        public int getIndice() {
+            return indice;
+        }
+
+        /**
+         * @return el código del producto
+         */
+        public String getCodigo() {
+            return codigo;
+        }
+
+        /**
+         * @return el motivo del error
+         */
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + indice + " (" + codigo + "): " + mensaje;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package es.guillearana.examendein1.dao;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sigue el registro de cambios de productos desde un punto dado, entregando cada cambio una vez.
+ *
+ * Los identificadores del registro no siempre se confirman en orden: una transacción lenta puede
+ * hacer visible el cambio 10 después del 11, y un lote deshecho deja huecos que nunca se llenan.
+ * Por eso el seguidor recuerda los cambios vistos por encima del último identificador contiguo y
+ * solo da un hueco por perdido cuando lleva {@code cambios.esperaHuecoMs} sin aparecer.
+ *
+ * Si el registro se ha purgado por encima del punto del seguidor, los cambios que faltan ya no
+ * se pueden leer: {@link #leer()} lanza {@link CambiosPurgadosException} tras colocarse en el
+ * último cambio actual, y quien lo usa debe recargar todo antes de seguir leyendo.
+ */
+public class SeguidorCambios {
+
+    private final ProductoRepositorio productoDao;
+    private final int limite;
+    private final long esperaHuecoNanos;
+
+    // Todos los cambios con identificador menor o igual que este ya se han entregado
+    private long confirmado;
+    // Cambios ya entregados por encima de confirmado, separados de él por algún hueco
+    private final TreeSet<Long> vistos = new TreeSet<>();
+    // Momento en que se detectó el hueco actual, o 0 si no hay hueco
+    private long huecoDesde;
+    // Cerrojo en lugar de synchronized: se mantiene durante consultas y se usa desde hilos virtuales
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Constructor que empieza a seguir el registro desde el último cambio actual.
+     *
+     * @param productoDao el DAO del que se leen los cambios
+     * @throws SQLException si ocurre un error al leer el último cambio
+     */
+    public SeguidorCambios(ProductoRepositorio productoDao) throws SQLException {
+        this(productoDao, productoDao.obtenerUltimoCambio());
+    }
+
+    /**
+     * Constructor que empieza a seguir el registro desde un cambio ya aplicado, por ejemplo
+     * el último incluido en una copia guardada.
+     *
+     * @param productoDao el DAO del que se leen los cambios
+     * @param desde el identificador del último cambio ya aplicado
+     */
+    public SeguidorCambios(ProductoRepositorio productoDao, long desde) {
+        this.productoDao = productoDao;
+        this.limite = Math.max(1, Propiedades.getEntero("cambios.limite", 1000));
+        this.esperaHuecoNanos = TimeUnit.MILLISECONDS.toNanos(Propiedades.getEntero("cambios.esperaHuecoMs", 5000));
+        this.confirmado = desde;
+    }
+
+    /**
+     * Vuelve a empezar desde el último cambio actual, olvidando los pendientes.
+     * Se usa al recargar la tabla desde cero.
+     *
+     * @throws SQLException si ocurre un error al leer el último cambio
+     */
+    public void reiniciar() throws SQLException {
+        cerrojo.lock();
+        try {
+            confirmado = productoDao.obtenerUltimoCambio();
+            vistos.clear();
+            huecoDesde = 0;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Lee los cambios que no se han entregado todavía.
+     * Si un producto ha cambiado varias veces, se entrega un solo cambio con su estado actual.
+     *
+     * @return los cambios nuevos, como mucho uno por producto
+     * @throws CambiosPurgadosException si se han purgado cambios que no se habían entregado
+     * @throws SQLException si ocurre un error al leer el registro
+     */
+    public List<Cambio> leer() throws SQLException {
+        Map<String, Cambio> nuevos = new LinkedHashMap<>();
+        cerrojo.lock();
+        try {
+            leerPendientes(nuevos);
+        } finally {
+            cerrojo.unlock();
+        }
+        return new ArrayList<>(nuevos.values());
+    }
+
+    /**
+     * @return el identificador hasta el que todos los cambios se han entregado
+     */
+    public long getConfirmado() {
+        cerrojo.lock();
+        try {
+            return confirmado;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Lee página a página los cambios pendientes, quedándose con el último de cada producto.
+     */
+    private void leerPendientes(Map<String, Cambio> nuevos) throws SQLException {
+        while (true) {
+            long anterior = confirmado;
+            List<Cambio> cambios = productoDao.obtenerCambiosDesde(confirmado, limite);
+            if (!cambios.isEmpty() && cambios.get(0).getId() > confirmado + 1) {
+                comprobarPurga();
+            }
+            for (Cambio cambio : cambios) {
+                if (vistos.add(cambio.getId())) {
+                    String clave = cambio.getCodigo().toLowerCase(Locale.ROOT);
+                    nuevos.remove(clave);
+                    nuevos.put(clave, cambio);
+                }
+            }
+            avanzar();
+            // Si la página no venía llena o un hueco impide avanzar, no hay nada más que leer
+            if (cambios.size() < limite || confirmado == anterior) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ante un hueco justo después del último cambio entregado, comprueba si se debe a una purga
+     * del registro. Si es así, se coloca en el último cambio actual y lo comunica.
+     */
+    private void comprobarPurga() throws SQLException {
+        long primero = productoDao.obtenerPrimerCambio();
+        if (primero > confirmado + 1) {
+            long aplicado = confirmado;
+            confirmado = productoDao.obtenerUltimoCambio();
+            vistos.clear();
+            huecoDesde = 0;
+            throw new CambiosPurgadosException(aplicado, primero);
+        }
+    }
+
+    /**
+     * Avanza el último identificador contiguo sobre los cambios vistos, saltando los huecos
+     * que llevan demasiado tiempo abiertos.
+     */
+    private void avanzar() {
+        while (!vistos.isEmpty()) {
+            long primero = vistos.first();
+            if (primero <= confirmado + 1) {
+                vistos.pollFirst();
+                confirmado = Math.max(confirmado, primero);
+                huecoDesde = 0;
+                continue;
+            }
+
+            long ahora = System.nanoTime();
+            if (huecoDesde == 0) {
+                huecoDesde = ahora;
+                return;
+            }
+            if (ahora - huecoDesde < esperaHuecoNanos) {
+                return;
+            }
+            // El hueco no se ha llenado a tiempo: se da por perdido
+            confirmado = primero - 1;
+            huecoDesde = 0;
+        }
+    }
+}
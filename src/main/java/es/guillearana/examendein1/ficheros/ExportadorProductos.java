@@ -0,0 +1,190 @@
+package es.guillearana.examendein1.ficheros;
+
+import es.guillearana.examendein1.dao.ProductoRepositorio;
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exporta el catálogo de productos a un fichero CSV o JSON Lines.
+ *
+ * Los productos se leen con {@link ProductoRepositorio#recorrerTodos(java.util.function.Consumer)}
+ * y se escriben uno a uno en un canal de fichero con búfer, sin construir nunca una lista:
+ * la memoria usada es la misma para mil filas que para millones.
+ *
+ * El fichero se escribe primero con la extensión {@code .parcial} y solo se renombra al
+ * destino cuando la exportación termina bien, así una exportación cancelada o fallida no
+ * deja un fichero a medias con el nombre definitivo.
+ */
+public class ExportadorProductos {
+
+    /**
+     * Formatos de exportación disponibles.
+     */
+    public enum Formato {
+        /** Valores separados por comas, con cabecera. */
+        CSV,
+        /** Un objeto JSON por línea. */
+        JSONL;
+
+        /**
+         * Deduce el formato a partir de la extensión del fichero.
+         *
+         * @param fichero el fichero de destino
+         * @return JSONL si la extensión es .jsonl o .json, CSV en otro caso
+         */
+        public static Formato desdeFichero(Path fichero) {
+            String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+            return nombre.endsWith(".jsonl") || nombre.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /**
+     * Recibe el avance de la exportación.
+     */
+    @FunctionalInterface
+    public interface Progreso {
+        /**
+         * Informa del avance. Se llama desde el hilo que exporta, no desde el hilo de JavaFX.
+         *
+         * @param escritas el número de productos escritos hasta ahora
+         * @param total el número total de productos, o -1 si no se conoce
+         */
+        void avanzar(long escritas, long total);
+    }
+
+    // Cada cuántas filas se informa del avance
+    private static final int INTERVALO_PROGRESO = 10_000;
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    private final ProductoRepositorio productoDao;
+    private Progreso progreso = (escritas, total) -> { };
+    private volatile boolean cancelado;
+
+    /**
+     * Constructor para inicializar el exportador con el DAO del que se leen los productos.
+     *
+     * @param productoDao el DAO usado para leer los productos
+     */
+    public ExportadorProductos(ProductoRepositorio productoDao) {
+        this.productoDao = productoDao;
+    }
+
+    /**
+     * Establece la acción que recibe el avance de la exportación.
+     *
+     * @param progreso la acción que recibe el avance
+     */
+    public void setProgreso(Progreso progreso) {
+        this.progreso = progreso;
+    }
+
+    /**
+     * Pide que la exportación se detenga lo antes posible.
+     */
+    public void cancelar() {
+        cancelado = true;
+    }
+
+    /**
+     * Exporta todos los productos al fichero indicado.
+     *
+     * @param destino el fichero de destino
+     * @param formato el formato del fichero
+     * @return el número de productos exportados
+     * @throws IOException si ocurre un error al escribir el fichero
+     * @throws SQLException si ocurre un error al leer los productos
+     * @throws CancellationException si la exportación se cancela
+     */
+    public long exportar(Path destino, Formato formato) throws IOException, SQLException {
+        long total = productoDao.contar();
+        Path parcial = destino.resolveSibling(destino.getFileName() + ".parcial");
+        long[] escritas = {0};
+
+        try (FileChannel canal = FileChannel.open(parcial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer salida = new BufferedWriter(Channels.newWriter(canal, StandardCharsets.UTF_8), TAMANO_BUFER)) {
+
+            if (formato == Formato.CSV) {
+                salida.write("codigo,nombre,precio,disponible\n");
+            }
+            progreso.avanzar(0, total);
+
+            productoDao.recorrerTodos(producto -> {
+                if (cancelado) {
+                    throw new CancellationException("Exportación cancelada");
+                }
+                try {
+                    escribir(salida, producto, formato);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++escritas[0] % INTERVALO_PROGRESO == 0) {
+                    progreso.avanzar(escritas[0], total);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(parcial);
+            throw e.getCause();
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(parcial);
+            throw e;
+        }
+
+        Files.move(parcial, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        progreso.avanzar(escritas[0], total);
+        return escritas[0];
+    }
+
+    /**
+     * Escribe un producto en el formato indicado, terminado en salto de línea.
+     */
+    private static void escribir(Writer salida, Producto producto, Formato formato) throws IOException {
+        if (formato == Formato.JSONL) {
+            Json.escribirProducto(salida, producto);
+        } else {
+            escribirCampoCsv(salida, producto.getCodigo());
+            salida.write(',');
+            escribirCampoCsv(salida, producto.getNombre());
+            salida.write(',');
+            salida.write(Double.toString(producto.getPrecio()));
+            salida.write(',');
+            salida.write(producto.isDisponible() ? "true" : "false");
+        }
+        salida.write('\n');
+    }
+
+    /**
+     * Escribe un campo CSV, entre comillas solo si contiene separadores, comillas o saltos de línea.
+     */
+    private static void escribirCampoCsv(Writer salida, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            salida.write(valor);
+            return;
+        }
+        salida.write('"');
+        salida.write(valor.replace("\"", "\"\""));
+        salida.write('"');
+    }
+}
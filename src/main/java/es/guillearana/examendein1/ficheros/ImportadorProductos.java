@@ -0,0 +1,354 @@
+package es.guillearana.examendein1.ficheros;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.dao.ProductoRepositorio;
+import es.guillearana.examendein1.dao.ResultadoLote;
+import es.guillearana.examendein1.model.Producto;
+import es.guillearana.examendein1.model.ValidadorProducto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Importa productos desde ficheros CSV o TSV.
+ *
+ * El fichero se lee línea a línea y se reparte en bloques. Cada bloque se analiza y valida
+ * en paralelo con las mismas reglas que el formulario ({@link ValidadorProducto}) y los
+ * productos válidos se insertan con {@link ProductoRepositorio#crearTodos(List)} desde un único hilo
+ * escritor, en el mismo orden del fichero. La cola entre lectura y escritura está acotada,
+ * de modo que si la base de datos va más lenta que la lectura, la lectura se detiene:
+ * nunca hay en memoria más de unos pocos bloques, sea cual sea el tamaño del fichero.
+ *
+ * Formato de cada línea: {@code codigo, nombre, precio[, disponible]}. La primera línea se
+ * ignora si es una cabecera, y el separador (coma, punto y coma o tabulador) se detecta solo.
+ */
+public class ImportadorProductos {
+
+    // Marca de fin de fichero en la cola de bloques
+    private static final Future<BloqueAnalizado> FIN = CompletableFuture.completedFuture(null);
+
+    private final ProductoRepositorio productoDao;
+    private final int tamanoBloque;
+    private final int hilos;
+    private final int maximoDetalles;
+    private Consumer<ResumenImportacion> progreso = resumen -> { };
+    private volatile boolean cancelado;
+
+    /**
+     * Constructor para inicializar el importador con el DAO donde se guardan los productos.
+     * El tamaño de bloque, los hilos de análisis y el número de rechazos detallados se leen
+     * del archivo de propiedades.
+     *
+     * @param productoDao el DAO usado para insertar los productos
+     */
+    public ImportadorProductos(ProductoRepositorio productoDao) {
+        this.productoDao = productoDao;
+        this.tamanoBloque = Math.max(1, Propiedades.getEntero("importacion.bloque", 5000));
+        this.hilos = Math.max(1, Propiedades.getEntero("importacion.hilos", Runtime.getRuntime().availableProcessors()));
+        this.maximoDetalles = Propiedades.getEntero("importacion.maximoRechazos", 1000);
+    }
+
+    /**
+     * Establece la acción que se ejecuta cada vez que se termina de escribir un bloque.
+     * Se llama desde el hilo escritor, no desde el hilo de JavaFX.
+     *
+     * @param progreso la acción que recibe el resumen parcial
+     */
+    public void setProgreso(Consumer<ResumenImportacion> progreso) {
+        this.progreso = progreso;
+    }
+
+    /**
+     * Pide que la importación se detenga. Los bloques ya enviados a la base de datos se conservan.
+     */
+    public void cancelar() {
+        cancelado = true;
+    }
+
+    /**
+     * Importa todos los productos de un fichero.
+     *
+     * @param fichero el fichero CSV o TSV
+     * @return el resumen de la importación
+     * @throws IOException si ocurre un error al leer el fichero
+     * @throws SQLException si ocurre un error al guardar los productos
+     */
+    public ResumenImportacion importar(Path fichero) throws IOException, SQLException {
+        ResumenImportacion resumen = new ResumenImportacion(maximoDetalles);
+        long inicio = System.nanoTime();
+
+        BlockingQueue<Future<BloqueAnalizado>> pendientes = new ArrayBlockingQueue<>(hilos * 2);
+        ExecutorService analizadores = Executors.newFixedThreadPool(hilos);
+        // El escritor pasa casi todo el tiempo esperando a la base de datos: basta un hilo virtual
+        ExecutorService escritor = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+        Future<?> escritura = escritor.submit(() -> {
+            escribir(pendientes, resumen);
+            return null;
+        });
+
+        try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            String linea = lector.readLine();
+            long numero = 1;
+            if (linea != null && linea.startsWith("\uFEFF")) {
+                linea = linea.substring(1);
+            }
+            char separador = detectarSeparador(fichero, linea);
+            if (linea != null && esCabecera(linea, separador)) {
+                linea = lector.readLine();
+                numero++;
+            }
+
+            List<String> lineas = new ArrayList<>(tamanoBloque);
+            long primeraLinea = numero;
+            while (linea != null && !cancelado) {
+                lineas.add(linea);
+                if (lineas.size() == tamanoBloque) {
+                    if (!encolar(pendientes, analizar(analizadores, lineas, primeraLinea, separador), escritura)) {
+                        break;
+                    }
+                    lineas = new ArrayList<>(tamanoBloque);
+                    primeraLinea = numero + 1;
+                }
+                linea = lector.readLine();
+                numero++;
+            }
+            if (!lineas.isEmpty() && !cancelado) {
+                encolar(pendientes, analizar(analizadores, lineas, primeraLinea, separador), escritura);
+            }
+        } finally {
+            encolar(pendientes, FIN, escritura);
+            analizadores.shutdown();
+            escritor.shutdown();
+        }
+
+        esperar(escritura);
+        resumen.terminar(System.nanoTime() - inicio, cancelado);
+        return resumen;
+    }
+
+    /**
+     * Envía un bloque de líneas a analizar en paralelo.
+     */
+    private Future<BloqueAnalizado> analizar(ExecutorService analizadores, List<String> lineas, long primeraLinea,
+                                             char separador) {
+        return analizadores.submit(() -> analizarBloque(lineas, primeraLinea, separador));
+    }
+
+    /**
+     * Añade un bloque a la cola, esperando mientras esté llena. Deja de esperar si el
+     * escritor ha terminado (por un error) para no bloquear la lectura para siempre.
+     *
+     * @return true si el bloque se ha encolado
+     */
+    private boolean encolar(BlockingQueue<Future<BloqueAnalizado>> pendientes, Future<BloqueAnalizado> bloque,
+                            Future<?> escritura) throws IOException {
+        try {
+            while (!pendientes.offer(bloque, 100, TimeUnit.MILLISECONDS)) {
+                if (escritura.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelado = true;
+            throw new IOException("Importación interrumpida", e);
+        }
+    }
+
+    /**
+     * Hilo escritor: toma los bloques en orden y guarda sus productos válidos por lotes.
+     */
+    private void escribir(BlockingQueue<Future<BloqueAnalizado>> pendientes, ResumenImportacion resumen)
+            throws Exception {
+        while (true) {
+            BloqueAnalizado bloque = pendientes.take().get();
+            if (bloque == null) {
+                return;
+            }
+            if (cancelado) {
+                continue;
+            }
+
+            resumen.sumarLeidas(bloque.filas);
+            for (int i = 0; i < bloque.rechazos.size(); i++) {
+                resumen.anotarRechazo(bloque.lineasRechazos.get(i), bloque.rechazos.get(i));
+            }
+            if (!bloque.validos.isEmpty()) {
+                ResultadoLote resultado = productoDao.crearTodos(bloque.validos);
+                resumen.sumarInsertadas(resultado.getCorrectos());
+                for (ResultadoLote.Fallo fallo : resultado.getFallos()) {
+                    resumen.anotarRechazo(bloque.lineasValidos[fallo.getIndice()], fallo.getMensaje());
+                }
+            }
+            progreso.accept(resumen);
+        }
+    }
+
+    /**
+     * Espera a que termine el escritor y propaga su error, si lo hubo.
+     */
+    private void esperar(Future<?> escritura) throws IOException, SQLException {
+        try {
+            escritura.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importación interrumpida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+            if (causa instanceof SQLException sql) {
+                throw sql;
+            }
+            throw new IOException("Error al importar productos: " + causa.getMessage(), causa);
+        }
+    }
+
+    /**
+     * Analiza y valida un bloque de líneas. Se ejecuta en los hilos de análisis.
+     */
+    private BloqueAnalizado analizarBloque(List<String> lineas, long primeraLinea, char separador) {
+        BloqueAnalizado bloque = new BloqueAnalizado(lineas.size());
+        for (int i = 0; i < lineas.size(); i++) {
+            String linea = lineas.get(i);
+            long numero = primeraLinea + i;
+            if (linea.isBlank()) {
+                continue;
+            }
+            bloque.filas++;
+
+            List<String> campos = separarCampos(linea, separador);
+            if (campos.size() < 3 || campos.size() > 4) {
+                bloque.rechazar(numero, "Se esperaban 3 o 4 columnas y hay " + campos.size());
+                continue;
+            }
+            String codigo = campos.get(0);
+            String nombre = campos.get(1);
+            String precio = campos.get(2);
+
+            List<String> errores = ValidadorProducto.validar(codigo, nombre, precio);
+            Boolean disponible = campos.size() == 4 ? parsearDisponible(campos.get(3)) : Boolean.FALSE;
+            if (disponible == null) {
+                errores.add("El campo disponible debe ser sí o no.");
+            }
+            if (!errores.isEmpty()) {
+                bloque.rechazar(numero, String.join(" ", errores));
+                continue;
+            }
+            bloque.aceptar(numero, new Producto(codigo, nombre, ValidadorProducto.parsearPrecio(precio), disponible));
+        }
+        return bloque;
+    }
+
+    /**
+     * Separa una línea en campos, respetando las comillas dobles y quitando los espacios de los extremos.
+     */
+    static List<String> separarCampos(String linea, char separador) {
+        List<String> campos = new ArrayList<>(4);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString().strip());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString().strip());
+        return campos;
+    }
+
+    /**
+     * Interpreta el campo disponible.
+     *
+     * @return el valor, o null si el texto no es reconocible
+     */
+    private static Boolean parsearDisponible(String valor) {
+        switch (valor.toLowerCase(Locale.ROOT)) {
+            case "", "0", "false", "no", "n":
+                return Boolean.FALSE;
+            case "1", "true", "si", "sí", "s", "yes":
+                return Boolean.TRUE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Detecta el separador por la extensión del fichero o por el contenido de la primera línea.
+     */
+    private static char detectarSeparador(Path fichero, String primeraLinea) {
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".tsv") || (primeraLinea != null && primeraLinea.indexOf('\t') >= 0)) {
+            return '\t';
+        }
+        if (primeraLinea != null
+                && primeraLinea.chars().filter(c -> c == ';').count() > primeraLinea.chars().filter(c -> c == ',').count()) {
+            return ';';
+        }
+        return ',';
+    }
+
+    /**
+     * Comprueba si la primera línea es una cabecera con los nombres de las columnas.
+     */
+    private static boolean esCabecera(String linea, char separador) {
+        String primerCampo = separarCampos(linea, separador).get(0).toLowerCase(Locale.ROOT);
+        return primerCampo.equals("codigo") || primerCampo.equals("código");
+    }
+
+    /**
+     * Resultado de analizar un bloque de líneas: productos válidos y rechazos con su número de línea.
+     */
+    private static final class BloqueAnalizado {
+        private final List<Producto> validos;
+        private long[] lineasValidos;
+        private final List<String> rechazos = new ArrayList<>();
+        private final List<Long> lineasRechazos = new ArrayList<>();
+        private int filas;
+
+        private BloqueAnalizado(int capacidad) {
+            validos = new ArrayList<>(capacidad);
+            lineasValidos = new long[capacidad];
+        }
+
+        private void aceptar(long linea, Producto producto) {
+            lineasValidos[validos.size()] = linea;
+            validos.add(producto);
+        }
+
+        private void rechazar(long linea, String motivo) {
+            lineasRechazos.add(linea);
+            rechazos.add(motivo);
+        }
+    }
+}
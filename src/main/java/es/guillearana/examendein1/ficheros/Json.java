@@ -0,0 +1,64 @@
+package es.guillearana.examendein1.ficheros;
+
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.IOException;
+
+/**
+ * Escritura de productos en formato JSON sin crear objetos intermedios.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Escribe un producto como objeto JSON en una sola línea.
+     *
+     * @param salida el destino donde se escribe
+     * @param producto el producto que se escribe
+     * @throws IOException si ocurre un error al escribir
+     */
+    public static void escribirProducto(Appendable salida, Producto producto) throws IOException {
+        salida.append("{\"codigo\":");
+        escribirCadena(salida, producto.getCodigo());
+        salida.append(",\"nombre\":");
+        escribirCadena(salida, producto.getNombre());
+        salida.append(",\"precio\":").append(Double.toString(producto.getPrecio()));
+        salida.append(",\"disponible\":").append(producto.isDisponible() ? "true" : "false");
+        salida.append('}');
+    }
+
+    /**
+     * Escribe una cadena JSON entre comillas, escapando los caracteres especiales.
+     *
+     * @param salida el destino donde se escribe
+     * @param valor la cadena que se escribe, o null
+     * @throws IOException si ocurre un error al escribir
+     */
+    public static void escribirCadena(Appendable salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.append("null");
+            return;
+        }
+        salida.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> salida.append("\\\"");
+                case '\\' -> salida.append("\\\\");
+                case '\n' -> salida.append("\\n");
+                case '\r' -> salida.append("\\r");
+                case '\t' -> salida.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        salida.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.append(c);
+                    }
+                }
+            }
+        }
+        salida.append('"');
+    }
+}
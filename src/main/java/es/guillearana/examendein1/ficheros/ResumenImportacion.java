@@ -0,0 +1,108 @@
+package es.guillearana.examendein1.ficheros;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resumen de una importación de productos: filas leídas, insertadas y rechazadas,
+ * y el rendimiento obtenido.
+ *
+ * Para no agotar la memoria con ficheros muy grandes, solo se guarda el detalle de
+ * los primeros rechazos; el total de rechazos siempre es exacto.
+ */
+public class ResumenImportacion {
+
+    private final int maximoDetalles;
+    private long filasLeidas;
+    private long insertadas;
+    private long rechazadas;
+    private final List<String> detallesRechazos = new ArrayList<>();
+    private long duracionNanos;
+    private boolean cancelada;
+
+    /**
+     * Constructor para inicializar un resumen vacío.
+     *
+     * @param maximoDetalles el número máximo de rechazos de los que se guarda el detalle
+     */
+    public ResumenImportacion(int maximoDetalles) {
+        this.maximoDetalles = maximoDetalles;
+    }
+
+    /**
+     * @return el número de filas de datos leídas del fichero
+     */
+    public synchronized long getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    /**
+     * @return el número de productos insertados en la base de datos
+     */
+    public synchronized long getInsertadas() {
+        return insertadas;
+    }
+
+    /**
+     * @return el número de filas rechazadas por validación o por la base de datos
+     */
+    public synchronized long getRechazadas() {
+        return rechazadas;
+    }
+
+    /**
+     * @return el detalle de los primeros rechazos, con el número de línea y el motivo
+     */
+    public synchronized List<String> getDetallesRechazos() {
+        return Collections.unmodifiableList(new ArrayList<>(detallesRechazos));
+    }
+
+    /**
+     * @return la duración de la importación en milisegundos
+     */
+    public synchronized long getDuracionMs() {
+        return duracionNanos / 1_000_000;
+    }
+
+    /**
+     * @return el número de filas procesadas por segundo
+     */
+    public synchronized double getFilasPorSegundo() {
+        return duracionNanos == 0 ? 0 : filasLeidas * 1_000_000_000.0 / duracionNanos;
+    }
+
+    /**
+     * @return true si la importación se canceló antes de terminar
+     */
+    public synchronized boolean isCancelada() {
+        return cancelada;
+    }
+
+    synchronized void sumarLeidas(long filas) {
+        filasLeidas += filas;
+    }
+
+    synchronized void sumarInsertadas(long filas) {
+        insertadas += filas;
+    }
+
+    synchronized void anotarRechazo(long linea, String motivo) {
+        rechazadas++;
+        if (detallesRechazos.size() < maximoDetalles) {
+            detallesRechazos.add("Línea " + linea + ": " + motivo);
+        }
+    }
+
+    synchronized void terminar(long duracionNanos, boolean cancelada) {
+        this.duracionNanos = duracionNanos;
+        this.cancelada = cancelada;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d filas leídas, %d insertadas, %d rechazadas en %.1f s (%.0f filas/s)%s",
+                filasLeidas, insertadas, rechazadas, duracionNanos / 1e9, getFilasPorSegundo(),
+                cancelada ? " [cancelada]" : "");
+    }
+}
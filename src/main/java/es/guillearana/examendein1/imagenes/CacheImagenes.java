@@ -0,0 +1,114 @@
+package es.guillearana.examendein1.imagenes;
+
+import javafx.scene.image.Image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché de imágenes ya decodificadas, limitada por la memoria que ocupan sus píxeles.
+ *
+ * Cada imagen cuenta como ancho × alto × 4 bytes (lo que ocupa decodificada en memoria),
+ * y cuando se supera el máximo se expulsan las menos usadas recientemente (LRU).
+ * Una imagen mayor que el máximo no se guarda. Es segura entre hilos.
+ */
+public class CacheImagenes {
+
+    private final long maximoBytes;
+    // Imágenes por clave, en orden de acceso para la expulsión LRU
+    private final LinkedHashMap<String, Image> imagenes = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    // Estadísticas
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+
+    /**
+     * Constructor para inicializar la caché.
+     *
+     * @param maximoBytes la memoria máxima que pueden ocupar las imágenes guardadas
+     */
+    public CacheImagenes(long maximoBytes) {
+        this.maximoBytes = maximoBytes;
+    }
+
+    /**
+     * Busca una imagen en la caché.
+     *
+     * @param clave la clave de la imagen
+     * @return la imagen, o null si no está guardada
+     */
+    public synchronized Image obtener(String clave) {
+        Image imagen = imagenes.get(clave);
+        if (imagen != null) {
+            aciertos++;
+        } else {
+            fallos++;
+        }
+        return imagen;
+    }
+
+    /**
+     * Guarda una imagen, expulsando las menos usadas si no cabe.
+     *
+     * @param clave la clave de la imagen
+     * @param imagen la imagen decodificada
+     */
+    public synchronized void guardar(String clave, Image imagen) {
+        long tamano = calcularBytes(imagen);
+        if (tamano > maximoBytes) {
+            return;
+        }
+        Image anterior = imagenes.put(clave, imagen);
+        if (anterior != null) {
+            bytes -= calcularBytes(anterior);
+        }
+        bytes += tamano;
+
+        Iterator<Map.Entry<String, Image>> entradas = imagenes.entrySet().iterator();
+        while (bytes > maximoBytes && entradas.hasNext()) {
+            Map.Entry<String, Image> mayor = entradas.next();
+            bytes -= calcularBytes(mayor.getValue());
+            entradas.remove();
+            expulsiones++;
+        }
+    }
+
+    /**
+     * Descarta todas las imágenes cuya clave empieza por un prefijo, por ejemplo todos los
+     * tamaños de una misma imagen.
+     *
+     * @param prefijo el principio de las claves que se descartan
+     */
+    public synchronized void invalidar(String prefijo) {
+        Iterator<Map.Entry<String, Image>> entradas = imagenes.entrySet().iterator();
+        while (entradas.hasNext()) {
+            Map.Entry<String, Image> entrada = entradas.next();
+            if (entrada.getKey().startsWith(prefijo)) {
+                bytes -= calcularBytes(entrada.getValue());
+                entradas.remove();
+            }
+        }
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas de la caché.
+     *
+     * @return las estadísticas actuales de la caché
+     */
+    public synchronized EstadisticasImagenes getEstadisticas() {
+        return new EstadisticasImagenes(aciertos, fallos, expulsiones, imagenes.size(), bytes, maximoBytes);
+    }
+
+    /**
+     * Calcula la memoria que ocupa una imagen decodificada (4 bytes por píxel).
+     *
+     * @param imagen la imagen
+     * @return los bytes que ocupan sus píxeles
+     */
+    static long calcularBytes(Image imagen) {
+        return (long) Math.ceil(imagen.getWidth()) * (long) Math.ceil(imagen.getHeight()) * 4;
+    }
+}
@@ -0,0 +1,166 @@
+package es.guillearana.examendein1.imagenes;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Carga imágenes en segundo plano, ya reducidas al tamaño en que se van a mostrar.
+ *
+ * La imagen se decodifica directamente al tamaño pedido (conservando la proporción), así que
+ * una foto de 20 MP para una miniatura de 100×100 ocupa unos 40 KB en lugar de 80 MB, y el hilo
+ * de JavaFX nunca espera a la lectura del fichero. Las imágenes decodificadas se guardan en una
+ * {@link CacheImagenes} de {@code imagenes.cacheMB} megabytes, y si se pide la misma imagen
+ * mientras se está cargando, se espera a esa carga en lugar de empezar otra.
+ *
+ * Al invalidar una imagen, las cargas que estaban en curso terminan igualmente para quien
+ * las esperaba, pero su resultado no se guarda en la caché ni se comparte con las peticiones
+ * posteriores, que vuelven a leer la imagen.
+ */
+public class CargadorImagenes {
+
+    // Ejecutor con un hilo virtual por imagen
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CacheImagenes cache;
+    // Cargas en curso por clave, para no decodificar dos veces la misma imagen
+    private final Map<String, CompletableFuture<Image>> enCurso = new HashMap<>();
+    // Aumenta con cada invalidación: una carga empezada antes no guarda su imagen en la caché
+    private long generacion;
+
+    /**
+     * Constructor para inicializar el cargador con el tamaño de caché configurado.
+     */
+    public CargadorImagenes() {
+        this.cache = new CacheImagenes(Math.max(1, Propiedades.getEntero("imagenes.cacheMB", 32)) * 1024L * 1024L);
+    }
+
+    /**
+     * Carga una imagen reducida para que quepa en un recuadro, conservando la proporción.
+     * Cancelar el futuro devuelto no afecta a otros que esperen la misma imagen.
+     *
+     * @param url la URL de la imagen, por ejemplo {@code file:/...}
+     * @param ancho el ancho máximo en píxeles
+     * @param alto el alto máximo en píxeles
+     * @return un futuro con la imagen; falla si no se puede leer o decodificar
+     */
+    public CompletableFuture<Image> cargar(String url, double ancho, double alto) {
+        // Sin carga en segundo plano de JavaFX: ya estamos en un hilo propio y así los errores llegan aquí
+        return cargar(url, ancho, alto, () -> new Image(url, ancho, alto, true, true, false));
+    }
+
+    /**
+     * Carga una imagen cuyos bytes se obtienen de otro sitio, por ejemplo de la base de datos,
+     * reducida para que quepa en un recuadro. Los bytes solo se piden si la imagen no está en la caché.
+     *
+     * @param clave el identificador de la imagen en la caché, por ejemplo {@code miniatura:A0001}
+     * @param origen la lectura de los bytes, que se ejecuta en segundo plano y puede devolver null
+     * @param ancho el ancho máximo en píxeles
+     * @param alto el alto máximo en píxeles
+     * @return un futuro con la imagen, o con null si el origen no tiene imagen
+     */
+    public CompletableFuture<Image> cargar(String clave, OrigenImagen origen, double ancho, double alto) {
+        return cargar(clave, ancho, alto, () -> {
+            byte[] bytes = origen.leer();
+            return bytes == null ? null : new Image(new ByteArrayInputStream(bytes), ancho, alto, true, true);
+        });
+    }
+
+    /**
+     * Busca la imagen en la caché o, si no está, la decodifica en segundo plano una sola vez
+     * aunque se pida varias veces a la vez.
+     */
+    private CompletableFuture<Image> cargar(String id, double ancho, double alto, Callable<Image> decodificador) {
+        String clave = id + "@" + Math.round(ancho) + "x" + Math.round(alto);
+        Image guardada = cache.obtener(clave);
+        if (guardada != null) {
+            return CompletableFuture.completedFuture(guardada);
+        }
+
+        CompletableFuture<Image> carga;
+        synchronized (enCurso) {
+            carga = enCurso.get(clave);
+            if (carga == null) {
+                CompletableFuture<Image> nueva = new CompletableFuture<>();
+                long empezada = generacion;
+                enCurso.put(clave, nueva);
+                executor.submit(() -> decodificar(id, decodificador, clave, nueva, empezada));
+                carga = nueva;
+            }
+        }
+        return carga.copy();
+    }
+
+    /**
+     * Descarta de la caché todos los tamaños de una imagen, por ejemplo porque ha cambiado,
+     * y deja de compartir las cargas de la imagen que estén en curso.
+     *
+     * @param id la URL o la clave de la imagen
+     */
+    public void invalidar(String id) {
+        String prefijo = id + "@";
+        synchronized (enCurso) {
+            generacion++;
+            enCurso.keySet().removeIf(clave -> clave.startsWith(prefijo));
+            cache.invalidar(prefijo);
+        }
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas de la caché de imágenes.
+     *
+     * @return las estadísticas actuales de la caché
+     */
+    public EstadisticasImagenes getEstadisticas() {
+        return cache.getEstadisticas();
+    }
+
+    /**
+     * Decodifica la imagen al tamaño pedido, la guarda en la caché si no se ha invalidado
+     * nada desde que empezó la carga, y completa la carga.
+     */
+    private void decodificar(String id, Callable<Image> decodificador, String clave, CompletableFuture<Image> carga,
+                             long empezada) {
+        try {
+            Image imagen = decodificador.call();
+            if (imagen != null && imagen.isError()) {
+                throw new IllegalArgumentException("No se pudo leer la imagen " + id + ": "
+                        + (imagen.getException() != null ? imagen.getException().getMessage() : "formato no válido"),
+                        imagen.getException());
+            }
+            synchronized (enCurso) {
+                if (imagen != null && empezada == generacion) {
+                    cache.guardar(clave, imagen);
+                }
+            }
+            carga.complete(imagen);
+        } catch (Throwable e) {
+            carga.completeExceptionally(e);
+        } finally {
+            synchronized (enCurso) {
+                // Tras una invalidación la clave puede tener ya otra carga, que no se toca
+                enCurso.remove(clave, carga);
+            }
+        }
+    }
+
+    /**
+     * Lectura de los bytes de una imagen que puede lanzar {@link java.sql.SQLException} u otros errores.
+     */
+    @FunctionalInterface
+    public interface OrigenImagen {
+        /**
+         * Lee los bytes de la imagen.
+         *
+         * @return los bytes de la imagen, o null si no hay imagen
+         * @throws Exception si la lectura falla
+         */
+        byte[] leer() throws Exception;
+    }
+}
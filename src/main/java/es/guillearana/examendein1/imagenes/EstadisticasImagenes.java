@@ -0,0 +1,84 @@
+package es.guillearana.examendein1.imagenes;
+
+/**
+ * Instantánea de las estadísticas de la caché de imágenes.
+ *
+ * Si las expulsiones son frecuentes y la tasa de aciertos baja, conviene aumentar
+ * {@code imagenes.cacheMB}.
+ */
+public class EstadisticasImagenes {
+
+    private final long aciertos;
+    private final long fallos;
+    private final long expulsiones;
+    private final int tamano;
+    private final long bytes;
+    private final long maximoBytes;
+
+    /**
+     * Constructor para inicializar las estadísticas con los valores de la caché.
+     *
+     * @param aciertos las imágenes servidas desde memoria
+     * @param fallos las imágenes que hubo que decodificar
+     * @param expulsiones las imágenes descartadas por falta de espacio
+     * @param tamano el número de imágenes guardadas en este momento
+     * @param bytes la memoria que ocupan las imágenes guardadas
+     * @param maximoBytes la memoria máxima de la caché
+     */
+    public EstadisticasImagenes(long aciertos, long fallos, long expulsiones, int tamano, long bytes, long maximoBytes) {
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.expulsiones = expulsiones;
+        this.tamano = tamano;
+        this.bytes = bytes;
+        this.maximoBytes = maximoBytes;
+    }
+
+    /**
+     * @return las imágenes servidas desde memoria
+     */
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * @return las imágenes que hubo que decodificar
+     */
+    public long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * @return las imágenes descartadas por falta de espacio
+     */
+    public long getExpulsiones() {
+        return expulsiones;
+    }
+
+    /**
+     * @return el número de imágenes guardadas en este momento
+     */
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * @return la memoria que ocupan las imágenes guardadas
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return la memoria máxima de la caché
+     */
+    public long getMaximoBytes() {
+        return maximoBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imagenes[aciertos=%d, fallos=%d, expulsiones=%d, imágenes=%d, memoria=%.1f/%.1f MB]",
+                aciertos, fallos, expulsiones, tamano, bytes / (1024.0 * 1024.0), maximoBytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,120 @@
+package es.guillearana.examendein1.imagenes;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Genera las miniaturas que se guardan junto a las imágenes de los productos.
+ *
+ * La imagen original se lee con submuestreo (solo uno de cada n píxeles), de modo que una
+ * foto grande nunca llega a decodificarse entera en memoria, y después se reduce con
+ * interpolación bilineal hasta que su lado mayor mide lo pedido. Las imágenes con
+ * transparencia se guardan en PNG y el resto en JPEG, que ocupa mucho menos.
+ */
+public final class GeneradorMiniaturas {
+
+    private GeneradorMiniaturas() {
+    }
+
+    /**
+     * Comprueba que los bytes son una imagen legible y genera su miniatura.
+     *
+     * @param original los bytes de la imagen original
+     * @param lado el tamaño en píxeles del lado mayor de la miniatura
+     * @return la miniatura y el tipo MIME de la imagen original
+     * @throws IOException si los bytes no son una imagen en un formato conocido
+     */
+    public static Miniatura generar(byte[] original, int lado) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                throw new IOException("El fichero no es una imagen en un formato conocido");
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                String tipo = "image/" + lector.getFormatName().toLowerCase(Locale.ROOT);
+
+                // Se lee al doble del tamaño final como mínimo, para que la reducción conserve la calidad
+                int mayor = Math.max(lector.getWidth(0), lector.getHeight(0));
+                int paso = Math.max(1, mayor / (lado * 2));
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                parametros.setSourceSubsampling(paso, paso, 0, 0);
+                BufferedImage leida = lector.read(0, parametros);
+
+                return new Miniatura(codificar(reducir(leida, lado)), tipo);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reduce una imagen para que su lado mayor mida como mucho {@code lado} píxeles.
+     */
+    private static BufferedImage reducir(BufferedImage imagen, int lado) {
+        double escala = Math.min(1.0, (double) lado / Math.max(imagen.getWidth(), imagen.getHeight()));
+        int ancho = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int alto = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+        boolean transparente = imagen.getColorModel().hasAlpha();
+
+        BufferedImage reducida = new BufferedImage(ancho, alto,
+                transparente ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D grafico = reducida.createGraphics();
+        try {
+            grafico.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            grafico.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            grafico.drawImage(imagen, 0, 0, ancho, alto, null);
+        } finally {
+            grafico.dispose();
+        }
+        return reducida;
+    }
+
+    /**
+     * Codifica la miniatura en PNG si tiene transparencia y en JPEG si no.
+     */
+    private static byte[] codificar(BufferedImage imagen) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, imagen.getColorModel().hasAlpha() ? "png" : "jpg", salida);
+        return salida.toByteArray();
+    }
+
+    /**
+     * Miniatura generada, junto con el tipo de la imagen de la que procede.
+     */
+    public static final class Miniatura {
+
+        private final byte[] bytes;
+        private final String tipoOriginal;
+
+        private Miniatura(byte[] bytes, String tipoOriginal) {
+            this.bytes = bytes;
+            this.tipoOriginal = tipoOriginal;
+        }
+
+        /**
+         * @return los bytes de la miniatura, en PNG o JPEG
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return el tipo MIME de la imagen original, por ejemplo {@code image/jpeg}
+         */
+        public String getTipoOriginal() {
+            return tipoOriginal;
+        }
+    }
+}
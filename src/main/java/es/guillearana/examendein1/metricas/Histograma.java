@@ -0,0 +1,173 @@
+package es.guillearana.examendein1.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores, normalmente duraciones en nanosegundos o filas leídas, que se puede
+ * registrar desde muchos hilos a la vez sin cerrojos.
+ *
+ * Los valores se agrupan en intervalos logarítmicos: cada potencia de dos se divide en 8 partes
+ * iguales, así que los percentiles tienen un error de como mucho un 12,5 % y el histograma
+ * ocupa lo mismo (unos 4 KB) tenga uno o un millón de valores.
+ */
+public class Histograma implements HistogramaMXBean {
+
+    // Bits del valor, después del más alto, que distinguen los intervalos de cada potencia de dos
+    private static final int BITS_SUBINTERVALO = 3;
+    private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+    private static final int INTERVALOS = (64 - BITS_SUBINTERVALO) * SUBINTERVALOS;
+
+    private final String nombre;
+    private final boolean tiempo;
+
+    private final AtomicLongArray intervalos = new AtomicLongArray(INTERVALOS);
+    private final LongAdder cuenta = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Constructor para inicializar el histograma vacío.
+     *
+     * @param nombre el nombre de la métrica, por ejemplo {@code dao.buscar}
+     * @param tiempo true si los valores son nanosegundos (se muestran en milisegundos)
+     */
+    public Histograma(String nombre, boolean tiempo) {
+        this.nombre = nombre;
+        this.tiempo = tiempo;
+    }
+
+    /**
+     * Añade un valor al histograma. Los negativos cuentan como 0.
+     *
+     * @param valor el valor, en nanosegundos si el histograma es de tiempos
+     */
+    public void registrar(long valor) {
+        long v = Math.max(0, valor);
+        intervalos.incrementAndGet(intervalo(v));
+        cuenta.increment();
+        total.add(v);
+        if (v > maximo.get()) {
+            maximo.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public String getUnidad() {
+        return tiempo ? "ms" : "filas";
+    }
+
+    @Override
+    public long getCuenta() {
+        return cuenta.sum();
+    }
+
+    @Override
+    public double getMedia() {
+        long n = cuenta.sum();
+        return n == 0 ? 0 : escalar(total.sum()) / n;
+    }
+
+    @Override
+    public double getP50() {
+        return percentil(0.50);
+    }
+
+    @Override
+    public double getP95() {
+        return percentil(0.95);
+    }
+
+    @Override
+    public double getP99() {
+        return percentil(0.99);
+    }
+
+    @Override
+    public double getMaximo() {
+        return escalar(maximo.get());
+    }
+
+    @Override
+    public void reiniciar() {
+        for (int i = 0; i < INTERVALOS; i++) {
+            intervalos.set(i, 0);
+        }
+        cuenta.reset();
+        total.reset();
+        maximo.set(0);
+    }
+
+    /**
+     * Calcula un percentil como el punto medio del intervalo en que cae.
+     *
+     * @param fraccion el percentil entre 0 y 1, por ejemplo 0.95
+     * @return el valor aproximado del percentil en la unidad del histograma, o 0 si está vacío
+     */
+    public double percentil(double fraccion) {
+        long[] copia = new long[INTERVALOS];
+        long n = 0;
+        for (int i = 0; i < INTERVALOS; i++) {
+            copia[i] = intervalos.get(i);
+            n += copia[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(n * fraccion));
+        long acumulado = 0;
+        for (int i = 0; i < INTERVALOS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                // El máximo exacto es mejor estimación que el punto medio del último intervalo
+                return Math.min(escalar(puntoMedio(i)), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    /**
+     * Calcula el intervalo de un valor: los 8 primeros valores tienen uno propio y el resto
+     * se reparten por su bit más alto y los 3 siguientes.
+     */
+    private static int intervalo(long valor) {
+        if (valor < SUBINTERVALOS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (exponente - BITS_SUBINTERVALO)) & (SUBINTERVALOS - 1);
+        return (exponente - BITS_SUBINTERVALO + 1) * SUBINTERVALOS + sub;
+    }
+
+    /**
+     * Calcula el punto medio de los valores de un intervalo.
+     */
+    private static double puntoMedio(int intervalo) {
+        if (intervalo < SUBINTERVALOS) {
+            return intervalo;
+        }
+        int exponente = intervalo / SUBINTERVALOS + BITS_SUBINTERVALO - 1;
+        long ancho = 1L << (exponente - BITS_SUBINTERVALO);
+        long inicio = (SUBINTERVALOS + intervalo % SUBINTERVALOS) * ancho;
+        return inicio + (ancho - 1) / 2.0;
+    }
+
+    /**
+     * Pasa un valor registrado a la unidad en que se muestra.
+     */
+    private double escalar(double valor) {
+        return tiempo ? valor / 1_000_000.0 : valor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[n=%d, media=%.2f, p50=%.2f, p95=%.2f, p99=%.2f, máx=%.2f %s]",
+                nombre, getCuenta(), getMedia(), getP50(), getP95(), getP99(), getMaximo(), getUnidad());
+    }
+}
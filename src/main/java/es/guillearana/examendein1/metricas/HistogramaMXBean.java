@@ -0,0 +1,53 @@
+package es.guillearana.examendein1.metricas;
+
+/**
+ * Vista JMX de un {@link Histograma}, para consultarlo con JConsole o VisualVM mientras
+ * la aplicación está en marcha. Los tiempos se expresan en milisegundos.
+ */
+public interface HistogramaMXBean {
+
+    /**
+     * @return el nombre de la métrica
+     */
+    String getNombre();
+
+    /**
+     * @return la unidad de los valores: {@code ms} o {@code filas}
+     */
+    String getUnidad();
+
+    /**
+     * @return el número de valores registrados
+     */
+    long getCuenta();
+
+    /**
+     * @return la media de los valores registrados
+     */
+    double getMedia();
+
+    /**
+     * @return la mediana aproximada
+     */
+    double getP50();
+
+    /**
+     * @return el percentil 95 aproximado
+     */
+    double getP95();
+
+    /**
+     * @return el percentil 99 aproximado
+     */
+    double getP99();
+
+    /**
+     * @return el valor más alto registrado
+     */
+    double getMaximo();
+
+    /**
+     * Vacía el histograma, por ejemplo antes de repetir una prueba.
+     */
+    void reiniciar();
+}
@@ -0,0 +1,185 @@
+package es.guillearana.examendein1.metricas;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas de rendimiento de la aplicación: tiempos de cada método del DAO, espera para obtener
+ * una conexión del pool, filas leídas por consulta y tiempo que cada manejador de la interfaz
+ * tiene ocupado el hilo de JavaFX.
+ *
+ * Se activan con {@code metricas.activas=true}. Desactivadas, {@link #inicio()} devuelve 0 sin
+ * leer el reloj y el resto de métodos vuelven enseguida, así que el coste es una comprobación
+ * de un campo final por llamada. Activadas, cada métrica es un {@link Histograma} que:
+ * <ul>
+ *     <li>se publica por JMX como {@code es.guillearana.examendein1:type=Metricas,name=...}</li>
+ *     <li>se añade cada {@code metricas.volcadoSegundos} segundos al fichero CSV
+ *     {@code metricas.fichero}, con los valores acumulados desde el arranque (0 = sin volcado)</li>
+ * </ul>
+ */
+public final class Metricas {
+
+    private static final boolean ACTIVAS = Boolean.parseBoolean(Propiedades.getValor("metricas.activas", "false"));
+
+    private static final String DOMINIO_JMX = "es.guillearana.examendein1";
+    private static final String CABECERA_CSV = "instante,metrica,unidad,cuenta,media,p50,p95,p99,maximo";
+
+    private static final Map<String, Histograma> HISTOGRAMAS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService volcado;
+
+    private Metricas() {
+    }
+
+    /**
+     * @return true si las métricas están activadas en la configuración
+     */
+    public static boolean activas() {
+        return ACTIVAS;
+    }
+
+    /**
+     * Marca el inicio de una medida de tiempo.
+     *
+     * @return el instante actual en nanosegundos, o 0 si las métricas están desactivadas
+     */
+    public static long inicio() {
+        return ACTIVAS ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registra el tiempo transcurrido desde {@link #inicio()}. No hace nada si el inicio es 0.
+     *
+     * @param nombre el nombre de la métrica, por ejemplo {@code dao.buscar}
+     * @param inicio el valor devuelto por {@link #inicio()}
+     */
+    public static void tiempo(String nombre, long inicio) {
+        if (inicio != 0) {
+            histograma(nombre, true).registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Registra una duración ya medida por quien llama.
+     *
+     * @param nombre el nombre de la métrica, por ejemplo {@code pool.obtenerConexion}
+     * @param nanos la duración en nanosegundos
+     */
+    public static void duracion(String nombre, long nanos) {
+        if (ACTIVAS) {
+            histograma(nombre, true).registrar(nanos);
+        }
+    }
+
+    /**
+     * Registra una cantidad, por ejemplo las filas leídas por una consulta.
+     *
+     * @param nombre el nombre de la métrica, por ejemplo {@code dao.buscar.filas}
+     * @param valor la cantidad
+     */
+    public static void valor(String nombre, long valor) {
+        if (ACTIVAS) {
+            histograma(nombre, false).registrar(valor);
+        }
+    }
+
+    /**
+     * Obtiene todas las métricas registradas hasta ahora, ordenadas por nombre.
+     *
+     * @return los histogramas de las métricas, vacío si están desactivadas
+     */
+    public static List<Histograma> getHistogramas() {
+        List<Histograma> lista = new ArrayList<>(HISTOGRAMAS.values());
+        lista.sort(Comparator.comparing(Histograma::getNombre));
+        return lista;
+    }
+
+    /**
+     * Obtiene o crea el histograma de una métrica. El primero que se crea pone en marcha el volcado.
+     */
+    private static Histograma histograma(String nombre, boolean tiempo) {
+        Histograma histograma = HISTOGRAMAS.get(nombre);
+        if (histograma == null) {
+            histograma = HISTOGRAMAS.computeIfAbsent(nombre, n -> {
+                Histograma nuevo = new Histograma(n, tiempo);
+                publicar(nuevo);
+                return nuevo;
+            });
+            iniciarVolcado();
+        }
+        return histograma;
+    }
+
+    /**
+     * Registra el histograma en el servidor JMX de la plataforma.
+     */
+    private static void publicar(Histograma histograma) {
+        try {
+            ObjectName nombre = new ObjectName(DOMINIO_JMX + ":type=Metricas,name="
+                    + ObjectName.quote(histograma.getNombre()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(histograma, nombre);
+        } catch (JMException e) {
+            System.err.println("Error al publicar la métrica " + histograma.getNombre() + " por JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pone en marcha el volcado periódico al fichero CSV, si está configurado y no se ha iniciado ya.
+     */
+    private static synchronized void iniciarVolcado() {
+        int segundos = Propiedades.getEntero("metricas.volcadoSegundos", 60);
+        if (volcado != null || segundos <= 0) {
+            return;
+        }
+        Path fichero = Path.of(Propiedades.getValor("metricas.fichero", "metricas.csv"));
+        volcado = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("volcado-metricas").daemon().factory());
+        volcado.scheduleAtFixedRate(() -> volcar(fichero), segundos, segundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Añade al fichero CSV una línea por métrica con sus valores acumulados.
+     *
+     * @param fichero el fichero CSV; se crea con su cabecera si no existe
+     */
+    public static void volcar(Path fichero) {
+        List<Histograma> histogramas = getHistogramas();
+        if (histogramas.isEmpty()) {
+            return;
+        }
+        String instante = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        boolean nuevo = !Files.exists(fichero);
+        try (PrintWriter salida = new PrintWriter(Files.newBufferedWriter(fichero, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (nuevo) {
+                salida.println(CABECERA_CSV);
+            }
+            for (Histograma h : histogramas) {
+                salida.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        instante, h.getNombre(), h.getUnidad(), h.getCuenta(),
+                        h.getMedia(), h.getP50(), h.getP95(), h.getP99(), h.getMaximo()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error al volcar las métricas en " + fichero + ": " + e.getMessage());
+        }
+    }
+}
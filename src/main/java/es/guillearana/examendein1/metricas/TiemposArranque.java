@@ -0,0 +1,68 @@
+package es.guillearana.examendein1.metricas;
+
+import es.guillearana.examendein1.conexion.Propiedades;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Tiempos de arranque de la aplicación: milisegundos desde que arranca el proceso hasta cada
+ * hito (entrada en {@code main}, ventana visible, primer fotograma, interfaz cargada, primera fila).
+ *
+ * Al llegar al hito final se escribe una línea con todos en la salida estándar
+ * ({@code arranque.informe=true}) y, si las métricas están activas, cada hito se anota como
+ * {@code arranque.<hito>} en {@link Metricas}.
+ */
+public final class TiemposArranque {
+
+    // Momento de arranque del proceso, con la JVM incluida; si el sistema no lo da, la carga de esta clase
+    private static final long INICIO = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+
+    private static final Map<String, Long> HITOS = new LinkedHashMap<>();
+    private static boolean terminado;
+
+    private TiemposArranque() {
+    }
+
+    /**
+     * Anota un hito del arranque. Si el hito ya se había alcanzado, se conserva la primera vez.
+     *
+     * @param hito el nombre del hito, por ejemplo {@code primer fotograma}
+     */
+    public static synchronized void marcar(String hito) {
+        if (!terminado) {
+            HITOS.putIfAbsent(hito, System.currentTimeMillis() - INICIO);
+        }
+    }
+
+    /**
+     * Anota el último hito del arranque e informa de todos. Las llamadas posteriores no hacen nada.
+     *
+     * @param hito el nombre del hito final, por ejemplo {@code primera fila}
+     */
+    public static synchronized void terminar(String hito) {
+        if (terminado) {
+            return;
+        }
+        marcar(hito);
+        terminado = true;
+        for (Map.Entry<String, Long> entrada : HITOS.entrySet()) {
+            Metricas.duracion("arranque." + entrada.getKey().replace(' ', '_'), entrada.getValue() * 1_000_000L);
+        }
+        if (Boolean.parseBoolean(Propiedades.getValor("arranque.informe", "false"))) {
+            System.out.println(getInforme());
+        }
+    }
+
+    /**
+     * @return los hitos alcanzados hasta ahora, por ejemplo {@code Arranque: main 180 ms, ventana 420 ms}
+     */
+    public static synchronized String getInforme() {
+        StringJoiner informe = new StringJoiner(", ", "Arranque: ", "");
+        HITOS.forEach((hito, ms) -> informe.add(hito + " " + ms + " ms"));
+        return informe.toString();
+    }
+}
@@ -0,0 +1,230 @@
+package es.guillearana.examendein1.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Catálogo de productos guardado por columnas, para tener el catálogo completo en memoria
+ * ocupando mucho menos que una lista de objetos {@link Producto}.
+ *
+ * <ul>
+ *     <li>código: 5 bytes por producto en un único array (el formulario exige 5 caracteres)</li>
+ *     <li>nombre: los bytes UTF-8 de todos los nombres seguidos en un mismo array, cada uno
+ *     precedido de su longitud (1 o 2 bytes); solo se guarda dónde empieza uno de cada 16</li>
+ *     <li>precio: un array de double</li>
+ *     <li>disponible: un BitSet</li>
+ * </ul>
+ * Un producto ocupa unos 15 bytes más su nombre, frente a los ~140 de un Producto con sus
+ * dos String. Los objetos Producto se crean solo al pedirlos con {@link #get(int)}, por
+ * ejemplo para las filas visibles de una tabla; son copias y modificarlos no cambia el catálogo.
+ *
+ * Los códigos que no caben en 5 bytes Latin-1 (más cortos o con otros caracteres) se guardan
+ * aparte, así que cualquier código de la base de datos es válido.
+ *
+ * Los productos deben añadirse en orden de código, como los devuelve
+ * {@code ProductoRepositorio.recorrerTodos}, para poder buscarlos por código.
+ * No es seguro usarlo desde varios hilos mientras se añaden productos.
+ */
+public class CatalogoProductos {
+
+    private static final int LONGITUD_CODIGO = 5;
+    // Se guarda la posición del nombre de uno de cada 2^4 = 16 productos
+    private static final int BITS_BLOQUE = 4;
+
+    private byte[] codigos;
+    private int[] inicioBloques;
+    private byte[] nombres;
+    private int finNombres;
+    private double[] precios;
+    private final BitSet disponibles = new BitSet();
+    // Códigos que no caben en 5 bytes Latin-1, por posición
+    private final Map<Integer, String> codigosEspeciales = new HashMap<>();
+    private int tamano;
+
+    /**
+     * Constructor para inicializar un catálogo vacío.
+     *
+     * @param capacidad el número de productos previsto, para no tener que ampliar los arrays
+     */
+    public CatalogoProductos(int capacidad) {
+        int inicial = Math.max(16, capacidad);
+        this.codigos = new byte[inicial * LONGITUD_CODIGO];
+        this.inicioBloques = new int[(inicial >> BITS_BLOQUE) + 1];
+        this.nombres = new byte[inicial * 16];
+        this.precios = new double[inicial];
+    }
+
+    /**
+     * Añade un producto al final del catálogo.
+     *
+     * @param producto el producto, con código mayor que el del último añadido
+     */
+    public void anadir(Producto producto) {
+        if (tamano == precios.length) {
+            int capacidad = tamano + (tamano >> 1);
+            codigos = Arrays.copyOf(codigos, capacidad * LONGITUD_CODIGO);
+            inicioBloques = Arrays.copyOf(inicioBloques, (capacidad >> BITS_BLOQUE) + 1);
+            precios = Arrays.copyOf(precios, capacidad);
+        }
+        guardarCodigo(tamano, producto.getCodigo());
+
+        byte[] nombre = producto.getNombre() == null ? new byte[0] : producto.getNombre().getBytes(StandardCharsets.UTF_8);
+        if (finNombres + nombre.length + 2 > nombres.length) {
+            nombres = Arrays.copyOf(nombres, Math.max(finNombres + nombre.length + 2, nombres.length + (nombres.length >> 1)));
+        }
+        if ((tamano & ((1 << BITS_BLOQUE) - 1)) == 0) {
+            inicioBloques[tamano >> BITS_BLOQUE] = finNombres;
+        }
+        // Longitud en 7 bits, o en 15 si no cabe (la columna admite 100 caracteres, hasta 400 bytes)
+        if (nombre.length < 0x80) {
+            nombres[finNombres++] = (byte) nombre.length;
+        } else {
+            nombres[finNombres++] = (byte) (0x80 | (nombre.length >> 8));
+            nombres[finNombres++] = (byte) nombre.length;
+        }
+        System.arraycopy(nombre, 0, nombres, finNombres, nombre.length);
+        finNombres += nombre.length;
+
+        precios[tamano] = producto.getPrecio();
+        disponibles.set(tamano, producto.isDisponible());
+        tamano++;
+    }
+
+    /**
+     * Ajusta los arrays al número de productos, liberando el espacio sobrante tras la carga.
+     */
+    public void recortar() {
+        codigos = Arrays.copyOf(codigos, tamano * LONGITUD_CODIGO);
+        inicioBloques = Arrays.copyOf(inicioBloques, (tamano >> BITS_BLOQUE) + 1);
+        nombres = Arrays.copyOf(nombres, finNombres);
+        precios = Arrays.copyOf(precios, tamano);
+    }
+
+    /**
+     * @return el número de productos del catálogo
+     */
+    public int size() {
+        return tamano;
+    }
+
+    /**
+     * Crea un producto con los datos de una posición del catálogo.
+     *
+     * @param indice la posición del producto
+     * @return una copia del producto
+     * @throws IndexOutOfBoundsException si la posición no existe
+     */
+    public Producto get(int indice) {
+        return new Producto(getCodigo(indice), getNombre(indice), getPrecio(indice), isDisponible(indice));
+    }
+
+    /**
+     * @param indice la posición del producto
+     * @return el código del producto
+     */
+    public String getCodigo(int indice) {
+        comprobar(indice);
+        String especial = codigosEspeciales.get(indice);
+        return especial != null ? especial
+                : new String(codigos, indice * LONGITUD_CODIGO, LONGITUD_CODIGO, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param indice la posición del producto
+     * @return el nombre del producto
+     */
+    public String getNombre(int indice) {
+        comprobar(indice);
+        // Desde el inicio del bloque saltamos los nombres anteriores (como mucho 15)
+        int posicion = inicioBloques[indice >> BITS_BLOQUE];
+        for (int i = indice & ~((1 << BITS_BLOQUE) - 1); i < indice; i++) {
+            posicion = saltarLongitud(posicion) + leerLongitud(posicion);
+        }
+        return new String(nombres, saltarLongitud(posicion), leerLongitud(posicion), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param indice la posición del producto
+     * @return el precio del producto
+     */
+    public double getPrecio(int indice) {
+        comprobar(indice);
+        return precios[indice];
+    }
+
+    /**
+     * @param indice la posición del producto
+     * @return true si el producto está disponible
+     */
+    public boolean isDisponible(int indice) {
+        comprobar(indice);
+        return disponibles.get(indice);
+    }
+
+    /**
+     * Busca un producto por su código mediante búsqueda binaria, sin distinguir mayúsculas.
+     *
+     * @param codigo el código buscado
+     * @return la posición del producto, o -1 si no está en el catálogo
+     */
+    public int indiceDe(String codigo) {
+        int bajo = 0;
+        int alto = tamano - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int comparacion = getCodigo(medio).compareToIgnoreCase(codigo);
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else if (comparacion > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calcula la memoria que ocupan los datos del catálogo, sin contar las cabeceras de los arrays.
+     *
+     * @return el número aproximado de bytes ocupados
+     */
+    public long getBytesOcupados() {
+        return (long) codigos.length + 4L * inicioBloques.length + nombres.length + 8L * precios.length
+                + disponibles.size() / 8 + 64L * codigosEspeciales.size();
+    }
+
+    /**
+     * Guarda el código en sus 5 bytes o, si no cabe, en los códigos especiales.
+     */
+    private void guardarCodigo(int indice, String codigo) {
+        int desde = indice * LONGITUD_CODIGO;
+        boolean cabe = codigo.length() == LONGITUD_CODIGO;
+        for (int i = 0; i < LONGITUD_CODIGO && cabe; i++) {
+            char c = codigo.charAt(i);
+            cabe = c <= 0xFF;
+            codigos[desde + i] = (byte) c;
+        }
+        if (!cabe) {
+            codigosEspeciales.put(indice, codigo);
+        }
+    }
+
+    private int leerLongitud(int posicion) {
+        int primero = nombres[posicion] & 0xFF;
+        return primero < 0x80 ? primero : ((primero & 0x7F) << 8) | (nombres[posicion + 1] & 0xFF);
+    }
+
+    private int saltarLongitud(int posicion) {
+        return posicion + ((nombres[posicion] & 0x80) == 0 ? 1 : 2);
+    }
+
+    private void comprobar(int indice) {
+        if (indice < 0 || indice >= tamano) {
+            throw new IndexOutOfBoundsException("Posición " + indice + " fuera del catálogo de " + tamano + " productos");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package es.guillearana.examendein1.model;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Criterios de búsqueda de productos. Cada criterio es opcional (null = sin restricción)
+ * y todos los indicados deben cumplirse a la vez.
+ *
+ * El DAO traduce el filtro a condiciones SQL que aprovechan los índices de la tabla
+ * (ver {@code sql/002_indices_busqueda.sql}); {@link #cumple(Producto)} aplica las mismas
+ * reglas en memoria, para decidir si un producto creado o modificado debe verse en la tabla.
+ * Los textos se comparan sin distinguir mayúsculas, igual que la intercalación de MySQL.
+ */
+public final class FiltroProductos {
+
+    /** Filtro que acepta todos los productos. */
+    public static final FiltroProductos TODOS = new FiltroProductos(null, null, null, null, null);
+
+    private final String codigo;
+    private final String nombre;
+    private final Double precioMinimo;
+    private final Double precioMaximo;
+    private final Boolean disponible;
+
+    /**
+     * Constructor para inicializar el filtro. Los textos vacíos o en blanco se tratan como null.
+     *
+     * @param codigo el principio del código, o null
+     * @param nombre el texto que debe aparecer en el nombre, o null
+     * @param precioMinimo el precio mínimo incluido, o null
+     * @param precioMaximo el precio máximo incluido, o null
+     * @param disponible la disponibilidad exigida, o null para ambas
+     */
+    public FiltroProductos(String codigo, String nombre, Double precioMinimo, Double precioMaximo, Boolean disponible) {
+        this.codigo = normalizar(codigo);
+        this.nombre = normalizar(nombre);
+        this.precioMinimo = precioMinimo;
+        this.precioMaximo = precioMaximo;
+        this.disponible = disponible;
+    }
+
+    /**
+     * @return el principio del código, o null
+     */
+    public String getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * @return el texto que debe aparecer en el nombre, o null
+     */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return el precio mínimo incluido, o null
+     */
+    public Double getPrecioMinimo() {
+        return precioMinimo;
+    }
+
+    /**
+     * @return el precio máximo incluido, o null
+     */
+    public Double getPrecioMaximo() {
+        return precioMaximo;
+    }
+
+    /**
+     * @return la disponibilidad exigida, o null para ambas
+     */
+    public Boolean getDisponible() {
+        return disponible;
+    }
+
+    /**
+     * @return true si el filtro no tiene ningún criterio
+     */
+    public boolean isVacio() {
+        return codigo == null && nombre == null && precioMinimo == null && precioMaximo == null && disponible == null;
+    }
+
+    /**
+     * Comprueba en memoria si un producto cumple el filtro.
+     *
+     * @param producto el producto que se comprueba
+     * @return true si el producto cumple todos los criterios
+     */
+    public boolean cumple(Producto producto) {
+        if (codigo != null && !producto.getCodigo().regionMatches(true, 0, codigo, 0, codigo.length())) {
+            return false;
+        }
+        if (nombre != null && (producto.getNombre() == null || !producto.getNombre().toLowerCase(Locale.ROOT)
+                .contains(nombre.toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        if (precioMinimo != null && producto.getPrecio() < precioMinimo) {
+            return false;
+        }
+        if (precioMaximo != null && producto.getPrecio() > precioMaximo) {
+            return false;
+        }
+        return disponible == null || producto.isDisponible() == disponible;
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) {
+            return true;
+        }
+        if (!(otro instanceof FiltroProductos filtro)) {
+            return false;
+        }
+        return Objects.equals(codigo, filtro.codigo) && Objects.equals(nombre, filtro.nombre)
+                && Objects.equals(precioMinimo, filtro.precioMinimo) && Objects.equals(precioMaximo, filtro.precioMaximo)
+                && Objects.equals(disponible, filtro.disponible);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(codigo, nombre, precioMinimo, precioMaximo, disponible);
+    }
+
+    @Override
+    public String toString() {
+        return "Filtro[codigo=" + codigo + ", nombre=" + nombre + ", precio=" + precioMinimo + ".." + precioMaximo
+                + ", disponible=" + disponible + "]";
+    }
+
+    private static String normalizar(String texto) {
+        return texto == null || texto.isBlank() ? null : texto.strip();
+    }
+}
@@ -1,8 +1,21 @@
 package es.guillearana.examendein1.model;
 
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
 /**
  * Clase que representa un producto con atributos como código, nombre, precio y disponibilidad.
  * Proporciona los métodos getter y setter para manipular estos atributos.
+ *
+ * Cada atributo puede observarse como propiedad de JavaFX (por ejemplo {@link #nombreProperty()}),
+ * de modo que una celda de la tabla se repinta sola cuando cambia su valor. Las propiedades se crean
+ * la primera vez que se piden: los productos que nunca se muestran (DAO, consola, importaciones)
+ * solo ocupan sus cuatro campos. Como cualquier propiedad enlazada a la tabla, los productos
+ * que se están mostrando solo deben modificarse desde el hilo de JavaFX.
  */
 public class Producto {
 
@@ -10,6 +23,14 @@ public class Producto {
     private String nombre;
     private double precio;
     private boolean disponible;
+    // Versión de la fila en la base de datos; cada modificación la incrementa
+    private int version;
+
+    // Propiedades observables, null hasta que alguien las pide
+    private StringProperty codigoPropiedad;
+    private StringProperty nombrePropiedad;
+    private DoubleProperty precioPropiedad;
+    private BooleanProperty disponiblePropiedad;
 
     /**
      * Constructor para inicializar un producto con sus atributos.
@@ -26,13 +47,27 @@ public class Producto {
         this.disponible = disponible;
     }
 
+    /**
+     * Constructor para inicializar un producto leído de la base de datos, con su versión.
+     *
+     * @param codigo el código del producto
+     * @param nombre el nombre del producto
+     * @param precio el precio del producto
+     * @param disponible el estado de disponibilidad del producto
+     * @param version la versión de la fila en la base de datos
+     */
+    public Producto(String codigo, String nombre, double precio, boolean disponible, int version) {
+        this(codigo, nombre, precio, disponible);
+        this.version = version;
+    }
+
     /**
      * Obtiene el código del producto.
      *
      * @return el código del producto
      */
     public String getCodigo() {
-        return codigo;
+        return codigoPropiedad != null ? codigoPropiedad.get() : codigo;
     }
 
     /**
@@ -41,7 +76,11 @@ public class Producto {
      * @param codigo el nuevo código del producto
      */
     public void setCodigo(String codigo) {
-        this.codigo = codigo;
+        if (codigoPropiedad != null) {
+            codigoPropiedad.set(codigo);
+        } else {
+            this.codigo = codigo;
+        }
     }
 
     /**
@@ -50,7 +89,7 @@ public class Producto {
      * @return el nombre del producto
      */
     public String getNombre() {
-        return nombre;
+        return nombrePropiedad != null ? nombrePropiedad.get() : nombre;
     }
 
     /**
@@ -59,7 +98,11 @@ public class Producto {
      * @param nombre el nuevo nombre del producto
      */
     public void setNombre(String nombre) {
-        this.nombre = nombre;
+        if (nombrePropiedad != null) {
+            nombrePropiedad.set(nombre);
+        } else {
+            this.nombre = nombre;
+        }
     }
 
     /**
@@ -68,7 +111,7 @@ public class Producto {
      * @return el precio del producto
      */
     public double getPrecio() {
-        return precio;
+        return precioPropiedad != null ? precioPropiedad.get() : precio;
     }
 
     /**
@@ -77,7 +120,11 @@ public class Producto {
      * @param precio el nuevo precio del producto
      */
     public void setPrecio(double precio) {
-        this.precio = precio;
+        if (precioPropiedad != null) {
+            precioPropiedad.set(precio);
+        } else {
+            this.precio = precio;
+        }
     }
 
     /**
@@ -86,7 +133,7 @@ public class Producto {
      * @return true si el producto está disponible, false si no lo está
      */
     public boolean isDisponible() {
-        return disponible;
+        return disponiblePropiedad != null ? disponiblePropiedad.get() : disponible;
     }
 
     /**
@@ -95,6 +142,76 @@ public class Producto {
      * @param disponible el nuevo estado de disponibilidad del producto
      */
     public void setDisponible(boolean disponible) {
-        this.disponible = disponible;
+        if (disponiblePropiedad != null) {
+            disponiblePropiedad.set(disponible);
+        } else {
+            this.disponible = disponible;
+        }
+    }
+
+    /**
+     * Obtiene la versión del producto, es decir, la de la fila de la que se leyó.
+     *
+     * @return la versión del producto; 0 para un producto nuevo
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la versión del producto.
+     *
+     * @param version la nueva versión del producto
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Obtiene el código del producto como propiedad observable.
+     *
+     * @return la propiedad del código
+     */
+    public StringProperty codigoProperty() {
+        if (codigoPropiedad == null) {
+            codigoPropiedad = new SimpleStringProperty(this, "codigo", codigo);
+        }
+        return codigoPropiedad;
+    }
+
+    /**
+     * Obtiene el nombre del producto como propiedad observable.
+     *
+     * @return la propiedad del nombre
+     */
+    public StringProperty nombreProperty() {
+        if (nombrePropiedad == null) {
+            nombrePropiedad = new SimpleStringProperty(this, "nombre", nombre);
+        }
+        return nombrePropiedad;
+    }
+
+    /**
+     * Obtiene el precio del producto como propiedad observable.
+     *
+     * @return la propiedad del precio
+     */
+    public DoubleProperty precioProperty() {
+        if (precioPropiedad == null) {
+            precioPropiedad = new SimpleDoubleProperty(this, "precio", precio);
+        }
+        return precioPropiedad;
+    }
+
+    /**
+     * Obtiene la disponibilidad del producto como propiedad observable.
+     *
+     * @return la propiedad de la disponibilidad
+     */
+    public BooleanProperty disponibleProperty() {
+        if (disponiblePropiedad == null) {
+            disponiblePropiedad = new SimpleBooleanProperty(this, "disponible", disponible);
+        }
+        return disponiblePropiedad;
     }
 }
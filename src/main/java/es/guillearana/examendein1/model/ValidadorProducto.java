@@ -0,0 +1,59 @@
+package es.guillearana.examendein1.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reglas de validación de los datos de un producto.
+ *
+ * Las usan tanto el formulario de la interfaz como la importación de ficheros,
+ * para que un producto se acepte o rechace igual venga de donde venga.
+ */
+public final class ValidadorProducto {
+
+    private ValidadorProducto() {
+    }
+
+    /**
+     * Valida los datos de un producto tal como se escriben en el formulario.
+     *
+     * @param codigo el código del producto, que debe tener exactamente 5 caracteres
+     * @param nombre el nombre del producto, que es obligatorio
+     * @param precio el precio del producto como texto, que debe ser un número
+     * @return la lista de errores encontrados, vacía si los datos son válidos
+     */
+    public static List<String> validar(String codigo, String nombre, String precio) {
+        List<String> errores = new ArrayList<>(0);
+
+        if (codigo == null || codigo.length() != 5) {
+            errores.add("El código debe tener exactamente 5 caracteres.");
+        }
+        if (nombre == null || nombre.isEmpty()) {
+            errores.add("El nombre del producto es obligatorio.");
+        }
+        if (precio == null || precio.isEmpty()) {
+            errores.add("El precio del producto es obligatorio.");
+        }
+        if (parsearPrecio(precio) == null) {
+            errores.add("El precio debe ser un número válido.");
+        }
+        return errores;
+    }
+
+    /**
+     * Convierte el texto de un precio en número.
+     *
+     * @param precio el precio como texto
+     * @return el precio, o null si el texto no es un número válido
+     */
+    public static Double parsearPrecio(String precio) {
+        if (precio == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(precio);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package es.guillearana.examendein1.servidor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import es.guillearana.examendein1.conexion.Propiedades;
+import es.guillearana.examendein1.dao.NotificadorCambios;
+import es.guillearana.examendein1.dao.ProductoDaoCache;
+import es.guillearana.examendein1.dao.ProductoRepositorio;
+import es.guillearana.examendein1.dao.SeguidorCambios;
+import es.guillearana.examendein1.ficheros.Json;
+import es.guillearana.examendein1.metricas.Metricas;
+import es.guillearana.examendein1.model.FiltroProductos;
+import es.guillearana.examendein1.model.Producto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor HTTP sin interfaz gráfica que publica el catálogo de productos en JSON.
+ *
+ * Rutas, todas de solo lectura (GET y HEAD):
+ * <ul>
+ *     <li>{@code /productos?despuesDe=&limite=&codigo=&nombre=&precioDesde=&precioHasta=&disponible=}:
+ *     una página de productos ordenados por código, con los mismos filtros que la barra de búsqueda.
+ *     La respuesta indica en {@code siguiente} el código que se pasa en {@code despuesDe} para pedir
+ *     la página siguiente, o null si es la última (paginación por clave, sin OFFSET)</li>
+ *     <li>{@code /productos/{codigo}}: un producto, o 404 si no existe</li>
+ *     <li>{@code /catalogo}: el catálogo completo en JSON Lines, escrito a medida que se lee</li>
+ * </ul>
+ *
+ * Las respuestas se escriben por trozos ({@code chunked}) directamente desde los productos, sin
+ * montar el JSON entero en memoria. Cada una lleva un ETag: el de un producto sale de su versión
+ * y sus datos, el de una página de los productos que contiene y el del catálogo del último cambio del registro
+ * de cambios. Si la petición trae el mismo en {@code If-None-Match}, se responde 304 sin cuerpo
+ * (y el catálogo ni siquiera se lee).
+ *
+ * Cada petición se atiende en un hilo virtual. Si el repositorio es una {@link ProductoDaoCache},
+ * las lecturas repetidas se resuelven en memoria y un {@link NotificadorCambios} lee el registro
+ * de cambios para que la caché tenga al día los productos que modifican otros clientes.
+ */
+public class ServidorProductos {
+
+    private static final String TIPO_JSON = "application/json; charset=utf-8";
+    private static final String TIPO_JSON_LINES = "application/x-ndjson; charset=utf-8";
+
+    private final ProductoRepositorio productoDao;
+    private final HttpServer servidor;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final int limitePorDefecto;
+    private final int limiteMaximo;
+    private NotificadorCambios notificador;
+
+    /**
+     * Constructor que crea el servidor sobre una dirección, sin ponerlo en marcha.
+     *
+     * @param productoDao el repositorio de productos que se publica
+     * @param direccion la dirección y el puerto donde escucha; el puerto 0 elige uno libre
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public ServidorProductos(ProductoRepositorio productoDao, InetSocketAddress direccion) throws IOException {
+        this.productoDao = productoDao;
+        this.limiteMaximo = Math.max(1, Propiedades.getEntero("servidor.limiteMaximo", 1000));
+        this.limitePorDefecto = Math.min(limiteMaximo, Math.max(1, Propiedades.getEntero("servidor.limite", 100)));
+        this.servidor = HttpServer.create(direccion, Propiedades.getEntero("servidor.cola", 0));
+        servidor.setExecutor(hilos);
+        servidor.createContext("/productos", atender("productos", this::atenderProductos));
+        servidor.createContext("/catalogo", atender("catalogo", this::atenderCatalogo));
+    }
+
+    /**
+     * Pone en marcha el servidor y, con caché, la lectura del registro de cambios que la mantiene al día.
+     *
+     * @throws SQLException si no se puede leer el registro de cambios
+     */
+    public void iniciar() throws SQLException {
+        long intervalo = Propiedades.getEntero("cambios.intervaloMs", 1000);
+        if (productoDao instanceof ProductoDaoCache cache && intervalo > 0) {
+            // La caché ya aplica los cambios al leerlos: no hace falta hacer nada más con ellos
+            notificador = new NotificadorCambios(new SeguidorCambios(cache), intervalo, cambios -> { },
+                    cache::invalidarTodo);
+            notificador.iniciar();
+        }
+        servidor.start();
+    }
+
+    /**
+     * Detiene el servidor, esperando como mucho un segundo a que terminen las peticiones en curso.
+     */
+    public void detener() {
+        servidor.stop(1);
+        hilos.shutdown();
+        if (notificador != null) {
+            notificador.detener();
+        }
+    }
+
+    /**
+     * @return la dirección y el puerto donde escucha el servidor
+     */
+    public InetSocketAddress getDireccion() {
+        return servidor.getAddress();
+    }
+
+    /**
+     * Envuelve una ruta con lo común a todas: solo admite GET y HEAD, traduce los errores a
+     * respuestas JSON y anota el tiempo de cada petición en {@code http.<nombre>}.
+     *
+     * @param nombre el nombre de la ruta en las métricas
+     * @param ruta la ruta
+     * @return el manejador para el servidor
+     */
+    private HttpHandler atender(String nombre, Ruta ruta) {
+        return intercambio -> {
+            long inicio = Metricas.inicio();
+            // Los errores se responden antes de cerrar el intercambio
+            try (intercambio) {
+                try {
+                    String metodo = intercambio.getRequestMethod();
+                    if (!"GET".equals(metodo) && !"HEAD".equals(metodo)) {
+                        intercambio.getResponseHeaders().set("Allow", "GET, HEAD");
+                        responderError(intercambio, 405, "Método no admitido: " + metodo);
+                        return;
+                    }
+                    ruta.atender(intercambio);
+                } catch (IllegalArgumentException e) {
+                    responderError(intercambio, 400, e.getMessage());
+                } catch (SQLException e) {
+                    System.err.println("Error al atender " + intercambio.getRequestURI() + ": " + e.getMessage());
+                    responderError(intercambio, 503, "La base de datos no está disponible");
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // El cliente ha cerrado la conexión: no hay a quién responder
+            } finally {
+                Metricas.tiempo("http." + nombre, inicio);
+            }
+        };
+    }
+
+    /**
+     * Atiende {@code /productos} (una página) y {@code /productos/{codigo}} (un producto).
+     */
+    private void atenderProductos(HttpExchange intercambio) throws IOException, SQLException {
+        String resto = intercambio.getRequestURI().getPath().substring("/productos".length());
+        if (resto.isEmpty() || resto.equals("/")) {
+            atenderPagina(intercambio);
+        } else if (resto.startsWith("/") && resto.indexOf('/', 1) < 0) {
+            atenderProducto(intercambio, resto.substring(1));
+        } else {
+            responderError(intercambio, 404, "No existe la ruta " + intercambio.getRequestURI().getPath());
+        }
+    }
+
+    private void atenderProducto(HttpExchange intercambio, String codigo) throws IOException, SQLException {
+        Producto producto = productoDao.obtenerPorCodigo(codigo);
+        if (producto == null) {
+            responderError(intercambio, 404, "No existe ningún producto con el código " + codigo);
+            return;
+        }
+        // La versión vuelve a empezar si el producto se elimina y se crea otra vez: el ETag incluye también sus datos
+        int huella = Objects.hash(producto.getCodigo(), producto.getNombre(), producto.getPrecio(),
+                producto.isDisponible(), producto.getVersion());
+        if (noModificado(intercambio, "\"v" + producto.getVersion() + "-" + Integer.toHexString(huella) + "\"")) {
+            return;
+        }
+        try (Writer salida = empezarCuerpo(intercambio, TIPO_JSON)) {
+            if (salida != null) {
+                Json.escribirProducto(salida, producto);
+            }
+        }
+    }
+
+    /**
+     * Escribe una página: {@code {"productos":[...],"siguiente":"..."}}. Se pide un producto
+     * de más para saber si hay página siguiente sin hacer otra consulta.
+     */
+    private void atenderPagina(HttpExchange intercambio) throws IOException, SQLException {
+        Map<String, String> parametros = leerParametros(intercambio.getRequestURI().getRawQuery());
+        int limite = parametros.containsKey("limite") ? Integer.parseInt(parametros.get("limite")) : limitePorDefecto;
+        if (limite < 1 || limite > limiteMaximo) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + limiteMaximo);
+        }
+        FiltroProductos filtro = new FiltroProductos(parametros.get("codigo"), parametros.get("nombre"),
+                leerDecimal(parametros, "precioDesde"), leerDecimal(parametros, "precioHasta"),
+                parametros.containsKey("disponible") ? Boolean.valueOf(parametros.get("disponible")) : null);
+
+        List<Producto> productos = productoDao.buscar(filtro, parametros.get("despuesDe"), limite + 1);
+        String siguiente = null;
+        if (productos.size() > limite) {
+            productos = productos.subList(0, limite);
+            siguiente = productos.get(limite - 1).getCodigo();
+        }
+
+        long huella = Objects.hashCode(siguiente);
+        for (Producto producto : productos) {
+            huella = 31 * huella + Objects.hash(producto.getCodigo(), producto.getNombre(), producto.getPrecio(),
+                    producto.isDisponible(), producto.getVersion());
+        }
+        if (noModificado(intercambio, "\"p" + Long.toHexString(huella) + "\"")) {
+            return;
+        }
+        try (Writer salida = empezarCuerpo(intercambio, TIPO_JSON)) {
+            if (salida == null) {
+                return;
+            }
+            salida.write("{\"productos\":[");
+            for (int i = 0; i < productos.size(); i++) {
+                if (i > 0) {
+                    salida.write(',');
+                }
+                Json.escribirProducto(salida, productos.get(i));
+            }
+            salida.write("],\"siguiente\":");
+            Json.escribirCadena(salida, siguiente);
+            salida.write('}');
+        }
+    }
+
+    /**
+     * Escribe el catálogo completo, un producto por línea, a medida que llega de la base de datos.
+     */
+    private void atenderCatalogo(HttpExchange intercambio) throws IOException, SQLException {
+        if (!intercambio.getRequestURI().getPath().equals("/catalogo")) {
+            responderError(intercambio, 404, "No existe la ruta " + intercambio.getRequestURI().getPath());
+            return;
+        }
+        // El ETag se toma antes de leer: si algo cambia durante la lectura, la próxima petición lo vuelve a pedir
+        if (noModificado(intercambio, "\"c" + productoDao.obtenerUltimoCambio() + "\"")) {
+            return;
+        }
+        try (Writer salida = empezarCuerpo(intercambio, TIPO_JSON_LINES)) {
+            if (salida == null) {
+                return;
+            }
+            productoDao.recorrerTodos(producto -> {
+                try {
+                    Json.escribirProducto(salida, producto);
+                    salida.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Añade el ETag a la respuesta y, si coincide con el de {@code If-None-Match}, responde 304.
+     *
+     * @return true si ya se ha respondido 304
+     */
+    private static boolean noModificado(HttpExchange intercambio, String etag) throws IOException {
+        intercambio.getResponseHeaders().set("ETag", etag);
+        intercambio.getResponseHeaders().set("Cache-Control", "no-cache");
+        String recibidos = intercambio.getRequestHeaders().getFirst("If-None-Match");
+        if (recibidos == null) {
+            return false;
+        }
+        for (String recibido : recibidos.split(",")) {
+            String valor = recibido.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag) || valor.equals("*")) {
+                intercambio.sendResponseHeaders(304, -1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Envía las cabeceras de una respuesta 200 por trozos y devuelve dónde escribir el cuerpo.
+     *
+     * @return el destino del cuerpo, o null si la petición es HEAD y no lleva cuerpo
+     */
+    private static Writer empezarCuerpo(HttpExchange intercambio, String tipo) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", tipo);
+        if ("HEAD".equals(intercambio.getRequestMethod())) {
+            intercambio.sendResponseHeaders(200, -1);
+            return null;
+        }
+        intercambio.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    /**
+     * Responde con un error en JSON: {@code {"error":"..."}}. Si ya se habían enviado las
+     * cabeceras (el error llega a mitad del cuerpo), solo se puede cortar la respuesta.
+     */
+    private static void responderError(HttpExchange intercambio, int codigo, String mensaje) throws IOException {
+        if (intercambio.getResponseCode() != -1) {
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.escribirCadena(json, mensaje);
+        byte[] cuerpo = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", TIPO_JSON);
+        boolean conCuerpo = !"HEAD".equals(intercambio.getRequestMethod());
+        intercambio.sendResponseHeaders(codigo, conCuerpo ? cuerpo.length : -1);
+        if (conCuerpo) {
+            intercambio.getResponseBody().write(cuerpo);
+        }
+    }
+
+    /**
+     * Lee los parámetros de la consulta de la URL. Los vacíos se ignoran.
+     */
+    private static Map<String, String> leerParametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0 && igual < par.length() - 1) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+
+    private static Double leerDecimal(Map<String, String> parametros, String nombre) {
+        String valor = parametros.get(nombre);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " debe ser un número: " + valor);
+        }
+    }
+
+    /**
+     * Ruta del servidor que puede fallar al leer la base de datos.
+     */
+    @FunctionalInterface
+    private interface Ruta {
+        void atender(HttpExchange intercambio) throws IOException, SQLException;
+    }
+}
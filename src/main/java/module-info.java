@@ -2,6 +2,9 @@ module es.guillearana.examendein1 {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.desktop;  // ImageIO, para generar las miniaturas de las imágenes
+    requires java.management;  // Publicación de las métricas por JMX
+    requires jdk.httpserver;  // Servidor HTTP del catálogo (Consola servidor)
     requires javafx.base;  // Requiere funcionalidades básicas de JavaFX
 
 
@@ -14,4 +17,5 @@ module es.guillearana.examendein1 {
     exports es.guillearana.examendein1.controllers;
     exports es.guillearana.examendein1.model;  // Exporta los modelos de datos
     exports es.guillearana.examendein1.dao;  // Exporta los DAOs para acceso a base de datos
+    exports es.guillearana.examendein1.metricas to java.management;  // Los MXBean de las métricas
 }
\ No newline at end of file